@@ -0,0 +1,61 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Distribution of account ids accessed by benchmarked operations
+ */
+public enum AccessPattern {
+    /**
+     * Every account is accessed with the same probability
+     */
+    UNIFORM {
+        @Override
+        public int[] sample(int accountsCount, int samplesCount, Random random) {
+            int[] samples = new int[samplesCount];
+            Arrays.setAll(samples, i -> random.nextInt(accountsCount));
+            return samples;
+        }
+    },
+    /**
+     * Every operation accesses the same account
+     */
+    HOT {
+        @Override
+        public int[] sample(int accountsCount, int samplesCount, Random random) {
+            return new int[samplesCount];
+        }
+    },
+    /**
+     * Account ids follow Zipf distribution with exponent 1, i.e. k-th account is accessed k times less often than
+     * the first one
+     */
+    ZIPF {
+        @Override
+        public int[] sample(int accountsCount, int samplesCount, Random random) {
+            double[] cumulative = new double[accountsCount];
+            double sum = 0;
+            for (int i = 0; i < accountsCount; i++) {
+                sum += 1.0 / (i + 1);
+                cumulative[i] = sum;
+            }
+            int[] samples = new int[samplesCount];
+            for (int i = 0; i < samplesCount; i++) {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                samples[i] = Math.min(index < 0 ? -index - 1 : index, accountsCount - 1);
+            }
+            return samples;
+        }
+    };
+
+    /**
+     * Generates account ids.
+     *
+     * @param accountsCount number of existing accounts, ids are in range {@code [0, accountsCount)}
+     * @param samplesCount  number of ids to generate
+     * @param random        source of randomness
+     * @return generated account ids
+     */
+    public abstract int[] sample(int accountsCount, int samplesCount, Random random);
+}
@@ -0,0 +1,140 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import io.github.zyulyaev.jaxrswebapp.BankApplication;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.InMemoryBankService;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.ShardedBankService;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.TransactionStorage;
+import io.github.zyulyaev.jaxrswebapp.service.sequenced.SequencedBankService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Throughput of {@link BankService} operations of every engine for different account {@link AccessPattern}s.
+ * </p>
+ * <p>Service state is recreated before every iteration, so the transaction log does not grow across iterations.
+ * Thread count is controlled by {@code jmhThreads} Gradle property, {@code SHARDED} engine has one shard per core.
+ * Transaction storage of in-memory engines can be switched with {@code -p transactionStorage=DIRECT}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class BankServiceBenchmark {
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+    private static final int SAMPLES_COUNT = 1 << 16;
+
+    @Param({"UNIFORM", "HOT", "ZIPF"})
+    private AccessPattern accessPattern;
+    @Param({"10000"})
+    private int accountsCount;
+    @Param({"IN_MEMORY", "SEQUENCED", "SHARDED"})
+    private BankApplication.Engine engine;
+    @Param({"HEAP"})
+    private TransactionStorage transactionStorage;
+
+    private AuditLog auditLog;
+    private BankService bankService;
+    /**
+     * Ids of created accounts and of their initial deposits by account index, sharded engine does not assign
+     * dense ids
+     */
+    private int[] accountIds;
+    private int[] depositIds;
+
+    @Setup(Level.Iteration)
+    public void setup() throws BankOperationException {
+        auditLog = new AuditLog(AuditLog.DEFAULT_CAPACITY, AuditLog.OverflowPolicy.DROP);
+        Clock clock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+        bankService = createService(clock);
+        accountIds = new int[accountsCount];
+        depositIds = new int[accountsCount];
+        for (int i = 0; i < accountsCount; i++) {
+            accountIds[i] = bankService.createAccount("Owner #" + i).getAccountId();
+            depositIds[i] = bankService.deposit(accountIds[i], INITIAL_BALANCE).getTransactionId();
+        }
+    }
+
+    private BankService createService(Clock clock) {
+        switch (engine) {
+            case IN_MEMORY:
+                return new InMemoryBankService(clock, InMemoryBankService.DEFAULT_SCALE, auditLog, transactionStorage);
+            case SEQUENCED:
+                return new SequencedBankService(clock, InMemoryBankService.DEFAULT_SCALE, auditLog,
+                        SequencedBankService.DEFAULT_CAPACITY);
+            case SHARDED:
+                return new ShardedBankService(clock, InMemoryBankService.DEFAULT_SCALE, auditLog,
+                        Runtime.getRuntime().availableProcessors(), transactionStorage);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() {
+        if (bankService instanceof SequencedBankService) {
+            ((SequencedBankService) bankService).close();
+        }
+        auditLog.close();
+    }
+
+    /**
+     * Per-thread sequence of account indices following benchmark's access pattern
+     */
+    @State(Scope.Thread)
+    public static class AccountIds {
+        private int[] samples;
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setup(BankServiceBenchmark benchmark) {
+            samples = benchmark.accessPattern.sample(benchmark.accountsCount, SAMPLES_COUNT,
+                    ThreadLocalRandom.current());
+        }
+
+        int next() {
+            int accountIndex = samples[cursor];
+            cursor = (cursor + 1) & (SAMPLES_COUNT - 1);
+            return accountIndex;
+        }
+    }
+
+    @Benchmark
+    public Transaction deposit(AccountIds accountIds) throws BankOperationException {
+        return bankService.deposit(this.accountIds[accountIds.next()], AMOUNT);
+    }
+
+    @Benchmark
+    public Transaction withdraw(AccountIds accountIds) throws BankOperationException {
+        return bankService.withdraw(this.accountIds[accountIds.next()], AMOUNT);
+    }
+
+    @Benchmark
+    public Transaction transfer(AccountIds accountIds) throws BankOperationException {
+        int sourceIndex = accountIds.next();
+        int targetIndex = accountIds.next();
+        if (sourceIndex == targetIndex) {
+            targetIndex = (targetIndex + 1) % accountsCount;
+        }
+        return bankService.transfer(this.accountIds[sourceIndex], this.accountIds[targetIndex], AMOUNT);
+    }
+
+    @Benchmark
+    public Account lookupAccount(AccountIds accountIds) {
+        return bankService.lookupAccount(this.accountIds[accountIds.next()]);
+    }
+
+    @Benchmark
+    public Transaction lookupTransaction(AccountIds accountIds) {
+        return bankService.lookupTransaction(depositIds[accountIds.next()]);
+    }
+}
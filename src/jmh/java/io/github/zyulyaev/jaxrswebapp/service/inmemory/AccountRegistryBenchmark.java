@@ -0,0 +1,100 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.concurrent.SegmentedArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention benchmark of account id resolution: {@link SegmentedArray} based registry against the former
+ * {@code synchronized} {@link ArrayList} one. Run with several threads, e.g.
+ * {@code gradlew jmh -PjmhArgs=AccountRegistry -PjmhThreads=8}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountRegistryBenchmark {
+    private static final Instant CREATION_TIME = Instant.EPOCH;
+    private static final Contention CONTENTION = new Contention(Clock.systemUTC());
+
+    @Param({"segmented", "synchronized"})
+    private String registryType;
+    @Param({"100000"})
+    private int accountsCount;
+
+    private Registry registry;
+
+    @Setup
+    public void setup() {
+        registry = "segmented".equals(registryType) ? new SegmentedRegistry() : new SynchronizedRegistry();
+        for (int i = 0; i < accountsCount; i++) {
+            registry.create("Owner #" + i);
+        }
+    }
+
+    @Benchmark
+    public InMemoryAccount lookup() {
+        return registry.get(ThreadLocalRandom.current().nextInt(accountsCount));
+    }
+
+    private interface Registry {
+        InMemoryAccount create(String owner);
+
+        InMemoryAccount get(int accountId);
+    }
+
+    private static final class SegmentedRegistry implements Registry {
+        private final AtomicInteger accountIdSequence = new AtomicInteger();
+        private final SegmentedArray<InMemoryAccount> accounts = new SegmentedArray<>();
+
+        @Override
+        public InMemoryAccount create(String owner) {
+            int accountId = accountIdSequence.getAndIncrement();
+            InMemoryAccount account = new InMemoryAccount(accountId, owner, CREATION_TIME,
+                    InMemoryBankService.DEFAULT_SCALE, CONTENTION);
+            accounts.set(accountId, account);
+            return account;
+        }
+
+        @Override
+        public InMemoryAccount get(int accountId) {
+            return accounts.get(accountId);
+        }
+    }
+
+    /**
+     * Registry as it was implemented before {@link SegmentedArray}
+     */
+    private static final class SynchronizedRegistry implements Registry {
+        private final List<InMemoryAccount> accounts = new ArrayList<>();
+
+        @Override
+        public InMemoryAccount create(String owner) {
+            synchronized (accounts) {
+                InMemoryAccount account = new InMemoryAccount(accounts.size(), owner, CREATION_TIME,
+                        InMemoryBankService.DEFAULT_SCALE, CONTENTION);
+                accounts.add(account);
+                return account;
+            }
+        }
+
+        @Override
+        public InMemoryAccount get(int accountId) {
+            synchronized (accounts) {
+                if (accountId < 0 || accountId >= accounts.size()) {
+                    return null;
+                }
+                return accounts.get(accountId);
+            }
+        }
+    }
+}
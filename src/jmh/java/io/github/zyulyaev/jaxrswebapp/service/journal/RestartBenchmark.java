@@ -0,0 +1,86 @@
+package io.github.zyulyaev.jaxrswebapp.service.journal;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankOperationException;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.InMemoryBankService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>Startup time of {@link JournaledBankService} depending on the number of accounts and transactions, with and
+ * without a snapshot.</p>
+ * <p>Journal is written once per trial, each invocation restores a fresh service from it.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class RestartBenchmark {
+    private static final int SEGMENT_SIZE = 4 << 20;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"1000", "100000"})
+    private int accountsCount;
+    @Param({"100000", "1000000"})
+    private int transactionsCount;
+    @Param({"false", "true"})
+    private boolean snapshot;
+
+    private final Clock clock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+    private AuditLog auditLog;
+    private Path directory;
+    private JournaledBankService restored;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, BankOperationException {
+        auditLog = new AuditLog(AuditLog.DEFAULT_CAPACITY, AuditLog.OverflowPolicy.DROP);
+        directory = Files.createTempDirectory("journal");
+        try (JournaledBankService service = open(Journal.Durability.ASYNC)) {
+            for (int i = 0; i < accountsCount; i++) {
+                service.createAccount("Owner #" + i);
+            }
+            for (int i = 0; i < transactionsCount; i++) {
+                service.deposit(i % accountsCount, AMOUNT);
+            }
+            if (snapshot) {
+                service.snapshot();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        auditLog.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        restored.close();
+    }
+
+    private JournaledBankService open(Journal.Durability durability) throws IOException {
+        return JournaledBankService.open(new InMemoryBankService(clock, InMemoryBankService.DEFAULT_SCALE, auditLog),
+                directory, SEGMENT_SIZE, durability);
+    }
+
+    @Benchmark
+    public JournaledBankService restart() throws IOException {
+        restored = open(Journal.Durability.SYNC);
+        return restored;
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.BankApplication;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.plugins.server.undertow.UndertowJaxrsServer;
+import org.jboss.resteasy.util.PortProvider;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>Latency distribution of HTTP deposits for every {@link RequestExecutor.Mode}, JMH reports p99 among other
+ * percentiles.</p>
+ * <p>Deposits are journaled with {@code SYNC} durability, so handlers block waiting for disk flushes. To saturate
+ * the server run the benchmark with many more threads than cores, e.g.
+ * {@code gradlew jmh -PjmhThreads=256 -PjmhArgs=RequestExecutorBenchmark}.</p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestExecutorBenchmark {
+    private static final int ACCOUNTS_COUNT = 1000;
+    private static final int CONNECTIONS_COUNT = 1024;
+
+    @Param({"DIRECT", "POOL", "EVENT_LOOP", "VIRTUAL"})
+    private RequestExecutor.Mode mode;
+
+    private Path journalDirectory;
+    private BankApplication application;
+    private UndertowJaxrsServer server;
+    private Client client;
+    private WebTarget transactions;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        journalDirectory = Files.createTempDirectory("journal");
+        System.setProperty("bank.journal.dir", journalDirectory.toString());
+        System.setProperty("bank.journal.durability", "SYNC");
+        System.setProperty("bank.audit.overflowPolicy", "DROP");
+        application = new BankApplication(Clock.systemUTC(), mode);
+        server = new UndertowJaxrsServer();
+        server.deploy(application);
+        server.start();
+        client = new ResteasyClientBuilder()
+                .connectionPoolSize(CONNECTIONS_COUNT)
+                .maxPooledPerRoute(CONNECTIONS_COUNT)
+                .build();
+        WebTarget target = client.target("http://localhost:" + PortProvider.getPort());
+        for (int i = 0; i < ACCOUNTS_COUNT; i++) {
+            target.path("/accounts")
+                    .request().post(Entity.entity("{\"owner\":\"Owner #" + i + "\"}", MediaType.APPLICATION_JSON))
+                    .close();
+        }
+        transactions = target.path("/transactions");
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        client.close();
+        server.stop();
+        application.close();
+        try (Stream<Path> files = Files.walk(journalDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int deposit() {
+        int accountId = ThreadLocalRandom.current().nextInt(ACCOUNTS_COUNT);
+        Response response = transactions.request()
+                .post(Entity.entity("{\"targetAccountId\":" + accountId + ",\"amount\":0.01}",
+                        MediaType.APPLICATION_JSON));
+        response.close();
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionsPageModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a page of transactions in JSON and binary encodings, with mappers configured the way
+ * {@link JacksonProvider} and {@link BinaryJacksonProvider} configure them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    public enum Encoding {
+        JSON,
+        SMILE,
+        CBOR
+    }
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    private Encoding encoding;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private TransactionsPageModel page;
+    private byte[] encodedPage;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = JacksonProvider.configure(new ObjectMapper(createFactory(encoding)));
+        writer = objectMapper.writerFor(TransactionsPageModel.class);
+        reader = objectMapper.readerFor(TransactionsPageModel.class);
+        List<TransactionModel> transactions = new ArrayList<>(PAGE_SIZE);
+        Instant time = Instant.parse("2019-01-01T12:34:56.789Z");
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            transactions.add(new TransactionModel(i, time.plusMillis(i * 17), 12345 + i, 54321 - i,
+                    BigDecimal.valueOf(10025 + i * 7, 2)));
+        }
+        page = new TransactionsPageModel(transactions, PAGE_SIZE - 1);
+        encodedPage = writer.writeValueAsBytes(page);
+    }
+
+    private static JsonFactory createFactory(Encoding encoding) {
+        switch (encoding) {
+            case SMILE:
+                return new SmileFactory();
+            case CBOR:
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public TransactionsPageModel deserializePage() throws IOException {
+        return reader.readValue(encodedPage);
+    }
+}
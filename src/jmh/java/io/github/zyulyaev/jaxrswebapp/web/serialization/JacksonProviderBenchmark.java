@@ -0,0 +1,67 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.github.zyulyaev.jaxrswebapp.web.model.AccountModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization cost of web models through the {@link ObjectMapper} of {@link JacksonProvider},
+ * which delegates them to hand-written codecs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JacksonProviderBenchmark {
+    private static final byte[] ACCOUNT_REQUEST = "{\"owner\":\"John Doe\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TRANSACTION_REQUEST =
+            "{\"sourceAccountId\":12345,\"targetAccountId\":54321,\"amount\":100.25}".getBytes(StandardCharsets.UTF_8);
+
+    private final AccountModel account = new AccountModel(12345, "John Doe", Instant.parse("2019-01-01T12:34:56.789Z"),
+            new BigDecimal("1234.56"));
+    private final TransactionModel transaction = new TransactionModel(67890,
+            Instant.parse("2019-01-01T12:34:56.789Z"), 12345, 54321, new BigDecimal("100.25"));
+
+    private ObjectWriter writer;
+    private ObjectReader accountReader;
+    private ObjectReader transactionReader;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = new JacksonProvider().getContext(Object.class);
+        writer = objectMapper.writer();
+        accountReader = objectMapper.readerFor(AccountModel.class);
+        transactionReader = objectMapper.readerFor(TransactionModel.class);
+    }
+
+    @Benchmark
+    public byte[] serializeAccount() throws IOException {
+        return writer.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] serializeTransaction() throws IOException {
+        return writer.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public AccountModel deserializeAccount() throws IOException {
+        return accountReader.readValue(ACCOUNT_REQUEST);
+    }
+
+    @Benchmark
+    public TransactionModel deserializeTransaction() throws IOException {
+        return transactionReader.readValue(TRANSACTION_REQUEST);
+    }
+}
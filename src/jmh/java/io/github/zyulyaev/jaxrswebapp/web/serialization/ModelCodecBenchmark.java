@@ -0,0 +1,123 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.github.zyulyaev.jaxrswebapp.web.model.AccountModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost of hand-written model codecs compared to databind with bean introspection and {@link DateTimeFormatter},
+ * which is how models were handled before the codecs.</p>
+ * <p>Models are written to a discarding stream, so only the codec itself allocates. Allocation rate is reported
+ * with {@code -prof gc} JMH option.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelCodecBenchmark {
+    private static final byte[] ACCOUNT_REQUEST = "{\"owner\":\"John Doe\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TRANSACTION_REQUEST =
+            "{\"sourceAccountId\":12345,\"targetAccountId\":54321,\"amount\":100.25}".getBytes(StandardCharsets.UTF_8);
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    public enum Codec {
+        DATABIND,
+        STREAMING
+    }
+
+    @Param({"DATABIND", "STREAMING"})
+    private Codec codec;
+
+    private final AccountModel account = new AccountModel(12345, "John Doe", Instant.parse("2019-01-01T12:34:56.789Z"),
+            new BigDecimal("1234.56"));
+    private final TransactionModel transaction = new TransactionModel(67890,
+            Instant.parse("2019-01-01T12:34:56.789Z"), 12345, 54321, new BigDecimal("100.25"));
+    private final AccountModelCodec accountCodec = new AccountModelCodec();
+    private final TransactionModelCodec transactionCodec = new TransactionModelCodec();
+
+    private ObjectWriter writer;
+    private ObjectReader accountReader;
+    private ObjectReader transactionReader;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .enable(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES)
+                .registerModule(new SimpleModule() {{
+                    addSerializer(new StdSerializer<Instant>(Instant.class) {
+                        @Override
+                        public void serialize(Instant value, JsonGenerator gen, SerializerProvider provider)
+                                throws IOException
+                        {
+                            gen.writeString(DateTimeFormatter.ISO_INSTANT.format(value));
+                        }
+                    });
+                }});
+        writer = objectMapper.writer();
+        accountReader = objectMapper.readerFor(AccountModel.class);
+        transactionReader = objectMapper.readerFor(TransactionModel.class);
+    }
+
+    @Benchmark
+    public void serializeAccount() throws IOException {
+        if (codec == Codec.DATABIND) {
+            writer.writeValue(DISCARD, account);
+        } else {
+            accountCodec.writeTo(account, AccountModel.class, null, null, null, null, DISCARD);
+        }
+    }
+
+    @Benchmark
+    public void serializeTransaction() throws IOException {
+        if (codec == Codec.DATABIND) {
+            writer.writeValue(DISCARD, transaction);
+        } else {
+            transactionCodec.writeTo(transaction, TransactionModel.class, null, null, null, null, DISCARD);
+        }
+    }
+
+    @Benchmark
+    public AccountModel deserializeAccount() throws IOException {
+        if (codec == Codec.DATABIND) {
+            return accountReader.readValue(ACCOUNT_REQUEST);
+        }
+        return accountCodec.readFrom(AccountModel.class, null, null, null, null,
+                new ByteArrayInputStream(ACCOUNT_REQUEST));
+    }
+
+    @Benchmark
+    public TransactionModel deserializeTransaction() throws IOException {
+        if (codec == Codec.DATABIND) {
+            return transactionReader.readValue(TRANSACTION_REQUEST);
+        }
+        return transactionCodec.readFrom(TransactionModel.class, null, null, null, null,
+                new ByteArrayInputStream(TRANSACTION_REQUEST));
+    }
+}
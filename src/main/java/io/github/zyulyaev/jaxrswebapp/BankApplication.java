@@ -1,50 +1,224 @@
 package io.github.zyulyaev.jaxrswebapp;
 
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.service.BankService;
+import io.github.zyulyaev.jaxrswebapp.service.BankSummaryTracker;
+import io.github.zyulyaev.jaxrswebapp.service.HotAccountTracker;
+import io.github.zyulyaev.jaxrswebapp.service.RecoverableBankService;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
 import io.github.zyulyaev.jaxrswebapp.service.inmemory.InMemoryBankService;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.ShardedBankService;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.TransactionStorage;
+import io.github.zyulyaev.jaxrswebapp.service.journal.Journal;
+import io.github.zyulyaev.jaxrswebapp.service.journal.JournaledBankService;
+import io.github.zyulyaev.jaxrswebapp.service.sequenced.SequencedBankService;
 import io.github.zyulyaev.jaxrswebapp.web.AccountsResource;
+import io.github.zyulyaev.jaxrswebapp.web.AdminResource;
+import io.github.zyulyaev.jaxrswebapp.web.BankResource;
+import io.github.zyulyaev.jaxrswebapp.web.IdempotencyCache;
+import io.github.zyulyaev.jaxrswebapp.web.MetricsFilter;
+import io.github.zyulyaev.jaxrswebapp.web.MetricsResource;
+import io.github.zyulyaev.jaxrswebapp.web.RequestExecutor;
 import io.github.zyulyaev.jaxrswebapp.web.TransactionsResource;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.AccountModelCodec;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.BinaryJacksonProvider;
 import io.github.zyulyaev.jaxrswebapp.web.serialization.JacksonProvider;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.TransactionBytesCache;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.TransactionBytesWriter;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.TransactionModelCodec;
 import org.jboss.resteasy.plugins.server.undertow.UndertowJaxrsServer;
 
 import javax.ws.rs.core.Application;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
 import java.time.Clock;
-import java.util.Collections;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * JAX-RS bank application
  */
-public class BankApplication extends Application {
+public class BankApplication extends Application implements AutoCloseable {
+    private static final long DEFAULT_SNAPSHOT_INTERVAL = 300;
+    private static final int DEFAULT_EXECUTOR_THREADS = Runtime.getRuntime().availableProcessors() * 8;
+
+    /**
+     * Bank service implementation
+     */
+    public enum Engine {
+        /**
+         * {@link InMemoryBankService}, operations are applied by calling threads
+         */
+        IN_MEMORY,
+        /**
+         * {@link SequencedBankService}, operations are applied by a single writer thread
+         */
+        SEQUENCED,
+        /**
+         * {@link ShardedBankService}, accounts are partitioned across independent shards
+         */
+        SHARDED
+    }
+
     private final Set<Object> singletons = new CopyOnWriteArraySet<>();
+    private final Deque<AutoCloseable> resources = new ArrayDeque<>();
 
     public BankApplication() {
         this(Clock.systemUTC());
     }
 
     public BankApplication(Clock clock) {
-        InMemoryBankService bankService = new InMemoryBankService(clock);
-        singletons.add(new AccountsResource(bankService));
-        singletons.add(new TransactionsResource(bankService));
+        // threads running request handlers can be selected by bank.executor system property
+        this(clock, RequestExecutor.Mode.valueOf(System.getProperty("bank.executor", "DIRECT")));
+    }
+
+    public BankApplication(Clock clock, RequestExecutor.Mode executorMode) {
+        // bank service implementation can be selected by bank.engine system property
+        this(clock, Engine.valueOf(System.getProperty("bank.engine", "IN_MEMORY")), executorMode);
+    }
+
+    public BankApplication(Clock clock, Engine engine, RequestExecutor.Mode executorMode) {
+        // number of fractional digits of money amounts can be overridden by bank.scale system property
+        int scale = Integer.getInteger("bank.scale", InMemoryBankService.DEFAULT_SCALE);
+        // audit log buffer can be configured by bank.audit.capacity and bank.audit.overflowPolicy system properties
+        AuditLog auditLog = new AuditLog(Integer.getInteger("bank.audit.capacity", AuditLog.DEFAULT_CAPACITY),
+                AuditLog.OverflowPolicy.valueOf(System.getProperty("bank.audit.overflowPolicy", "BLOCK")));
+        resources.push(auditLog);
+        // storage of transactions of in-memory engines can be selected by bank.transactions.storage system property
+        TransactionStorage transactionStorage =
+                TransactionStorage.valueOf(System.getProperty("bank.transactions.storage", "HEAP"));
+        RecoverableBankService engineService = createEngine(engine, clock, scale, auditLog, transactionStorage);
+        BankService bankService = journaled(engineService);
+        // pool size and admission bound can be configured by bank.executor.threads and bank.executor.maxPending
+        // system properties
+        RequestExecutor requestExecutor = RequestExecutor.create(executorMode,
+                Integer.getInteger("bank.executor.threads", DEFAULT_EXECUTOR_THREADS),
+                Integer.getInteger("bank.executor.maxPending", RequestExecutor.DEFAULT_MAX_PENDING));
+        resources.push(requestExecutor);
+        JacksonProvider jacksonProvider = new JacksonProvider();
+        singletons.add(jacksonProvider);
+        singletons.add(new BinaryJacksonProvider());
+        singletons.add(new AccountModelCodec());
+        singletons.add(new TransactionModelCodec());
+        singletons.add(new AccountsResource(bankService, requestExecutor));
+        // idempotency keys cache can be configured by bank.idempotency.maxSize and bank.idempotency.ttl (in seconds)
+        // system properties
+        IdempotencyCache idempotencyCache = new IdempotencyCache(
+                Integer.getInteger("bank.idempotency.maxSize", IdempotencyCache.DEFAULT_MAX_SIZE),
+                Duration.ofSeconds(Long.getLong("bank.idempotency.ttl", IdempotencyCache.DEFAULT_TTL.getSeconds())),
+                clock);
+        // rendered transactions cache can be configured by bank.transactionCache.maxBytes and
+        // bank.transactionCache.storage system properties
+        TransactionBytesCache transactionBytesCache = new TransactionBytesCache(
+                Long.getLong("bank.transactionCache.maxBytes", TransactionBytesCache.DEFAULT_MAX_BYTES),
+                TransactionBytesCache.Storage.valueOf(System.getProperty("bank.transactionCache.storage", "HEAP")));
+        singletons.add(new TransactionBytesWriter());
+        // transaction ids start over after restart unless they are journaled
+        boolean durableTransactions = bankService instanceof JournaledBankService;
+        String transactionsEpoch = durableTransactions ? ((JournaledBankService) bankService).getJournalId()
+                : Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, Character.MAX_RADIX);
+        singletons.add(new TransactionsResource(bankService, jacksonProvider.getContext(Object.class),
+                requestExecutor, idempotencyCache, transactionBytesCache, transactionsEpoch, durableTransactions));
+        MetricsFilter metricsFilter = new MetricsFilter();
+        singletons.add(metricsFilter);
+        List<MetricsSource> metricsSources = new ArrayList<>();
+        metricsSources.add(metricsFilter);
+        metricsSources.add(requestExecutor);
+        if (engineService instanceof MetricsSource) {
+            metricsSources.add((MetricsSource) engineService);
+        }
+        metricsSources.add(auditLog);
+        metricsSources.add(transactionBytesCache);
+        singletons.add(new MetricsResource(metricsSources));
+        if (engineService instanceof HotAccountTracker) {
+            singletons.add(new AdminResource((HotAccountTracker) engineService));
+        }
+        if (engineService instanceof BankSummaryTracker) {
+            singletons.add(new BankResource((BankSummaryTracker) engineService));
+        }
+    }
+
+    private RecoverableBankService createEngine(Engine engine, Clock clock, int scale, AuditLog auditLog,
+                                                TransactionStorage transactionStorage)
+    {
+        switch (engine) {
+            case IN_MEMORY:
+                return new InMemoryBankService(clock, scale, auditLog, transactionStorage);
+            case SEQUENCED:
+                // writer queue capacity can be configured by bank.sequenced.capacity system property
+                SequencedBankService sequencedService = new SequencedBankService(clock, scale, auditLog,
+                        Integer.getInteger("bank.sequenced.capacity", SequencedBankService.DEFAULT_CAPACITY));
+                resources.push(sequencedService);
+                return sequencedService;
+            case SHARDED:
+                // number of shards can be configured by bank.sharded.shards system property
+                return new ShardedBankService(clock, scale, auditLog,
+                        Integer.getInteger("bank.sharded.shards", Runtime.getRuntime().availableProcessors()),
+                        transactionStorage);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    /**
+     * Decorates the service with a journal if bank.journal.dir system property is set. Journal durability, segment
+     * size and interval between snapshots in seconds can be configured by bank.journal.durability,
+     * bank.journal.segmentSize and bank.journal.snapshotInterval system properties.
+     */
+    private BankService journaled(RecoverableBankService bankService) {
+        String directory = System.getProperty("bank.journal.dir");
+        if (directory == null) {
+            return bankService;
+        }
+        try {
+            JournaledBankService journaledService = JournaledBankService.open(bankService, Paths.get(directory),
+                    Integer.getInteger("bank.journal.segmentSize", Journal.DEFAULT_SEGMENT_SIZE),
+                    Journal.Durability.valueOf(System.getProperty("bank.journal.durability", "SYNC")),
+                    Duration.ofSeconds(Long.getLong("bank.journal.snapshotInterval", DEFAULT_SNAPSHOT_INTERVAL)));
+            resources.push(journaledService);
+            return journaledService;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open journal at " + directory, ex);
+        }
     }
 
     public static void main(String[] args) {
         UndertowJaxrsServer server = new UndertowJaxrsServer();
-        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        BankApplication application = new BankApplication();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            application.close();
+        }));
         // listens at 8081 by default
         // can be overridden by RESTEASY_PORT env value or org.jboss.resteasy.port system property
         // see org.jboss.resteasy.util.PortProvider
-        server.deploy(new BankApplication());
+        server.deploy(application);
         server.start();
     }
 
     @Override
-    public Set<Class<?>> getClasses() {
-        return Collections.singleton(JacksonProvider.class);
+    public Set<Object> getSingletons() {
+        return singletons;
     }
 
+    /**
+     * Release resources held by the application. Must be called after the server is stopped.
+     */
     @Override
-    public Set<Object> getSingletons() {
-        return singletons;
+    public void close() {
+        while (!resources.isEmpty()) {
+            try {
+                resources.pop().close();
+            } catch (Exception ex) {
+                throw new IllegalStateException("Failed to close application resource", ex);
+            }
+        }
     }
 }
@@ -0,0 +1,172 @@
+package io.github.zyulyaev.jaxrswebapp.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * <p>Bounded lock-free multi-producer single-consumer ring buffer.</p>
+ * <p>Producers claim slots with a CAS on the tail sequence and publish elements by advancing per-slot sequence
+ * numbers. The only consumer drains elements in claim order and may sleep in {@link #awaitNotEmpty(long, TimeUnit)}
+ * until a producer wakes it up.</p>
+ *
+ * @param <E> element type
+ */
+public final class RingBuffer<E> {
+    private static final long PRODUCER_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * Create new ring buffer.
+     *
+     * @param capacity max number of elements, rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        if (capacity == 1) {
+            size = 1;
+        }
+        this.mask = size - 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Returns max number of elements.
+     *
+     * @return max number of elements
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns approximate number of elements in the buffer.
+     *
+     * @return approximate number of elements in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head, capacity()));
+    }
+
+    /**
+     * Inserts element if there is free space.
+     *
+     * @param element element to insert
+     * @return true if element inserted, false if buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    Thread consumer = waitingConsumer;
+                    if (consumer != null) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Inserts element waiting for free space if necessary.
+     *
+     * @param element element to insert
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(E element) throws InterruptedException {
+        while (!offer(element)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(this, PRODUCER_BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * Removes next element. Must be called by the consumer thread only.
+     *
+     * @return removed element, or null if buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Passes up to specified number of elements to the consumer. Must be called by the consumer thread only.
+     *
+     * @param consumer elements consumer
+     * @param limit    max number of elements to drain
+     * @return number of drained elements
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Waits until buffer is not empty, timeout elapses or the thread is interrupted. Must be called by the consumer
+     * thread only.
+     *
+     * @param timeout max time to wait
+     * @param unit    timeout unit
+     */
+    public void awaitNotEmpty(long timeout, TimeUnit unit) {
+        waitingConsumer = Thread.currentThread();
+        try {
+            if (isEmpty()) {
+                LockSupport.parkNanos(this, unit.toNanos(timeout));
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    private boolean isEmpty() {
+        long position = head;
+        return sequences.get((int) position & mask) != position + 1;
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.zyulyaev.jaxrswebapp.concurrent;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Append-only array of elements addressed by non-negative int index.</p>
+ * <p>Elements are stored in fixed-size segments referenced from a directory. Reads never lock: they see either
+ * {@code null} or a fully published element. Writers only lock when a new segment has to be allocated, which
+ * happens once per {@value #SEGMENT_SIZE} elements.</p>
+ *
+ * @param <E> element type
+ */
+public final class SegmentedArray<E> {
+    private static final int SEGMENT_SHIFT = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INITIAL_DIRECTORY_SIZE = 16;
+
+    private volatile AtomicReferenceArray<AtomicReferenceArray<E>> directory =
+            new AtomicReferenceArray<>(INITIAL_DIRECTORY_SIZE);
+
+    /**
+     * Returns element at specified index.
+     *
+     * @param index element index
+     * @return element at specified index, or null if it is not set yet or index is negative
+     */
+    public E get(int index) {
+        if (index < 0) {
+            return null;
+        }
+        AtomicReferenceArray<AtomicReferenceArray<E>> directory = this.directory;
+        int segmentIndex = index >>> SEGMENT_SHIFT;
+        if (segmentIndex >= directory.length()) {
+            return null;
+        }
+        AtomicReferenceArray<E> segment = directory.get(segmentIndex);
+        return segment == null ? null : segment.get(index & SEGMENT_MASK);
+    }
+
+    /**
+     * Publishes element at specified index.
+     *
+     * @param index   element index, must not be negative
+     * @param element element to publish
+     */
+    public void set(int index, E element) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Negative index: " + index);
+        }
+        segmentFor(index >>> SEGMENT_SHIFT).set(index & SEGMENT_MASK, element);
+    }
+
+    private AtomicReferenceArray<E> segmentFor(int segmentIndex) {
+        AtomicReferenceArray<AtomicReferenceArray<E>> directory = this.directory;
+        if (segmentIndex < directory.length()) {
+            AtomicReferenceArray<E> segment = directory.get(segmentIndex);
+            if (segment != null) {
+                return segment;
+            }
+        }
+        return allocateSegment(segmentIndex);
+    }
+
+    private synchronized AtomicReferenceArray<E> allocateSegment(int segmentIndex) {
+        AtomicReferenceArray<AtomicReferenceArray<E>> directory = this.directory;
+        if (segmentIndex >= directory.length()) {
+            AtomicReferenceArray<AtomicReferenceArray<E>> grown =
+                    new AtomicReferenceArray<>(Math.max(directory.length() * 2, segmentIndex + 1));
+            for (int i = 0; i < directory.length(); i++) {
+                grown.set(i, directory.get(i));
+            }
+            this.directory = directory = grown;
+        }
+        AtomicReferenceArray<E> segment = directory.get(segmentIndex);
+        if (segment == null) {
+            segment = new AtomicReferenceArray<>(SEGMENT_SIZE);
+            directory.set(segmentIndex, segment);
+        }
+        return segment;
+    }
+}
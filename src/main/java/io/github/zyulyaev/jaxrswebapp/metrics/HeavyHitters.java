@@ -0,0 +1,249 @@
+package io.github.zyulyaev.jaxrswebapp.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Approximate heaviest keys of a stream of weighted non-negative {@code int} keys over a sliding time window.</p>
+ * <p>The window is a ring of sub-windows of fixed duration, the oldest one is cleared and reused when time moves
+ * past it. Every sub-window has a count-min sketch of key weights and a small set of candidate keys with the largest
+ * estimated weights, so memory use does not depend on the number of distinct keys.</p>
+ * <p>Adding a weight costs a few atomic additions to sketch cells. A lock is only taken when a key outgrows the
+ * lightest candidate of its sub-window, and when a sub-window is reused.</p>
+ */
+public final class HeavyHitters {
+    private static final int EMPTY = -1;
+    private static final int[] SEEDS = {0x2545F491, 0x61C88647, 0x7F4A7C15, 0x1B873593, 0x5BD1E995, 0x68E31DA4};
+
+    private final Clock clock;
+    private final long windowMillis;
+    private final int depth;
+    private final int widthMask;
+    private final int capacity;
+    private final Window[] windows;
+
+    /**
+     * Weights and candidates of a sub-window
+     */
+    private final class Window {
+        private final AtomicLongArray cells = new AtomicLongArray(depth * (widthMask + 1));
+        private final AtomicIntegerArray candidates = new AtomicIntegerArray(capacity);
+        /**
+         * Number of sub-windows since epoch this one covers
+         */
+        private volatile long epoch = Long.MIN_VALUE;
+        /**
+         * Estimate of the lightest candidate once all candidate slots are taken, zero before that
+         */
+        private volatile long threshold;
+
+        Window() {
+            for (int i = 0; i < capacity; i++) {
+                candidates.set(i, EMPTY);
+            }
+        }
+
+        synchronized void reset(long epoch) {
+            if (this.epoch >= epoch) {
+                return;
+            }
+            for (int i = 0; i < cells.length(); i++) {
+                cells.set(i, 0);
+            }
+            for (int i = 0; i < capacity; i++) {
+                candidates.set(i, EMPTY);
+            }
+            threshold = 0;
+            this.epoch = epoch;
+        }
+
+        long add(int key, long weight) {
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                estimate = Math.min(estimate, cells.addAndGet(cellIndex(row, key), weight));
+            }
+            return estimate;
+        }
+
+        long estimate(int key) {
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                estimate = Math.min(estimate, cells.get(cellIndex(row, key)));
+            }
+            return estimate;
+        }
+
+        boolean isCandidate(int key) {
+            for (int i = 0; i < capacity; i++) {
+                if (candidates.get(i) == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Makes the key a candidate if there is a free slot or it outweighs the lightest candidate.
+         */
+        synchronized void offer(int key, long estimate) {
+            if (isCandidate(key)) {
+                return;
+            }
+            int lightest = -1;
+            long lightestEstimate = Long.MAX_VALUE;
+            for (int i = 0; i < capacity; i++) {
+                int candidate = candidates.get(i);
+                if (candidate == EMPTY) {
+                    candidates.set(i, key);
+                    return;
+                }
+                long candidateEstimate = estimate(candidate);
+                if (candidateEstimate < lightestEstimate) {
+                    lightest = i;
+                    lightestEstimate = candidateEstimate;
+                }
+            }
+            if (estimate > lightestEstimate) {
+                candidates.set(lightest, key);
+                lightestEstimate = estimate;
+                for (int i = 0; i < capacity; i++) {
+                    lightestEstimate = Math.min(lightestEstimate, estimate(candidates.get(i)));
+                }
+            }
+            threshold = lightestEstimate;
+        }
+
+        private int cellIndex(int row, int key) {
+            int hash = (key ^ SEEDS[row]) * 0x9E3779B9;
+            hash ^= hash >>> 15;
+            hash *= 0x85EBCA6B;
+            hash ^= hash >>> 13;
+            return row * (widthMask + 1) + (hash & widthMask);
+        }
+    }
+
+    /**
+     * Key with its estimated weight
+     */
+    public static final class Entry {
+        private final int key;
+        private final long weight;
+
+        Entry(int key, long weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+
+        public int getKey() {
+            return key;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + weight;
+        }
+    }
+
+    /**
+     * Create new heavy hitters tracker.
+     *
+     * @param clock      clock defining sub-windows
+     * @param window     duration of the whole sliding window
+     * @param subWindows number of sub-windows the window is split into
+     * @param width      number of sketch cells per row, rounded up to a power of two
+     * @param depth      number of sketch rows, each one makes estimates less likely to be overestimated
+     * @param capacity   number of candidate keys kept per sub-window
+     */
+    public HeavyHitters(Clock clock, Duration window, int subWindows, int width, int depth, int capacity) {
+        if (subWindows <= 0 || window.toMillis() < subWindows) {
+            throw new IllegalArgumentException("Invalid window: " + window + " of " + subWindows + " sub-windows");
+        }
+        if (width <= 0 || depth <= 0 || depth > SEEDS.length || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid sketch: " + depth + "x" + width + ", " + capacity
+                    + " candidates");
+        }
+        this.clock = clock;
+        this.windowMillis = window.toMillis() / subWindows;
+        this.depth = depth;
+        this.widthMask = (width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1) - 1;
+        this.capacity = capacity;
+        this.windows = new Window[subWindows];
+        for (int i = 0; i < subWindows; i++) {
+            windows[i] = new Window();
+        }
+    }
+
+    /**
+     * Add weight of the key.
+     *
+     * @param key    key, must not be negative
+     * @param weight weight to add
+     */
+    public void add(int key, long weight) {
+        long epoch = Math.floorDiv(clock.millis(), windowMillis);
+        Window window = windows[(int) Math.floorMod(epoch, (long) windows.length)];
+        if (window.epoch != epoch) {
+            window.reset(epoch);
+        }
+        long estimate = window.add(key, weight);
+        if (estimate > window.threshold && !window.isCandidate(key)) {
+            window.offer(key, estimate);
+        }
+    }
+
+    /**
+     * Returns estimated weight of the key over the sliding window. Estimates are never below actual weights.
+     *
+     * @param key key
+     * @return estimated weight
+     */
+    public long estimate(int key) {
+        long epoch = Math.floorDiv(clock.millis(), windowMillis);
+        long estimate = 0;
+        for (Window window : windows) {
+            if (isLive(window, epoch)) {
+                estimate += window.estimate(key);
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the heaviest keys over the sliding window.
+     *
+     * @param limit max number of keys to return
+     * @return keys with their estimated weights, heaviest first
+     */
+    public List<Entry> top(int limit) {
+        long epoch = Math.floorDiv(clock.millis(), windowMillis);
+        Set<Integer> keys = new HashSet<>();
+        for (Window window : windows) {
+            if (isLive(window, epoch)) {
+                for (int i = 0; i < capacity; i++) {
+                    int candidate = window.candidates.get(i);
+                    if (candidate != EMPTY) {
+                        keys.add(candidate);
+                    }
+                }
+            }
+        }
+        List<Entry> entries = new ArrayList<>(keys.size());
+        for (int key : keys) {
+            entries.add(new Entry(key, estimate(key)));
+        }
+        entries.sort(Comparator.comparingLong(Entry::getWeight).reversed());
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    private boolean isLive(Window window, long epoch) {
+        long windowEpoch = window.epoch;
+        return windowEpoch <= epoch && windowEpoch > epoch - windows.length;
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.zyulyaev.jaxrswebapp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Histogram of latencies with exponential buckets: bucket {@code i} counts latencies below {@code 2^i}
+ * microseconds and at least half of that, so relative error of every bucket is the same whatever the latency.</p>
+ * <p>Recording is lock-free and costs a couple of uncontended {@link LongAdder} increments. Buckets are read
+ * without stopping recording, so a read may miss latencies recorded concurrently.</p>
+ */
+public final class LatencyHistogram {
+    /**
+     * Number of buckets, the last one counts latencies of about 18 minutes and longer
+     */
+    public static final int BUCKETS = 32;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record latency.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos, 0) / 1000;
+        counts[Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1)].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @param bucket bucket index
+     * @return number of recorded latencies in the bucket
+     */
+    public long getCount(int bucket) {
+        return counts[bucket].sum();
+    }
+
+    /**
+     * @param bucket bucket index, except the last one which is unbounded
+     * @return exclusive upper bound of latencies counted by the bucket in microseconds
+     */
+    public static long getUpperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * @return sum of recorded latencies in nanoseconds
+     */
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+}
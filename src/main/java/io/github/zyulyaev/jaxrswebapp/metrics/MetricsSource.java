@@ -0,0 +1,14 @@
+package io.github.zyulyaev.jaxrswebapp.metrics;
+
+/**
+ * Component which exports its metrics
+ */
+public interface MetricsSource {
+    /**
+     * Writes current values of metrics. Called concurrently with the component's operations, so values of different
+     * metrics need not be consistent with each other.
+     *
+     * @param writer writer to write metrics to
+     */
+    void writeMetrics(MetricsWriter writer);
+}
@@ -0,0 +1,134 @@
+package io.github.zyulyaev.jaxrswebapp.metrics;
+
+/**
+ * <p>Writes metrics in Prometheus text exposition format.</p>
+ * <p>Every metric family is started with {@link #family} and followed by its samples. Labels are passed as
+ * name-value pairs.</p>
+ */
+public final class MetricsWriter {
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double MICROS_PER_SECOND = 1e6;
+
+    private final StringBuilder output;
+
+    /**
+     * Create new writer.
+     *
+     * @param output builder to append metrics to
+     */
+    public MetricsWriter(StringBuilder output) {
+        this.output = output;
+    }
+
+    /**
+     * Starts metric family.
+     *
+     * @param name family name
+     * @param type {@code counter}, {@code gauge} or {@code histogram}
+     * @param help description of the family
+     * @return this writer
+     */
+    public MetricsWriter family(String name, String type, String help) {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes integer sample.
+     *
+     * @param name   sample name
+     * @param value  sample value
+     * @param labels label names and values
+     * @return this writer
+     */
+    public MetricsWriter sample(String name, long value, String... labels) {
+        writeName(name, labels, null, null);
+        output.append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes floating point sample.
+     *
+     * @param name   sample name
+     * @param value  sample value
+     * @param labels label names and values
+     * @return this writer
+     */
+    public MetricsWriter sample(String name, double value, String... labels) {
+        writeName(name, labels, null, null);
+        output.append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes family and the only sample of a counter without labels.
+     */
+    public MetricsWriter counter(String name, String help, long value) {
+        return family(name, "counter", help).sample(name, value);
+    }
+
+    /**
+     * Writes family and the only sample of a gauge without labels.
+     */
+    public MetricsWriter gauge(String name, String help, long value) {
+        return family(name, "gauge", help).sample(name, value);
+    }
+
+    /**
+     * Writes samples of the histogram in seconds: cumulative buckets, sum and count.
+     *
+     * @param name      family name
+     * @param histogram histogram to write
+     * @param labels    label names and values
+     * @return this writer
+     */
+    public MetricsWriter histogram(String name, LatencyHistogram histogram, String... labels) {
+        long count = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            count += histogram.getCount(bucket);
+            writeName(name + "_bucket", labels, "le",
+                    Double.toString(LatencyHistogram.getUpperBoundMicros(bucket) / MICROS_PER_SECOND));
+            output.append(' ').append(count).append('\n');
+        }
+        count += histogram.getCount(LatencyHistogram.BUCKETS - 1);
+        writeName(name + "_bucket", labels, "le", "+Inf");
+        output.append(' ').append(count).append('\n');
+        sample(name + "_sum", histogram.getSumNanos() / NANOS_PER_SECOND, labels);
+        return sample(name + "_count", count, labels);
+    }
+
+    private void writeName(String name, String[] labels, String extraLabel, String extraValue) {
+        output.append(name);
+        if (labels.length == 0 && extraLabel == null) {
+            return;
+        }
+        output.append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            writeLabel(labels[i], labels[i + 1], i > 0);
+        }
+        if (extraLabel != null) {
+            writeLabel(extraLabel, extraValue, labels.length > 0);
+        }
+        output.append('}');
+    }
+
+    private void writeLabel(String name, String value, boolean separated) {
+        if (separated) {
+            output.append(',');
+        }
+        output.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                output.append('\\').append(c);
+            } else if (c == '\n') {
+                output.append("\\n");
+            } else {
+                output.append(c);
+            }
+        }
+        output.append('"');
+    }
+}
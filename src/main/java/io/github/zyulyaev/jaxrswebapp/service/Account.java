@@ -34,4 +34,13 @@ public interface Account {
      * @return current account balance
      */
     BigDecimal getBalance();
+
+    /**
+     * Returns version of the account state. Balance is the only mutable part of an account, so the version is the
+     * balance in minor units: it changes whenever the balance does and, unlike a separate counter, is updated
+     * atomically with it.
+     *
+     * @return version of the account state
+     */
+    long getVersion();
 }
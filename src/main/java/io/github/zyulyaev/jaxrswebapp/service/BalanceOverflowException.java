@@ -0,0 +1,11 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+/**
+ * Thrown when an operation which includes deposit to an account fails because its balance would exceed the max
+ * supported one.
+ */
+public class BalanceOverflowException extends BankOperationException {
+    public BalanceOverflowException(int accountId) {
+        super("Account #" + accountId + " balance overflow");
+    }
+}
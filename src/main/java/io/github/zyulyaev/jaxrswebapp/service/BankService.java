@@ -1,11 +1,18 @@
 package io.github.zyulyaev.jaxrswebapp.service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Bank operations service.
  */
 public interface BankService {
+    /**
+     * Version returned by {@link #lookupAccountVersion(int)} for unknown accounts
+     */
+    long NO_ACCOUNT_VERSION = Long.MIN_VALUE;
+
     /**
      * Create new account with specified owner.
      *
@@ -14,6 +21,22 @@ public interface BankService {
      */
     Account createAccount(String owner);
 
+    /**
+     * <p>Create new accounts with specified owners.</p>
+     * <p>Implementations reserve ids of all accounts in one step and create them with the same creation time, so a
+     * batch costs much less than the same number of {@link #createAccount(String)} calls.</p>
+     *
+     * @param owners owners of the created accounts
+     * @return created accounts in the order of owners
+     */
+    default List<Account> createAccounts(List<String> owners) {
+        List<Account> accounts = new ArrayList<>(owners.size());
+        for (String owner : owners) {
+            accounts.add(createAccount(owner));
+        }
+        return accounts;
+    }
+
     /**
      * Lookup account by id.
      *
@@ -22,6 +45,33 @@ public interface BankService {
      */
     Account lookupAccount(int accountId);
 
+    /**
+     * Returns current {@linkplain Account#getVersion() version} of the account if it exists. Unlike
+     * {@link #lookupAccount(int)} it does not need to build an account snapshot.
+     *
+     * @param accountId account identifier
+     * @return account version or {@link #NO_ACCOUNT_VERSION} if account not found
+     */
+    default long lookupAccountVersion(int accountId) {
+        Account account = lookupAccount(accountId);
+        return account == null ? NO_ACCOUNT_VERSION : account.getVersion();
+    }
+
+    /**
+     * <p>Lookup accounts of specified owner, or of owners starting with specified prefix, in ascending order of
+     * owner and then account id.</p>
+     * <p>Paging with the owner and id of the last returned account as a cursor returns every matching account
+     * created before the first page was requested.</p>
+     *
+     * @param owner      owner or owner prefix to look for
+     * @param prefix     whether to match owners starting with {@code owner} rather than equal to it
+     * @param afterOwner owner of the account to start after, null to start from the first matching account
+     * @param afterId    id of the account to start after, ignored if {@code afterOwner} is null
+     * @param limit      max number of accounts to return
+     * @return found accounts, empty list if there are no more matching accounts
+     */
+    List<Account> lookupAccountsByOwner(String owner, boolean prefix, String afterOwner, int afterId, int limit);
+
     /**
      * Create transaction to deposit specified amount of money to the account specified by id.
      *
@@ -29,7 +79,9 @@ public interface BankService {
      * @param amount          amount of deposited money
      * @return created transaction
      * @throws AccountNotFoundException if specified account not found
-     * @throws IllegalArgumentException if deposited amount is not positive
+     * @throws BalanceOverflowException if specified account balance would exceed the max supported one
+     * @throws IllegalArgumentException if deposited amount is not positive or has more fractional digits than
+     *                                  supported
      */
     Transaction deposit(int targetAccountId, BigDecimal amount) throws BankOperationException;
 
@@ -41,7 +93,8 @@ public interface BankService {
      * @return created transaction
      * @throws AccountNotFoundException if specified account not found
      * @throws OverdraftException if specified account does not have enough money
-     * @throws IllegalArgumentException if withdrawn amount is not positive
+     * @throws IllegalArgumentException if withdrawn amount is not positive or has more fractional digits than
+     *                                  supported
      */
     Transaction withdraw(int sourceAccountId, BigDecimal amount) throws BankOperationException;
 
@@ -55,7 +108,9 @@ public interface BankService {
      * @return created transaction
      * @throws AccountNotFoundException if any of specified accounts is not found
      * @throws OverdraftException if specified source account does not have enough money
-     * @throws IllegalArgumentException if transferred amount is not positive
+     * @throws BalanceOverflowException if target account balance would exceed the max supported one
+     * @throws IllegalArgumentException if transferred amount is not positive or has more fractional digits than
+     *                                  supported
      */
     Transaction transfer(int sourceAccountId, int targetAccountId, BigDecimal amount) throws BankOperationException;
 
@@ -66,4 +121,77 @@ public interface BankService {
      * @return found transaction, or null if not found
      */
     Transaction lookupTransaction(int transactionId);
+
+    /**
+     * <p>Lookup transactions with ids greater than specified one in ascending id order.</p>
+     * <p>Returned page never skips transactions which are still being committed: it ends before the first such
+     * transaction, so paging with the last returned id as a cursor eventually returns every transaction.</p>
+     *
+     * @param afterId id of the transaction to start after, -1 to start from the first transaction
+     * @param limit   max number of transactions to return
+     * @return found transactions, empty list if there are no more transactions yet
+     */
+    List<Transaction> lookupTransactions(int afterId, int limit);
+
+    /**
+     * Lookup transactions involving specified account as a source or a target in ascending id order.
+     *
+     * @param accountId account id to look for transactions of
+     * @param afterId   id of the transaction to start after, -1 to start from the first transaction
+     * @param limit     max number of transactions to return
+     * @return found transactions, empty list if there are no more transactions yet
+     * @throws AccountNotFoundException if specified account not found
+     */
+    List<Transaction> lookupAccountTransactions(int accountId, int afterId, int limit)
+            throws AccountNotFoundException;
+
+    /**
+     * Create transaction described by the request. Dispatches to {@link #deposit(int, BigDecimal)},
+     * {@link #withdraw(int, BigDecimal)} or {@link #transfer(int, int, BigDecimal)} depending on which account ids
+     * are specified.
+     *
+     * @param request transaction request
+     * @return created transaction
+     * @throws AccountNotFoundException if any of specified accounts is not found
+     * @throws OverdraftException if specified source account does not have enough money
+     * @throws BalanceOverflowException if target account balance would exceed the max supported one
+     * @throws IllegalArgumentException if neither account is specified, amount is not specified or not supported
+     */
+    default Transaction execute(TransactionRequest request) throws BankOperationException {
+        if (request.getAmount() == null) {
+            throw new IllegalArgumentException("No amount: " + request);
+        }
+        if (request.getSourceAccountId() == null) {
+            if (request.getTargetAccountId() == null) {
+                throw new IllegalArgumentException("No accounts: " + request);
+            }
+            return deposit(request.getTargetAccountId(), request.getAmount());
+        } else if (request.getTargetAccountId() == null) {
+            return withdraw(request.getSourceAccountId(), request.getAmount());
+        } else {
+            return transfer(request.getSourceAccountId(), request.getTargetAccountId(), request.getAmount());
+        }
+    }
+
+    /**
+     * <p>Create transactions described by the requests.</p>
+     * <p>Requests involving the same account are executed in the specified order, implementations may reorder ones
+     * involving different accounts. Failure of one request does not affect the others.</p>
+     *
+     * @param requests transaction requests
+     * @return list of results in the same order as requests
+     */
+    default List<BatchResult> applyBatch(List<TransactionRequest> requests) {
+        List<BatchResult> results = new ArrayList<>(requests.size());
+        for (TransactionRequest request : requests) {
+            try {
+                results.add(BatchResult.created(execute(request)));
+            } catch (IllegalArgumentException ex) {
+                results.add(BatchResult.invalid(ex));
+            } catch (BankOperationException ex) {
+                results.add(BatchResult.failed(ex));
+            }
+        }
+        return results;
+    }
 }
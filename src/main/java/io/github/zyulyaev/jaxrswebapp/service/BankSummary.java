@@ -0,0 +1,66 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable bank-wide totals. Total money is the sum of all account balances.
+ */
+public final class BankSummary {
+    private final long accountsCount;
+    private final long transactionsCount;
+    private final BigDecimal totalDeposits;
+    private final BigDecimal totalWithdrawals;
+    private final BigDecimal totalMoney;
+    private final Integer transactionIdLimit;
+
+    public BankSummary(long accountsCount, long transactionsCount, BigDecimal totalDeposits,
+                       BigDecimal totalWithdrawals, BigDecimal totalMoney, Integer transactionIdLimit)
+    {
+        this.accountsCount = accountsCount;
+        this.transactionsCount = transactionsCount;
+        this.totalDeposits = totalDeposits;
+        this.totalWithdrawals = totalWithdrawals;
+        this.totalMoney = totalMoney;
+        this.transactionIdLimit = transactionIdLimit;
+    }
+
+    public long getAccountsCount() {
+        return accountsCount;
+    }
+
+    public long getTransactionsCount() {
+        return transactionsCount;
+    }
+
+    public BigDecimal getTotalDeposits() {
+        return totalDeposits;
+    }
+
+    public BigDecimal getTotalWithdrawals() {
+        return totalWithdrawals;
+    }
+
+    public BigDecimal getTotalMoney() {
+        return totalMoney;
+    }
+
+    /**
+     * @return id such that the summary includes exactly the transactions with lower ids, null if the summary is not
+     * consistent
+     */
+    public Integer getTransactionIdLimit() {
+        return transactionIdLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "BankSummary{" +
+                "accountsCount=" + accountsCount +
+                ", transactionsCount=" + transactionsCount +
+                ", totalDeposits=" + totalDeposits +
+                ", totalWithdrawals=" + totalWithdrawals +
+                ", totalMoney=" + totalMoney +
+                ", transactionIdLimit=" + transactionIdLimit +
+                '}';
+    }
+}
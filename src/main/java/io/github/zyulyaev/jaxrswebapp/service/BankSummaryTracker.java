@@ -0,0 +1,23 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+/**
+ * Bank service which maintains bank-wide totals as transactions are committed, so they are read without scanning
+ * accounts
+ */
+public interface BankSummaryTracker {
+    /**
+     * Returns current totals. Transactions being committed may be partially included, e.g. counted but not added
+     * to total deposits yet.
+     *
+     * @return bank summary without transaction id limit
+     */
+    BankSummary summarize();
+
+    /**
+     * Returns totals of exactly the transactions with ids below {@linkplain BankSummary#getTransactionIdLimit()
+     * limit}. Recently committed transactions may be left out.
+     *
+     * @return bank summary with transaction id limit
+     */
+    BankSummary summarizeConsistently();
+}
@@ -0,0 +1,69 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import java.util.Objects;
+
+/**
+ * Immutable result of a single {@link TransactionRequest} of a batch: either created transaction or failure cause.
+ */
+public final class BatchResult {
+    private final Transaction transaction;
+    private final IllegalArgumentException invalidRequest;
+    private final BankOperationException operationFailure;
+
+    private BatchResult(Transaction transaction, IllegalArgumentException invalidRequest,
+                        BankOperationException operationFailure)
+    {
+        this.transaction = transaction;
+        this.invalidRequest = invalidRequest;
+        this.operationFailure = operationFailure;
+    }
+
+    public static BatchResult created(Transaction transaction) {
+        return new BatchResult(Objects.requireNonNull(transaction, "transaction"), null, null);
+    }
+
+    public static BatchResult invalid(IllegalArgumentException cause) {
+        return new BatchResult(null, Objects.requireNonNull(cause, "cause"), null);
+    }
+
+    public static BatchResult failed(BankOperationException cause) {
+        return new BatchResult(null, null, Objects.requireNonNull(cause, "cause"));
+    }
+
+    /**
+     * Returns created transaction.
+     *
+     * @return created transaction, or null if request was invalid or failed
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Returns cause of rejecting invalid request, e.g. with not positive amount.
+     *
+     * @return cause of rejecting invalid request, or null if request was valid
+     */
+    public IllegalArgumentException getInvalidRequest() {
+        return invalidRequest;
+    }
+
+    /**
+     * Returns cause of failing valid request, e.g. {@link AccountNotFoundException}, {@link OverdraftException} or
+     * {@link BalanceOverflowException}.
+     *
+     * @return cause of failing valid request, or null if request did not fail
+     */
+    public BankOperationException getOperationFailure() {
+        return operationFailure;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "transaction=" + transaction +
+                ", invalidRequest=" + invalidRequest +
+                ", operationFailure=" + operationFailure +
+                '}';
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+/**
+ * Immutable estimate of how heavily an account was used and contended recently. Estimates may exceed actual values,
+ * but are never below them.
+ */
+public final class HotAccount {
+    private final int accountId;
+    private final long operations;
+    private final long balanceRetries;
+    private final long monitorWaitNanos;
+
+    public HotAccount(int accountId, long operations, long balanceRetries, long monitorWaitNanos) {
+        this.accountId = accountId;
+        this.operations = operations;
+        this.balanceRetries = balanceRetries;
+        this.monitorWaitNanos = monitorWaitNanos;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return number of committed transactions involving the account
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return number of balance updates retried because of concurrent updates
+     */
+    public long getBalanceRetries() {
+        return balanceRetries;
+    }
+
+    /**
+     * @return time spent waiting for the account monitor in nanoseconds
+     */
+    public long getMonitorWaitNanos() {
+        return monitorWaitNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "HotAccount{" +
+                "accountId=" + accountId +
+                ", operations=" + operations +
+                ", balanceRetries=" + balanceRetries +
+                ", monitorWaitNanos=" + monitorWaitNanos +
+                '}';
+    }
+}
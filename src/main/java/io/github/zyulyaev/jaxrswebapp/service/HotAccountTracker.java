@@ -0,0 +1,16 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import java.util.List;
+
+/**
+ * Bank service which tracks the most used and contended accounts over a recent time window
+ */
+public interface HotAccountTracker {
+    /**
+     * Returns the most used and contended accounts of the recent time window.
+     *
+     * @param limit max number of accounts to return
+     * @return hot accounts, the most used first
+     */
+    List<HotAccount> lookupHotAccounts(int limit);
+}
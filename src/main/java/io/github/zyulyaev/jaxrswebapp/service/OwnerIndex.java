@@ -0,0 +1,90 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * <p>Concurrent index of account ids by owner.</p>
+ * <p>Entries are kept in a skip list ordered by owner and then by account id, so accounts of an owner, as well as
+ * accounts of all owners starting with a prefix, are adjacent: a page of {@code k} of them is found in
+ * {@code O(log n + k)} time. Owners are deduplicated, accounts of the same owner share one string instance.</p>
+ * <p>Accounts without owner are not indexed.</p>
+ */
+public final class OwnerIndex {
+    private static final Comparator<Entry> ORDER = Comparator.<Entry, String>comparing(entry -> entry.owner)
+            .thenComparingInt(entry -> entry.accountId);
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+
+    private static final class Entry {
+        private final String owner;
+        private final int accountId;
+
+        Entry(String owner, int accountId) {
+            this.owner = owner;
+            this.accountId = accountId;
+        }
+    }
+
+    /**
+     * Returns indexed instance of the owner if there is one. Accounts should keep returned instance rather than
+     * their own copy.
+     *
+     * @param owner owner, may be null
+     * @return equal indexed owner, or passed one if it is not indexed yet
+     */
+    public String deduplicate(String owner) {
+        if (owner == null) {
+            return null;
+        }
+        Entry first = entries.ceiling(new Entry(owner, Integer.MIN_VALUE));
+        return first != null && first.owner.equals(owner) ? first.owner : owner;
+    }
+
+    /**
+     * Index account. Must be called after the account is published, so that every found id can be resolved.
+     *
+     * @param owner     owner of the account, may be null
+     * @param accountId account id
+     */
+    public void add(String owner, int accountId) {
+        if (owner != null) {
+            entries.add(new Entry(owner, accountId));
+        }
+    }
+
+    /**
+     * Find ids of accounts of the owner, or of owners starting with the prefix, in ascending order of owner and then
+     * account id.
+     *
+     * @param owner      owner or owner prefix to look for
+     * @param prefix     whether to match owners starting with {@code owner} rather than equal to it
+     * @param afterOwner owner of the account to start after, null to start from the first matching account
+     * @param afterId    id of the account to start after, ignored if {@code afterOwner} is null
+     * @param limit      max number of ids to return
+     * @return found account ids
+     */
+    public int[] search(String owner, boolean prefix, String afterOwner, int afterId, int limit) {
+        Entry first = new Entry(owner, Integer.MIN_VALUE);
+        NavigableSet<Entry> tail;
+        if (afterOwner != null && ORDER.compare(new Entry(afterOwner, afterId), first) > 0) {
+            tail = entries.tailSet(new Entry(afterOwner, afterId), false);
+        } else {
+            tail = entries.tailSet(first, true);
+        }
+        int[] accountIds = new int[Math.min(limit, 16)];
+        int count = 0;
+        for (Entry entry : tail) {
+            if (count == limit || !(prefix ? entry.owner.startsWith(owner) : entry.owner.equals(owner))) {
+                break;
+            }
+            if (count == accountIds.length) {
+                accountIds = Arrays.copyOf(accountIds, Math.min(limit, count * 2));
+            }
+            accountIds[count++] = entry.accountId;
+        }
+        return count == accountIds.length ? accountIds : Arrays.copyOf(accountIds, count);
+    }
+}
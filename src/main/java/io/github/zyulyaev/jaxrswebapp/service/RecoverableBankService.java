@@ -0,0 +1,80 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * <p>{@link BankService} which state can be restored from previously recorded accounts and transactions, e.g. during
+ * journal replay.</p>
+ * <p>Restore operations apply recorded facts as is: they keep recorded ids and timestamps and do not check
+ * overdrafts. They must only be called before the service is used by anyone else.</p>
+ */
+public interface RecoverableBankService extends BankService {
+    /**
+     * Restore previously created account with zero balance.
+     *
+     * @param accountId    recorded account id
+     * @param owner        recorded account owner
+     * @param creationTime recorded account creation time
+     */
+    default void restoreAccount(int accountId, String owner, Instant creationTime) {
+        restoreAccount(accountId, owner, creationTime, BigDecimal.ZERO);
+    }
+
+    /**
+     * Restore previously created account with specified balance, e.g. from a snapshot.
+     *
+     * @param accountId    recorded account id
+     * @param owner        recorded account owner
+     * @param creationTime recorded account creation time
+     * @param balance      recorded account balance
+     */
+    void restoreAccount(int accountId, String owner, Instant creationTime, BigDecimal balance);
+
+    /**
+     * Restore previously committed transaction and apply it to the balances of its accounts.
+     *
+     * @param transactionId   recorded transaction id
+     * @param transactionTime recorded transaction time
+     * @param sourceAccountId recorded source account id, or null in case of deposit
+     * @param targetAccountId recorded target account id, or null in case of withdrawal
+     * @param amount          recorded transaction amount
+     * @throws AccountNotFoundException if any of specified accounts is not restored yet
+     */
+    void restoreTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                            Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException;
+
+    /**
+     * Restore previously committed transaction which is already accounted in restored balances, e.g. one which
+     * is recorded in a snapshot.
+     *
+     * @param transactionId   recorded transaction id
+     * @param transactionTime recorded transaction time
+     * @param sourceAccountId recorded source account id, or null in case of deposit
+     * @param targetAccountId recorded target account id, or null in case of withdrawal
+     * @param amount          recorded transaction amount
+     * @throws AccountNotFoundException if any of specified accounts is not restored yet
+     */
+    void restoreAppliedTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                   Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException;
+
+    /**
+     * <p>Restore previously committed transactions which are already accounted in restored balances, e.g. all
+     * transactions of a snapshot, at once.</p>
+     * <p>Default implementation restores transactions one by one.</p>
+     *
+     * @param transactions recorded transactions
+     * @throws AccountNotFoundException if any of their accounts is not restored yet
+     */
+    default void restoreAppliedTransactions(TransactionColumns transactions) throws AccountNotFoundException {
+        for (int i = 0; i < transactions.size(); i++) {
+            int sourceAccountId = transactions.getSourceAccountId(i);
+            int targetAccountId = transactions.getTargetAccountId(i);
+            restoreAppliedTransaction(transactions.getTransactionId(i),
+                    Instant.ofEpochSecond(transactions.getEpochSecond(i), transactions.getNano(i)),
+                    sourceAccountId == TransactionColumns.NO_ACCOUNT ? null : sourceAccountId,
+                    targetAccountId == TransactionColumns.NO_ACCOUNT ? null : targetAccountId,
+                    BigDecimal.valueOf(transactions.getAmount(i), transactions.getScale()));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+/**
+ * <p>Fields of previously recorded transactions stored column by column, e.g. in a snapshot, and read by index
+ * without creating any objects.</p>
+ * <p>Amounts are numbers of minor units with {@linkplain #getScale() scale} of the columns. The missing account of a
+ * deposit or a withdrawal is {@link #NO_ACCOUNT}.</p>
+ */
+public interface TransactionColumns {
+    /**
+     * Source account id of deposits and target account id of withdrawals
+     */
+    int NO_ACCOUNT = -1;
+
+    /**
+     * @return number of transactions
+     */
+    int size();
+
+    /**
+     * @return number of fractional digits of amounts
+     */
+    int getScale();
+
+    int getTransactionId(int index);
+
+    /**
+     * @return seconds of transaction time since the epoch
+     */
+    long getEpochSecond(int index);
+
+    /**
+     * @return nanoseconds of transaction time within the second
+     */
+    int getNano(int index);
+
+    int getSourceAccountId(int index);
+
+    int getTargetAccountId(int index);
+
+    /**
+     * @return amount in minor units
+     */
+    long getAmount(int index);
+}
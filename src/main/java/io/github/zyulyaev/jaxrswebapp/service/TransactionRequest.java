@@ -0,0 +1,40 @@
+package io.github.zyulyaev.jaxrswebapp.service;
+
+import java.math.BigDecimal;
+
+/**
+ * <p>Immutable request to create a transaction.</p>
+ * <p>Operation type is defined by source and target account ids the same way as for {@link Transaction}.</p>
+ */
+public final class TransactionRequest {
+    private final Integer sourceAccountId;
+    private final Integer targetAccountId;
+    private final BigDecimal amount;
+
+    public TransactionRequest(Integer sourceAccountId, Integer targetAccountId, BigDecimal amount) {
+        this.sourceAccountId = sourceAccountId;
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+    }
+
+    public Integer getSourceAccountId() {
+        return sourceAccountId;
+    }
+
+    public Integer getTargetAccountId() {
+        return targetAccountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionRequest{" +
+                "sourceAccountId=" + sourceAccountId +
+                ", targetAccountId=" + targetAccountId +
+                ", amount=" + amount +
+                '}';
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.zyulyaev.jaxrswebapp.service.audit;
+
+import io.github.zyulyaev.jaxrswebapp.concurrent.RingBuffer;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
+import io.github.zyulyaev.jaxrswebapp.service.Account;
+import io.github.zyulyaev.jaxrswebapp.service.Transaction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.apache.logging.log4j.util.Unbox.box;
+
+/**
+ * <p>Asynchronous audit log of created accounts and committed transactions.</p>
+ * <p>Recorded events are put into a bounded {@link RingBuffer} and written by a dedicated daemon thread in batches,
+ * so neither formatting nor appender I/O happens on the caller's thread. What happens when the buffer is full is
+ * defined by {@link OverflowPolicy}.</p>
+ * <p>Time callers spend blocked on a full buffer is exported as a metric, it is the only wait of committing
+ * threads on the log.</p>
+ */
+public final class AuditLog implements AutoCloseable, MetricsSource {
+    /**
+     * Default ring buffer capacity
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final Logger log = LogManager.getLogger(AuditLog.class);
+    private static final int BATCH_SIZE = 1024;
+    private static final int ACCOUNTS_PER_LINE = 1024;
+    private static final long IDLE_WAIT_MILLIS = 100;
+
+    /**
+     * Defines what {@link AuditLog} does with an event when the ring buffer is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Caller waits until the writer frees space
+         */
+        BLOCK,
+        /**
+         * Event is silently discarded
+         */
+        DROP,
+        /**
+         * Event is discarded, the number of discarded events is written to the audit log
+         */
+        COUNT
+    }
+
+    private final RingBuffer<Object> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Create new audit log and start its writer thread.
+     *
+     * @param capacity       max number of pending events
+     * @param overflowPolicy what to do when there are too many pending events
+     */
+    public AuditLog(int capacity, OverflowPolicy overflowPolicy) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Record account creation.
+     *
+     * @param account created account
+     */
+    public void accountCreated(Account account) {
+        record(account);
+    }
+
+    /**
+     * Record creation of a batch of accounts. The batch takes one place in the buffer and is written as lines of up
+     * to {@value #ACCOUNTS_PER_LINE} accounts.
+     *
+     * @param accounts created accounts
+     */
+    public void accountsCreated(List<? extends Account> accounts) {
+        record(accounts);
+    }
+
+    /**
+     * Record transaction commit.
+     *
+     * @param transaction committed transaction
+     */
+    public void transactionCreated(Transaction transaction) {
+        record(transaction);
+    }
+
+    /**
+     * Returns number of events discarded due to buffer overflow.
+     *
+     * @return number of discarded events
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void record(Object event) {
+        if (buffer.offer(event)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            long blockStart = System.nanoTime();
+            try {
+                buffer.put(event);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                droppedCount.incrementAndGet();
+            } finally {
+                blockedNanos.add(System.nanoTime() - blockStart);
+            }
+        } else {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.counter("bank_audit_dropped_total", "Audit events discarded due to buffer overflow",
+                droppedCount.get());
+        writer.family("bank_audit_blocked_seconds_total", "counter",
+                "Time committing threads spent blocked on a full audit buffer")
+                .sample("bank_audit_blocked_seconds_total", blockedNanos.sum() / 1e9);
+    }
+
+    private void writeLoop() {
+        long reportedDroppedCount = 0;
+        while (!closed) {
+            if (buffer.drain(this::write, BATCH_SIZE) == 0) {
+                buffer.awaitNotEmpty(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            reportedDroppedCount = reportDropped(reportedDroppedCount);
+        }
+        while (buffer.drain(this::write, BATCH_SIZE) != 0) {
+            // flush remaining events
+        }
+        reportDropped(reportedDroppedCount);
+    }
+
+    private void write(Object event) {
+        if (event instanceof Transaction) {
+            log.info("Transaction created: {}", event);
+        } else if (event instanceof List) {
+            List<?> accounts = (List<?>) event;
+            for (int from = 0; from < accounts.size(); from += ACCOUNTS_PER_LINE) {
+                log.info("Accounts created: {}",
+                        accounts.subList(from, Math.min(accounts.size(), from + ACCOUNTS_PER_LINE)));
+            }
+        } else {
+            log.info("Account created: {}", event);
+        }
+    }
+
+    private long reportDropped(long reportedDroppedCount) {
+        if (overflowPolicy != OverflowPolicy.COUNT) {
+            return reportedDroppedCount;
+        }
+        long current = droppedCount.get();
+        if (current != reportedDroppedCount) {
+            log.warn("Audit events dropped: {}", box(current - reportedDroppedCount));
+        }
+        return current;
+    }
+
+    /**
+     * Write all pending events and stop the writer thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
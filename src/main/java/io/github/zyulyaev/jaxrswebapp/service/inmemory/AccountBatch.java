@@ -0,0 +1,94 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankOperationException;
+import io.github.zyulyaev.jaxrswebapp.service.BatchResult;
+import io.github.zyulyaev.jaxrswebapp.service.OverdraftException;
+
+import java.util.Arrays;
+
+/**
+ * <p>Deposits and withdrawals of one account requested within a batch, in request order.</p>
+ * <p>Operations are applied holding the account monitor once, so no transfer involving the account is applied
+ * between them. Failed ones are dropped, so that the rest can be committed with a block of transaction ids.</p>
+ */
+final class AccountBatch {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final InMemoryAccount account;
+    /**
+     * Positions of operations in the batch
+     */
+    private int[] indexes = new int[INITIAL_CAPACITY];
+    /**
+     * Amounts in minor units, positive ones are deposited and negative ones withdrawn
+     */
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int count;
+    private int overdrafts;
+
+    AccountBatch(InMemoryAccount account) {
+        this.account = account;
+    }
+
+    InMemoryAccount getAccount() {
+        return account;
+    }
+
+    /**
+     * @param index  position of the operation in the batch
+     * @param amount amount in minor units, positive for deposit and negative for withdrawal
+     */
+    void add(int index, long amount) {
+        if (count == indexes.length) {
+            indexes = Arrays.copyOf(indexes, count * 2);
+            amounts = Arrays.copyOf(amounts, count * 2);
+        }
+        indexes[count] = index;
+        amounts[count] = amount;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int getIndex(int i) {
+        return indexes[i];
+    }
+
+    long getAmount(int i) {
+        return amounts[i];
+    }
+
+    /**
+     * Applies operations in order, results of failed ones are set and they are dropped.
+     *
+     * @param results results of the batch
+     * @return number of withdrawals rejected for lack of money
+     */
+    int apply(BatchResult[] results) {
+        account.runLocked(() -> applyLocked(results));
+        return overdrafts;
+    }
+
+    private void applyLocked(BatchResult[] results) {
+        int applied = 0;
+        for (int i = 0; i < count; i++) {
+            long amount = amounts[i];
+            try {
+                if (amount > 0) {
+                    account.credit(amount);
+                } else if (!account.debit(-amount)) {
+                    overdrafts++;
+                    throw new OverdraftException(account.getAccountId());
+                }
+                indexes[applied] = indexes[i];
+                amounts[applied] = amount;
+                applied++;
+            } catch (BankOperationException ex) {
+                results[indexes[i]] = BatchResult.failed(ex);
+            }
+        }
+        count = applied;
+    }
+}
@@ -12,13 +12,15 @@ final class AccountSnapshot implements Account {
     private final int accountId;
     private final String owner;
     private final Instant creationTime;
-    private final BigDecimal balance;
+    private final long balance;
+    private final int scale;
 
-    AccountSnapshot(int accountId, String owner, Instant creationTime, BigDecimal balance) {
+    AccountSnapshot(int accountId, String owner, Instant creationTime, long balance, int scale) {
         this.accountId = accountId;
         this.owner = owner;
         this.creationTime = creationTime;
         this.balance = balance;
+        this.scale = scale;
     }
 
     @Override
@@ -38,6 +40,11 @@ final class AccountSnapshot implements Account {
 
     @Override
     public BigDecimal getBalance() {
+        return BigDecimal.valueOf(balance, scale);
+    }
+
+    @Override
+    public long getVersion() {
         return balance;
     }
 
@@ -47,7 +54,7 @@ final class AccountSnapshot implements Account {
                 "accountId=" + accountId +
                 ", owner='" + owner + '\'' +
                 ", creationTime=" + creationTime +
-                ", balance=" + balance +
+                ", balance=" + getBalance() +
                 '}';
     }
 }
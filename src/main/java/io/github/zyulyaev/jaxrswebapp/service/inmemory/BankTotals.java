@@ -0,0 +1,359 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankSummary;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Bank-wide totals maintained at commit time.</p>
+ * <p>Transaction ids are grouped into epochs of {@value #EPOCH_SIZE} consecutive ids, every epoch has striped
+ * counters of finished transactions, deposited and withdrawn units, so committing threads do not contend on shared
+ * variables. Once all transactions of an epoch are finished it is folded into an immutable base, which happens when
+ * the first transaction of a following epoch is committed. Only a couple of epochs are open at a time, so reading
+ * totals costs {@code O(stripes)}.</p>
+ * <p>Consistent totals are read from the base and, if no id was assigned while reading it, the open epoch: they
+ * include exactly the transactions with ids below some limit. The limit never decreases: the latest consistent
+ * totals are kept and returned until totals with a greater limit are read.</p>
+ * <p>Transactions are only restored before any is committed, their ids are below the first committed id. They are
+ * counted apart from epochs. Ids which were assigned to transactions failed to commit, or skipped without being
+ * assigned, are counted as aborted, so they do not hold folding back.</p>
+ * <p>Totals below any finished id are read from the base corrected by the transactions between that id and the
+ * first open epoch, so totals of independent id sequences can be summed at ids of a common limit.</p>
+ */
+final class BankTotals {
+    private static final int EPOCH_SHIFT = 10;
+    private static final int EPOCH_SIZE = 1 << EPOCH_SHIFT;
+    private static final int EPOCH_MASK = EPOCH_SIZE - 1;
+
+    private final int scale;
+    private final AtomicInteger transactionIdSequence;
+    private final LongAdder accountsCount = new LongAdder();
+    private final LongAdder restoredCount = new LongAdder();
+    private final LongAdder restoredDeposits = new LongAdder();
+    private final LongAdder restoredWithdrawals = new LongAdder();
+    private final LongAdder restoredMoney = new LongAdder();
+    private final ConcurrentHashMap<Integer, Epoch> epochs = new ConcurrentHashMap<>();
+    private final AtomicReference<Base> base = new AtomicReference<>(new Base(0, 0, 0, 0));
+    private final AtomicReference<Cut> latestCut = new AtomicReference<>(new Cut(0, 0, 0, 0));
+    /**
+     * The most recently opened epoch, saves map lookups of most commits
+     */
+    private volatile Epoch currentEpoch = new Epoch(0);
+    private volatile int restoredTransactionIdLimit;
+
+    /**
+     * Counters of transactions of one epoch. Transaction is counted as finished after its amount is added, so
+     * amounts of counted transactions are visible to whoever sees them counted.
+     */
+    private static final class Epoch {
+        private final int number;
+        private final LongAdder finishedCount = new LongAdder();
+        private final LongAdder abortedCount = new LongAdder();
+        private final LongAdder deposits = new LongAdder();
+        private final LongAdder withdrawals = new LongAdder();
+
+        Epoch(int number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * Totals of all transactions of folded epochs, which are the epochs below {@code epoch}
+     */
+    private static final class Base {
+        private final int epoch;
+        private final long transactionsCount;
+        private final long deposits;
+        private final long withdrawals;
+
+        Base(int epoch, long transactionsCount, long deposits, long withdrawals) {
+            this.epoch = epoch;
+            this.transactionsCount = transactionsCount;
+            this.deposits = deposits;
+            this.withdrawals = withdrawals;
+        }
+    }
+
+    /**
+     * Totals of exactly the transactions with ids below {@code limit}
+     */
+    private static final class Cut {
+        private final long limit;
+        private final long transactionsCount;
+        private final long deposits;
+        private final long withdrawals;
+
+        Cut(long limit, long transactionsCount, long deposits, long withdrawals) {
+            this.limit = limit;
+            this.transactionsCount = transactionsCount;
+            this.deposits = deposits;
+            this.withdrawals = withdrawals;
+        }
+    }
+
+    /**
+     * @param scale                 number of fractional digits of amounts
+     * @param transactionIdSequence sequence transaction ids are assigned from
+     */
+    BankTotals(int scale, AtomicInteger transactionIdSequence) {
+        this.scale = scale;
+        this.transactionIdSequence = transactionIdSequence;
+        epochs.put(0, currentEpoch);
+    }
+
+    void accountsCreated(int count) {
+        accountsCount.add(count);
+    }
+
+    void accountRestored(long balance) {
+        accountsCount.increment();
+        restoredMoney.add(balance);
+    }
+
+    /**
+     * @param deposit    deposited units, zero unless transaction is a deposit
+     * @param withdrawal withdrawn units, zero unless transaction is a withdrawal
+     * @param applied    whether restored balances already include the transaction
+     */
+    void transactionRestored(int transactionId, long deposit, long withdrawal, boolean applied) {
+        restoredCount.increment();
+        restoredDeposits.add(deposit);
+        restoredWithdrawals.add(withdrawal);
+        if (!applied) {
+            restoredMoney.add(deposit - withdrawal);
+        }
+        restoredTransactionIdLimit = Math.max(restoredTransactionIdLimit, transactionId + 1);
+    }
+
+    /**
+     * Counts restored transactions which restored balances already include.
+     *
+     * @param count       number of transactions
+     * @param deposits    units deposited by them
+     * @param withdrawals units withdrawn by them
+     * @param limit       id following the greatest of their ids
+     */
+    void transactionsRestored(int count, long deposits, long withdrawals, int limit) {
+        restoredCount.add(count);
+        restoredDeposits.add(deposits);
+        restoredWithdrawals.add(withdrawals);
+        restoredTransactionIdLimit = Math.max(restoredTransactionIdLimit, limit);
+    }
+
+    /**
+     * Considers ids below the limit which are not restored lost, so they are never committed.
+     */
+    void restoredBelow(int limit) {
+        restoredTransactionIdLimit = Math.max(restoredTransactionIdLimit, limit);
+    }
+
+    /**
+     * @param deposit    deposited units, zero unless transaction is a deposit
+     * @param withdrawal withdrawn units, zero unless transaction is a withdrawal
+     */
+    void transactionCommitted(int transactionId, long deposit, long withdrawal) {
+        Epoch epoch = epoch(transactionId);
+        if (deposit != 0) {
+            epoch.deposits.add(deposit);
+        }
+        if (withdrawal != 0) {
+            epoch.withdrawals.add(withdrawal);
+        }
+        epoch.finishedCount.increment();
+        opened(epoch, transactionId);
+    }
+
+    /**
+     * Counts id of a transaction which failed to commit after the id was assigned.
+     */
+    void transactionAborted(int transactionId) {
+        Epoch epoch = epoch(transactionId);
+        epoch.abortedCount.increment();
+        opened(epoch, transactionId);
+    }
+
+    /**
+     * Counts ids within {@code [from, to)} which are skipped without being assigned to any transaction.
+     */
+    void transactionsSkipped(int from, int to) {
+        for (int start = from; start < to; ) {
+            int end = (int) Math.min(to, epochStart((start >>> EPOCH_SHIFT) + 1));
+            Epoch epoch = epoch(start);
+            epoch.abortedCount.add(end - start);
+            opened(epoch, start);
+            start = end;
+        }
+    }
+
+    private Epoch epoch(int transactionId) {
+        int number = transactionId >>> EPOCH_SHIFT;
+        Epoch epoch = currentEpoch;
+        return epoch.number == number ? epoch : epochs.computeIfAbsent(number, Epoch::new);
+    }
+
+    /**
+     * Makes epoch current and folds the previous ones once the first id of the epoch is finished.
+     */
+    private void opened(Epoch epoch, int transactionId) {
+        if ((transactionId & EPOCH_MASK) == 0) {
+            currentEpoch = epoch;
+            fold();
+        }
+    }
+
+    /**
+     * Returns number of ids within {@code [start, end)} which are not restored.
+     */
+    private long expectedCount(long start, long end) {
+        return Math.max(end - Math.max(start, restoredTransactionIdLimit), 0);
+    }
+
+    private static long epochStart(int number) {
+        return (long) number << EPOCH_SHIFT;
+    }
+
+    /**
+     * Folds finished epochs into the base.
+     *
+     * @return base with all finished epochs folded
+     */
+    private Base fold() {
+        Base current = base.get();
+        int number = current.epoch;
+        long transactionsCount = current.transactionsCount;
+        long deposits = current.deposits;
+        long withdrawals = current.withdrawals;
+        while (true) {
+            Epoch epoch = epochs.get(number);
+            long finishedCount = epoch == null ? 0 : epoch.finishedCount.sum();
+            long abortedCount = epoch == null ? 0 : epoch.abortedCount.sum();
+            if (finishedCount + abortedCount != expectedCount(epochStart(number), epochStart(number + 1))) {
+                break;
+            }
+            if (epoch != null) {
+                transactionsCount += finishedCount;
+                deposits += epoch.deposits.sum();
+                withdrawals += epoch.withdrawals.sum();
+            }
+            number++;
+        }
+        if (number == current.epoch) {
+            return current;
+        }
+        Base folded = new Base(number, transactionsCount, deposits, withdrawals);
+        if (!base.compareAndSet(current, folded)) {
+            return base.get();
+        }
+        for (int i = current.epoch; i < number; i++) {
+            epochs.remove(i);
+        }
+        return folded;
+    }
+
+    /**
+     * Returns totals including all finished and some of the transactions being committed.
+     */
+    BankSummary summarize() {
+        while (true) {
+            Base current = base.get();
+            long transactionsCount = current.transactionsCount;
+            long deposits = current.deposits;
+            long withdrawals = current.withdrawals;
+            for (Map.Entry<Integer, Epoch> entry : epochs.entrySet()) {
+                if (entry.getKey() >= current.epoch) {
+                    Epoch epoch = entry.getValue();
+                    transactionsCount += epoch.finishedCount.sum();
+                    deposits += epoch.deposits.sum();
+                    withdrawals += epoch.withdrawals.sum();
+                }
+            }
+            // an epoch folded meanwhile may have been missed
+            if (base.get() == current) {
+                return toSummary(transactionsCount, deposits, withdrawals, null);
+            }
+        }
+    }
+
+    /**
+     * Returns totals of exactly the transactions with ids below the returned limit.
+     */
+    BankSummary summarizeConsistently() {
+        Base folded = fold();
+        long start = epochStart(folded.epoch);
+        long limit = Math.max(start, restoredTransactionIdLimit);
+        long transactionsCount = folded.transactionsCount;
+        long deposits = folded.deposits;
+        long withdrawals = folded.withdrawals;
+        int nextId = transactionIdSequence.get();
+        long end = Math.min(nextId, epochStart(folded.epoch + 1));
+        Epoch epoch = epochs.get(folded.epoch);
+        if (epoch != null && end > limit) {
+            long epochFinishedCount = epoch.finishedCount.sum();
+            long epochAbortedCount = epoch.abortedCount.sum();
+            long epochDeposits = epoch.deposits.sum();
+            long epochWithdrawals = epoch.withdrawals.sum();
+            // transactions with ids assigned after nextId was read could be counted instead of earlier ones
+            if (epochFinishedCount + epochAbortedCount == expectedCount(start, end)
+                    && (end < nextId || transactionIdSequence.get() == nextId))
+            {
+                transactionsCount += epochFinishedCount;
+                deposits += epochDeposits;
+                withdrawals += epochWithdrawals;
+                limit = end;
+            }
+        }
+        Cut cut = latestCut.accumulateAndGet(new Cut(limit, transactionsCount, deposits, withdrawals),
+                (latest, read) -> read.limit > latest.limit ? read : latest);
+        return toSummary(cut.transactionsCount, cut.deposits, cut.withdrawals, (int) cut.limit);
+    }
+
+    /**
+     * Returns totals of exactly the transactions with ids below specified limit, all of which must be finished.
+     * Transactions between the limit and the first epoch which is not folded are read from the store, so reading
+     * takes time proportional to the distance between them.
+     *
+     * @param limit        transaction id limit
+     * @param transactions store of the counted transactions
+     * @return totals with the limit
+     */
+    BankSummary summarizeBelow(int limit, TransactionStore transactions) {
+        Base folded = fold();
+        long transactionsCount = folded.transactionsCount;
+        long deposits = folded.deposits;
+        long withdrawals = folded.withdrawals;
+        long start = epochStart(folded.epoch);
+        // folded epochs either lack transactions below the limit or include ones above it
+        int sign = start < limit ? 1 : -1;
+        long end = Math.max(start, limit);
+        for (long transactionId = Math.max(Math.min(start, limit), restoredTransactionIdLimit); transactionId < end;
+             transactionId++)
+        {
+            InMemoryTransaction transaction = transactions.get((int) transactionId);
+            if (transaction != null) {
+                transactionsCount += sign;
+                if (transaction.isDeposit()) {
+                    deposits += sign * transaction.getUnits();
+                } else if (transaction.isWithdrawal()) {
+                    withdrawals += sign * transaction.getUnits();
+                }
+            }
+        }
+        return toSummary(transactionsCount, deposits, withdrawals, limit);
+    }
+
+    private BankSummary toSummary(long transactionsCount, long deposits, long withdrawals,
+                                  Integer transactionIdLimit)
+    {
+        long totalDeposits = restoredDeposits.sum() + deposits;
+        long totalWithdrawals = restoredWithdrawals.sum() + withdrawals;
+        long totalMoney = restoredMoney.sum() + deposits - withdrawals;
+        return new BankSummary(accountsCount.sum(), restoredCount.sum() + transactionsCount,
+                BigDecimal.valueOf(totalDeposits, scale), BigDecimal.valueOf(totalWithdrawals, scale),
+                BigDecimal.valueOf(totalMoney, scale), transactionIdLimit);
+    }
+}
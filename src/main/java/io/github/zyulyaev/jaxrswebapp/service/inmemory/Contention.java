@@ -0,0 +1,98 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.metrics.HeavyHitters;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
+import io.github.zyulyaev.jaxrswebapp.service.HotAccount;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Counters of contention on accounts. Counters are only touched on contended paths: failed balance CAS and a busy
+ * account monitor, so uncontended operations cost nothing extra.</p>
+ * <p>Operations, balance retries and monitor waits are also tracked per account by {@link HeavyHitters} over the
+ * last {@link #WINDOW}, so the hottest accounts can be found with fixed memory. Operations are sampled, every
+ * {@value #OPERATION_SAMPLING}th one on average is tracked with the weight of all of them.</p>
+ */
+final class Contention {
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+    private static final int SUB_WINDOWS = 6;
+    private static final int SKETCH_WIDTH = 1024;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int CANDIDATES = 32;
+    private static final int OPERATION_SAMPLING = 16;
+
+    private final LongAdder balanceRetries = new LongAdder();
+    private final LongAdder monitorWaits = new LongAdder();
+    private final LongAdder monitorWaitNanos = new LongAdder();
+    private final HeavyHitters operationsByAccount;
+    private final HeavyHitters balanceRetriesByAccount;
+    private final HeavyHitters monitorWaitNanosByAccount;
+
+    Contention(Clock clock) {
+        operationsByAccount = newHeavyHitters(clock);
+        balanceRetriesByAccount = newHeavyHitters(clock);
+        monitorWaitNanosByAccount = newHeavyHitters(clock);
+    }
+
+    private static HeavyHitters newHeavyHitters(Clock clock) {
+        return new HeavyHitters(clock, WINDOW, SUB_WINDOWS, SKETCH_WIDTH, SKETCH_DEPTH, CANDIDATES);
+    }
+
+    void operated(int accountId) {
+        if (ThreadLocalRandom.current().nextInt(OPERATION_SAMPLING) == 0) {
+            operationsByAccount.add(accountId, OPERATION_SAMPLING);
+        }
+    }
+
+    void balanceRetried(int accountId) {
+        balanceRetries.increment();
+        balanceRetriesByAccount.add(accountId, 1);
+    }
+
+    void monitorWaited(int accountId, long nanos) {
+        monitorWaits.increment();
+        monitorWaitNanos.add(nanos);
+        monitorWaitNanosByAccount.add(accountId, nanos);
+    }
+
+    /**
+     * Returns accounts which are among the heaviest by any of tracked values.
+     *
+     * @param limit max number of accounts to return
+     * @return hot accounts, the most used first
+     */
+    List<HotAccount> hotAccounts(int limit) {
+        Set<Integer> accountIds = new HashSet<>();
+        for (HeavyHitters heavyHitters : Arrays.asList(operationsByAccount, balanceRetriesByAccount,
+                monitorWaitNanosByAccount))
+        {
+            for (HeavyHitters.Entry entry : heavyHitters.top(limit)) {
+                accountIds.add(entry.getKey());
+            }
+        }
+        List<HotAccount> hotAccounts = new ArrayList<>(accountIds.size());
+        for (int accountId : accountIds) {
+            hotAccounts.add(new HotAccount(accountId, operationsByAccount.estimate(accountId),
+                    balanceRetriesByAccount.estimate(accountId), monitorWaitNanosByAccount.estimate(accountId)));
+        }
+        hotAccounts.sort(Comparator.comparingLong(HotAccount::getOperations)
+                .thenComparingLong(HotAccount::getMonitorWaitNanos)
+                .reversed());
+        return hotAccounts.subList(0, Math.min(limit, hotAccounts.size()));
+    }
+
+    void writeMetrics(MetricsWriter writer) {
+        writer.counter("bank_account_balance_retries_total",
+                "Balance updates retried because of a concurrent update of the same account",
+                balanceRetries.sum());
+        writer.counter("bank_account_monitor_waits_total",
+                "Transfers which found an account monitor busy", monitorWaits.sum());
+        writer.family("bank_account_monitor_wait_seconds_total", "counter",
+                "Time spent waiting for busy account monitors")
+                .sample("bank_account_monitor_wait_seconds_total", monitorWaitNanos.sum() / 1e9);
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Limit below which every index of a {@link TransactionStore} is finished: either written, as a committed or
+ * skipped record, or never assigned before restore.</p>
+ * <p>Concurrent commits write records out of order. The limit is only advanced by the writer of the record at the
+ * limit, which walks it past all records written by then. A writer of a record above the limit leaves it to the
+ * writer of the record at the limit: writers publish records before reading the limit and walkers advance the limit
+ * before reading the next record, so at least one of them sees the other and no written record is left behind.</p>
+ */
+final class FinishedIdLimit {
+    private final TransactionStore transactions;
+    private final AtomicInteger limit = new AtomicInteger();
+
+    FinishedIdLimit(TransactionStore transactions) {
+        this.transactions = transactions;
+    }
+
+    /**
+     * @return index of the lowest record which is not finished yet
+     */
+    int get() {
+        return limit.get();
+    }
+
+    /**
+     * Advances the limit after records within {@code [from, to)} are written, if it is their turn.
+     *
+     * @param from first written index
+     * @param to   index following the last written one
+     */
+    void written(int from, int to) {
+        int current = limit.get();
+        if (current < from || current >= to) {
+            return;
+        }
+        while (transactions.isWritten(current)) {
+            limit.compareAndSet(current, current + 1);
+            current = limit.get();
+        }
+    }
+
+    /**
+     * Moves the limit past restored index. Must not be called concurrently with commits.
+     *
+     * @param index restored index, anything missing below it is considered lost
+     */
+    void restored(int index) {
+        limit.accumulateAndGet(index + 1, Math::max);
+    }
+}
@@ -1,29 +1,229 @@
 package io.github.zyulyaev.jaxrswebapp.service.inmemory;
 
+import io.github.zyulyaev.jaxrswebapp.service.BalanceOverflowException;
+
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
- * Mutable in-memory account state class
+ * <p>Mutable in-memory account state class</p>
+ * <p>Balance is stored as a number of minor units (e.g. cents for scale 2) and updated with CAS loops,
+ * so neither deposits nor withdrawals lock the account. Transfers hold monitors of both accounts, so concurrent
+ * transfers never pass the balance checks of each other. Snapshots read the balance without locking: debit and
+ * credit of a transfer change different accounts, so a single balance is never in the middle of one.</p>
+ * <p>Deposits never raise balance above {@link #MAX_BALANCE}. A transfer checks it before debiting the source and
+ * then credits the target unconditionally: a deposit racing with the transfer can make the target exceed the limit
+ * by at most the transferred amount, which is below the limit itself, so balances never overflow {@code long} and
+ * a transfer never has to be undone.</p>
+ * <p>Ids of committed transactions involving the account are kept in a {@link TransactionHistory}, which commits
+ * append to without locking. Holders of the monitor raise a busy flag, so transfers which find it raised time their
+ * wait for {@link Contention} without timing uncontended ones.</p>
  */
 final class InMemoryAccount {
+    private static final AtomicLongFieldUpdater<InMemoryAccount> BALANCE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(InMemoryAccount.class, "balance");
+    private static final AtomicIntegerFieldUpdater<InMemoryAccount> MONITOR_BUSY_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(InMemoryAccount.class, "monitorBusy");
+
+    /**
+     * Max balance in minor units deposits and transfers can raise the balance to
+     */
+    static final long MAX_BALANCE = Long.MAX_VALUE / 2;
+
     private final int accountId;
     private final String owner;
     private final Instant creationTime;
-    volatile BigDecimal balance = BigDecimal.ZERO;
+    private final int scale;
+    private final Contention contention;
+    private volatile long balance;
+    private volatile int monitorBusy;
+    private final TransactionHistory history = new TransactionHistory();
 
-    InMemoryAccount(int accountId, String owner, Instant creationTime) {
+    InMemoryAccount(int accountId, String owner, Instant creationTime, int scale, Contention contention) {
         this.accountId = accountId;
         this.owner = owner;
         this.creationTime = creationTime;
+        this.scale = scale;
+        this.contention = contention;
     }
 
     int getAccountId() {
         return accountId;
     }
 
+    long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Adds specified amount to the balance.
+     *
+     * @param amount amount in minor units, must be positive
+     * @throws BalanceOverflowException if balance would exceed {@link #MAX_BALANCE}
+     */
+    void credit(long amount) throws BalanceOverflowException {
+        long current = balance;
+        while (true) {
+            if (current > MAX_BALANCE - amount) {
+                throw new BalanceOverflowException(accountId);
+            }
+            if (BALANCE_UPDATER.compareAndSet(this, current, current + amount)) {
+                return;
+            }
+            contention.balanceRetried(accountId);
+            current = balance;
+        }
+    }
+
+    /**
+     * Changes the balance by specified amount without any checks. Used by restore only, which replays already
+     * checked operations.
+     *
+     * @param amount amount in minor units of any sign
+     * @throws ArithmeticException if balance overflows
+     */
+    void adjust(long amount) {
+        long current = balance;
+        while (!BALANCE_UPDATER.compareAndSet(this, current, Math.addExact(current, amount))) {
+            current = balance;
+        }
+    }
+
+    /**
+     * Subtracts specified amount from the balance unless that would make the balance negative.
+     *
+     * @param amount amount in minor units, must be positive
+     * @return true if balance was updated, false if there is not enough money
+     */
+    boolean debit(long amount) {
+        long current = balance;
+        while (current >= amount) {
+            if (BALANCE_UPDATER.compareAndSet(this, current, current - amount)) {
+                return true;
+            }
+            contention.balanceRetried(accountId);
+            current = balance;
+        }
+        return false;
+    }
+
+    /**
+     * Moves specified amount from this account to the target one holding monitors of both, taken in order of
+     * account ids so that concurrent transfers can not deadlock.
+     *
+     * @param target target account
+     * @param amount amount in minor units, must be positive
+     * @return true if the amount is moved, false if there is not enough money on this account
+     * @throws BalanceOverflowException if target balance would exceed {@link #MAX_BALANCE}
+     */
+    boolean transferTo(InMemoryAccount target, long amount) throws BalanceOverflowException {
+        InMemoryAccount first = accountId < target.accountId ? this : target;
+        InMemoryAccount second = first == this ? target : this;
+        long firstWaitStart = first.awaitMonitorStart();
+        synchronized (first) {
+            first.monitorEntered(firstWaitStart);
+            try {
+                long secondWaitStart = second.awaitMonitorStart();
+                synchronized (second) {
+                    second.monitorEntered(secondWaitStart);
+                    try {
+                        // other transfers to the target wait for its monitor, deposits keep it within the limit
+                        if (target.balance > MAX_BALANCE - amount) {
+                            throw new BalanceOverflowException(target.accountId);
+                        }
+                        if (!debit(amount)) {
+                            return false;
+                        }
+                        // at most 2 * MAX_BALANCE, see class documentation
+                        BALANCE_UPDATER.getAndAdd(target, amount);
+                        return true;
+                    } finally {
+                        MONITOR_BUSY_UPDATER.lazySet(second, 0);
+                    }
+                }
+            } finally {
+                MONITOR_BUSY_UPDATER.lazySet(first, 0);
+            }
+        }
+    }
+
+    /**
+     * Adds id of a transaction which is not published yet to the account history without locking.
+     *
+     * @param transactionId transaction id
+     */
+    void addTransactionId(int transactionId) {
+        history.append(transactionId);
+    }
+
+    /**
+     * Adds ids of transactions which are not published yet to the account history at once.
+     *
+     * @param firstId id of the first transaction
+     * @param step    difference between consecutive ids
+     * @param count   number of ids
+     */
+    void addTransactionIds(int firstId, int step, int count) {
+        history.append(firstId, step, count);
+    }
+
+    /**
+     * Adds ids of restored transactions to the account history. Used by restore only.
+     *
+     * @param transactionIds sorted transaction ids, the array is kept by the history
+     */
+    void restoreTransactionIds(int[] transactionIds) {
+        history.restore(transactionIds);
+    }
+
+    /**
+     * Returns ids of transactions involving the account in ascending order. Ids are added out of order, so callers
+     * pass the finished id limit as {@code beforeId}: ids below it are complete.
+     *
+     * @param afterId  id of the transaction to start after
+     * @param beforeId finished id limit
+     * @param limit    max number of ids to return
+     * @return transaction ids greater than {@code afterId} and less than {@code beforeId}
+     */
+    int[] getTransactionIds(int afterId, long beforeId, int limit) {
+        return history.get(afterId, beforeId, limit);
+    }
+
+    /**
+     * Runs action holding the account monitor, so no transfer involving the account is applied meanwhile.
+     *
+     * @param action action to run
+     */
+    void runLocked(Runnable action) {
+        long waitStart = awaitMonitorStart();
+        synchronized (this) {
+            monitorEntered(waitStart);
+            try {
+                action.run();
+            } finally {
+                MONITOR_BUSY_UPDATER.lazySet(this, 0);
+            }
+        }
+    }
+
+    /**
+     * @return time the wait for the monitor starts at, or zero if the monitor is free
+     */
+    private long awaitMonitorStart() {
+        return monitorBusy == 0 ? 0 : System.nanoTime();
+    }
+
+    private void monitorEntered(long waitStart) {
+        MONITOR_BUSY_UPDATER.lazySet(this, 1);
+        if (waitStart != 0) {
+            contention.monitorWaited(accountId, System.nanoTime() - waitStart);
+        }
+    }
+
     AccountSnapshot toSnapshot() {
-        return new AccountSnapshot(accountId, owner, creationTime, balance);
+        return new AccountSnapshot(accountId, owner, creationTime, balance, scale);
     }
 
     @Override
@@ -32,7 +232,7 @@ final class InMemoryAccount {
                 "accountId=" + accountId +
                 ", owner='" + owner + '\'' +
                 ", creationTime=" + creationTime +
-                ", balance=" + balance +
+                ", balance=" + BigDecimal.valueOf(balance, scale) +
                 '}';
     }
 }
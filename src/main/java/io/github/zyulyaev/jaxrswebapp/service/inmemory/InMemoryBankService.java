@@ -1,102 +1,337 @@
 package io.github.zyulyaev.jaxrswebapp.service.inmemory;
 
+import io.github.zyulyaev.jaxrswebapp.concurrent.SegmentedArray;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
 import io.github.zyulyaev.jaxrswebapp.service.*;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Clock;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * In-memory implementation of {@link BankService}
+ * <p>In-memory implementation of {@link BankService}, can be restored with {@link RecoverableBankService}
+ * operations</p>
+ * <p>Money is kept as {@code long} numbers of minor units with fixed scale, amounts are converted from and to
+ * {@link BigDecimal} only at the interface boundary. Transactions are kept in columnar {@link TransactionStore}
+ * rather than as objects. Concurrent commits finish out of order, so account history pages stop at the lowest
+ * transaction id which is not finished yet.</p>
+ * <p>Committed operations, overdrafts and contention on accounts are counted and exported as metrics. The most
+ * used and contended accounts are tracked with fixed memory.</p>
+ * <p>Bank-wide totals are maintained in {@link BankTotals} as accounts are created and transactions committed.</p>
+ * <p>Audit log passed by the caller is owned by the caller, one created by the service itself is stopped on
+ * {@link #close()}.</p>
  */
-public final class InMemoryBankService implements BankService {
-    private static final Logger log = LogManager.getLogger(InMemoryBankService.class);
+public final class InMemoryBankService
+        implements RecoverableBankService, MetricsSource, HotAccountTracker, BankSummaryTracker, AutoCloseable
+{
+    /**
+     * Default number of fractional digits of money amounts
+     */
+    public static final int DEFAULT_SCALE = 2;
+
+    private static final int PAGE_CAPACITY_HINT = 1024;
 
     private final Clock clock;
-    private final List<InMemoryAccount> accounts = new ArrayList<>();
-    private final List<InMemoryTransaction> transactions = new ArrayList<>();
+    private final int scale;
+    private final AuditLog auditLog;
+    private final boolean ownsAuditLog;
+    private final AtomicInteger accountIdSequence = new AtomicInteger();
+    private final SegmentedArray<InMemoryAccount> accounts = new SegmentedArray<>();
+    private final OwnerIndex ownerIndex = new OwnerIndex();
+    private final AtomicInteger transactionIdSequence = new AtomicInteger();
+    private final TransactionStore transactions;
+    private final FinishedIdLimit finishedTransactionIds;
+    private final Contention contention;
+    private final BankTotals totals;
+    private final LongAdder deposits = new LongAdder();
+    private final LongAdder withdrawals = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder overdrafts = new LongAdder();
 
     /**
      * <p>Create new in-memory bank service.</p>
-     * <p>Passed clock instance is used to assign timestamps to events like account or transaction creation.</p>
+     * <p>Passed clock instance is used to assign timestamps to events like account or transaction creation.
+     * Events are recorded to an audit log owned by the service, which must be {@link #close() closed}.</p>
      *
      * @param clock clock to use for assigning timestamps
      */
     public InMemoryBankService(Clock clock) {
+        this(clock, DEFAULT_SCALE, new AuditLog(AuditLog.DEFAULT_CAPACITY, AuditLog.OverflowPolicy.BLOCK),
+                TransactionStorage.HEAP, true);
+    }
+
+    /**
+     * <p>Create new in-memory bank service which supports amounts with up to specified number of fractional
+     * digits.</p>
+     * <p>Passed clock instance is used to assign timestamps to events like account or transaction creation.
+     * Created accounts and committed transactions are recorded to passed audit log.</p>
+     *
+     * @param clock    clock to use for assigning timestamps
+     * @param scale    max number of fractional digits of money amounts
+     * @param auditLog audit log to record events to
+     */
+    public InMemoryBankService(Clock clock, int scale, AuditLog auditLog) {
+        this(clock, scale, auditLog, TransactionStorage.HEAP);
+    }
+
+    /**
+     * <p>Create new in-memory bank service which supports amounts with up to specified number of fractional
+     * digits and keeps transactions in specified storage.</p>
+     * <p>Passed clock instance is used to assign timestamps to events like account or transaction creation.
+     * Created accounts and committed transactions are recorded to passed audit log.</p>
+     *
+     * @param clock              clock to use for assigning timestamps
+     * @param scale              max number of fractional digits of money amounts
+     * @param auditLog           audit log to record events to
+     * @param transactionStorage where to keep committed transactions
+     */
+    public InMemoryBankService(Clock clock, int scale, AuditLog auditLog, TransactionStorage transactionStorage) {
+        this(clock, scale, auditLog, transactionStorage, false);
+    }
+
+    private InMemoryBankService(Clock clock, int scale, AuditLog auditLog, TransactionStorage transactionStorage,
+                                boolean ownsAuditLog)
+    {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Negative scale: " + scale);
+        }
         this.clock = clock;
+        this.scale = scale;
+        this.auditLog = auditLog;
+        this.ownsAuditLog = ownsAuditLog;
+        this.transactions = new TransactionStore(transactionStorage, scale, 1, 0);
+        this.finishedTransactionIds = new FinishedIdLimit(transactions);
+        this.contention = new Contention(clock);
+        this.totals = new BankTotals(scale, transactionIdSequence);
     }
 
     @Override
     public Account createAccount(String owner) {
-        synchronized (accounts) {
-            InMemoryAccount account = new InMemoryAccount(accounts.size(), owner, clock.instant());
-            accounts.add(account);
-            log.info("Account created: {}", account);
-            return account.toSnapshot();
+        int accountId = accountIdSequence.getAndIncrement();
+        if (accountId < 0) {
+            throw new IllegalStateException("Account ids exhausted");
+        }
+        String indexedOwner = ownerIndex.deduplicate(owner);
+        InMemoryAccount account = new InMemoryAccount(accountId, indexedOwner, clock.instant(), scale, contention);
+        accounts.set(accountId, account);
+        ownerIndex.add(indexedOwner, accountId);
+        totals.accountsCreated(1);
+        AccountSnapshot snapshot = account.toSnapshot();
+        auditLog.accountCreated(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Ids are reserved with a single atomic addition, accounts are then created and published without any
+     * shared state but the owner index.</p>
+     */
+    @Override
+    public List<Account> createAccounts(List<String> owners) {
+        int count = owners.size();
+        int firstAccountId = accountIdSequence.getAndAdd(count);
+        if (firstAccountId < 0 || firstAccountId > Integer.MAX_VALUE - count) {
+            throw new IllegalStateException("Account ids exhausted");
         }
+        Instant creationTime = clock.instant();
+        List<Account> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int accountId = firstAccountId + i;
+            String indexedOwner = ownerIndex.deduplicate(owners.get(i));
+            InMemoryAccount account = new InMemoryAccount(accountId, indexedOwner, creationTime, scale, contention);
+            accounts.set(accountId, account);
+            ownerIndex.add(indexedOwner, accountId);
+            created.add(account.toSnapshot());
+        }
+        totals.accountsCreated(count);
+        auditLog.accountsCreated(created);
+        return created;
     }
 
     @Override
     public Account lookupAccount(int accountId) {
-        synchronized (accounts) {
-            if (accountId < 0 || accountId >= accounts.size()) {
-                return null;
-            }
-            return accounts.get(accountId).toSnapshot();
+        InMemoryAccount account = accounts.get(accountId);
+        return account == null ? null : account.toSnapshot();
+    }
+
+    @Override
+    public long lookupAccountVersion(int accountId) {
+        InMemoryAccount account = accounts.get(accountId);
+        return account == null ? NO_ACCOUNT_VERSION : account.getBalance();
+    }
+
+    @Override
+    public List<Account> lookupAccountsByOwner(String owner, boolean prefix, String afterOwner, int afterId,
+                                               int limit)
+    {
+        int[] accountIds = ownerIndex.search(owner, prefix, afterOwner, afterId, limit);
+        List<Account> page = new ArrayList<>(accountIds.length);
+        for (int accountId : accountIds) {
+            page.add(accounts.get(accountId).toSnapshot());
         }
+        return page;
     }
 
     private InMemoryAccount getAccount(int accountId) throws AccountNotFoundException {
-        synchronized (accounts) {
-            if (accountId < 0 || accountId >= accounts.size()) {
-                throw new AccountNotFoundException(accountId);
+        InMemoryAccount account = accounts.get(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException(accountId);
+        }
+        return account;
+    }
+
+    @Override
+    public void restoreAccount(int accountId, String owner, Instant creationTime, BigDecimal balance) {
+        String indexedOwner = ownerIndex.deduplicate(owner);
+        InMemoryAccount account = new InMemoryAccount(accountId, indexedOwner, creationTime, scale, contention);
+        long units = toUnscaled(balance);
+        account.adjust(units);
+        accounts.set(accountId, account);
+        ownerIndex.add(indexedOwner, accountId);
+        totals.accountRestored(units);
+        accountIdSequence.accumulateAndGet(accountId + 1, Math::max);
+    }
+
+    @Override
+    public void restoreTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                   Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException
+    {
+        restore(transactionId, transactionTime, sourceAccountId, targetAccountId, amount, true);
+    }
+
+    @Override
+    public void restoreAppliedTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                          Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException
+    {
+        restore(transactionId, transactionTime, sourceAccountId, targetAccountId, amount, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Records are written to the transaction store without creating any objects, ids of every account are
+     * collected into one sorted array which becomes its history as is, and totals are added once.</p>
+     */
+    @Override
+    public void restoreAppliedTransactions(TransactionColumns restored) throws AccountNotFoundException {
+        if (restored.size() == 0) {
+            return;
+        }
+        long multiplier = multiplier(restored.getScale());
+        for (int i = 0; i < restored.size(); i++) {
+            checkRestored(restored.getSourceAccountId(i));
+            checkRestored(restored.getTargetAccountId(i));
+        }
+        long restoredDeposits = 0;
+        long restoredWithdrawals = 0;
+        int lastTransactionId = 0;
+        for (int i = 0; i < restored.size(); i++) {
+            int transactionId = restored.getTransactionId(i);
+            int sourceAccountId = restored.getSourceAccountId(i);
+            int targetAccountId = restored.getTargetAccountId(i);
+            long units = Math.multiplyExact(restored.getAmount(i), multiplier);
+            transactions.restore(transactionId, restored.getEpochSecond(i), restored.getNano(i), sourceAccountId,
+                    targetAccountId, units);
+            if (sourceAccountId == TransactionColumns.NO_ACCOUNT) {
+                restoredDeposits += units;
+            } else if (targetAccountId == TransactionColumns.NO_ACCOUNT) {
+                restoredWithdrawals += units;
+            }
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+        }
+        int[][] transactionIds = TransactionHistory.collect(restored);
+        for (int accountId = 0; accountId < transactionIds.length; accountId++) {
+            if (transactionIds[accountId] != null) {
+                accounts.get(accountId).restoreTransactionIds(transactionIds[accountId]);
             }
-            return accounts.get(accountId);
+        }
+        finishedTransactionIds.restored(lastTransactionId);
+        totals.transactionsRestored(restored.size(), restoredDeposits, restoredWithdrawals, lastTransactionId + 1);
+        transactionIdSequence.accumulateAndGet(lastTransactionId + 1, Math::max);
+    }
+
+    private void checkRestored(int accountId) throws AccountNotFoundException {
+        if (accountId != TransactionColumns.NO_ACCOUNT) {
+            getAccount(accountId);
         }
     }
 
-    private void ensurePositiveAmount(BigDecimal amount) {
+    private void restore(int transactionId, Instant transactionTime, Integer sourceAccountId, Integer targetAccountId,
+                         BigDecimal amount, boolean apply) throws AccountNotFoundException
+    {
+        long units = toUnits(amount);
+        InMemoryAccount source = sourceAccountId == null ? null : getAccount(sourceAccountId);
+        InMemoryAccount target = targetAccountId == null ? null : getAccount(targetAccountId);
+        if (source != null) {
+            if (apply) {
+                source.adjust(-units); // recorded withdrawals are applied without overdraft check
+            }
+            source.addTransactionId(transactionId);
+        }
+        if (target != null) {
+            if (apply) {
+                target.adjust(units);
+            }
+            target.addTransactionId(transactionId);
+        }
+        transactions.put(transactionId, transactionTime, accountId(source), accountId(target), units);
+        finishedTransactionIds.restored(transactionId);
+        totals.transactionRestored(transactionId, source == null ? units : 0, target == null ? units : 0, !apply);
+        transactionIdSequence.accumulateAndGet(transactionId + 1, Math::max);
+    }
+
+    /**
+     * Returns multiplier which converts minor units of specified scale to minor units of the service.
+     *
+     * @throws IllegalArgumentException if the scale does not fit
+     */
+    private long multiplier(int unitsScale) {
+        if (unitsScale > scale) {
+            throw new IllegalArgumentException("Unsupported scale: " + unitsScale);
+        }
+        return BigDecimal.ONE.movePointRight(scale - unitsScale).longValueExact();
+    }
+
+    /**
+     * Converts positive amount to minor units.
+     *
+     * @throws IllegalArgumentException if amount is not positive, or its scale does not fit
+     */
+    private long toUnits(BigDecimal amount) {
         if (amount.signum() <= 0) {
             throw new IllegalArgumentException("Negative amount: " + amount);
         }
+        return toUnscaled(amount);
     }
 
-    @Override
-    public Transaction deposit(int targetAccountId, BigDecimal amount) throws AccountNotFoundException {
-        ensurePositiveAmount(amount);
-        InMemoryAccount target = getAccount(targetAccountId);
-        synchronized (target) {
-            target.balance = target.balance.add(amount);
-            synchronized (transactions) {
-                InMemoryTransaction transaction =
-                        new InMemoryTransaction(transactions.size(), clock.instant(), null, target, amount);
-                transactions.add(transaction);
-                log.info("Transaction created: {}", transaction);
-                return transaction;
-            }
+    /**
+     * Converts amount of any sign to minor units.
+     *
+     * @throws IllegalArgumentException if amount scale does not fit
+     */
+    private long toUnscaled(BigDecimal amount) {
+        try {
+            return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Unsupported amount: " + amount);
         }
     }
 
+    @Override
+    public Transaction deposit(int targetAccountId, BigDecimal amount) throws BankOperationException {
+        long units = toUnits(amount);
+        return deposit(getAccount(targetAccountId), units);
+    }
+
     @Override
     public Transaction withdraw(int sourceAccountId, BigDecimal amount) throws BankOperationException {
-        ensurePositiveAmount(amount);
-        InMemoryAccount source = getAccount(sourceAccountId);
-        synchronized (source) {
-            if (source.balance.compareTo(amount) < 0) {
-                throw new OverdraftException(sourceAccountId);
-            }
-            source.balance = source.balance.subtract(amount);
-            synchronized (transactions) {
-                InMemoryTransaction transaction =
-                        new InMemoryTransaction(transactions.size(), clock.instant(), source, null, amount);
-                transactions.add(transaction);
-                log.info("Transaction created: {}", transaction);
-                return transaction;
-            }
-        }
+        long units = toUnits(amount);
+        return withdraw(getAccount(sourceAccountId), units);
     }
 
     @Override
@@ -106,36 +341,269 @@ public final class InMemoryBankService implements BankService {
         if (sourceAccountId == targetAccountId) {
             throw new IllegalArgumentException("Self transfer: " + sourceAccountId);
         }
-        ensurePositiveAmount(amount);
+        long units = toUnits(amount);
         InMemoryAccount source = getAccount(sourceAccountId);
         InMemoryAccount target = getAccount(targetAccountId);
-        InMemoryAccount firstToLock = source.getAccountId() < target.getAccountId() ? source : target;
-        InMemoryAccount secondToLock = source.getAccountId() < target.getAccountId() ? target : source;
-        synchronized (firstToLock) {
-            synchronized (secondToLock) {
-                if (source.balance.compareTo(amount) < 0) {
-                    throw new OverdraftException(sourceAccountId);
+        return transfer(source, target, units);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Deposits and withdrawals are grouped by account: every group is applied holding the account monitor once
+     * and committed with a block of consecutive transaction ids, which are added to the account history at once.
+     * A transfer first applies pending groups of both its accounts, so operations on every account keep their
+     * order. Transaction ids of operations on different accounts may not follow the order of requests.</p>
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<TransactionRequest> requests) {
+        BatchResult[] results = new BatchResult[requests.size()];
+        Map<Integer, AccountBatch> batches = new HashMap<>();
+        for (int index = 0; index < results.length; index++) {
+            TransactionRequest request = requests.get(index);
+            Integer sourceAccountId = request.getSourceAccountId();
+            Integer targetAccountId = request.getTargetAccountId();
+            try {
+                if (request.getAmount() == null) {
+                    throw new IllegalArgumentException("No amount: " + request);
+                }
+                if (sourceAccountId == null && targetAccountId == null) {
+                    throw new IllegalArgumentException("No accounts: " + request);
                 }
-                source.balance = source.balance.subtract(amount);
-                target.balance = target.balance.add(amount);
-                synchronized (transactions) {
-                    InMemoryTransaction transaction =
-                            new InMemoryTransaction(transactions.size(), clock.instant(), source, target, amount);
-                    transactions.add(transaction);
-                    log.info("Transaction created: {}", transaction);
-                    return transaction;
+                if (sourceAccountId != null && targetAccountId != null) {
+                    if (sourceAccountId.equals(targetAccountId)) {
+                        throw new IllegalArgumentException("Self transfer: " + sourceAccountId);
+                    }
+                    long units = toUnits(request.getAmount());
+                    InMemoryAccount source = getAccount(sourceAccountId);
+                    InMemoryAccount target = getAccount(targetAccountId);
+                    apply(batches.remove(sourceAccountId), results);
+                    apply(batches.remove(targetAccountId), results);
+                    results[index] = BatchResult.created(transfer(source, target, units));
+                } else {
+                    long units = toUnits(request.getAmount());
+                    int accountId = sourceAccountId == null ? targetAccountId : sourceAccountId;
+                    AccountBatch batch = batches.get(accountId);
+                    if (batch == null) {
+                        batch = new AccountBatch(getAccount(accountId));
+                        batches.put(accountId, batch);
+                    }
+                    batch.add(index, sourceAccountId == null ? units : -units);
                 }
+            } catch (IllegalArgumentException ex) {
+                results[index] = BatchResult.invalid(ex);
+            } catch (BankOperationException ex) {
+                results[index] = BatchResult.failed(ex);
+            }
+        }
+        for (AccountBatch batch : batches.values()) {
+            apply(batch, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void apply(AccountBatch batch, BatchResult[] results) {
+        if (batch == null) {
+            return;
+        }
+        overdrafts.add(batch.apply(results));
+        for (int i = 0; i < batch.size(); i++) {
+            (batch.getAmount(i) > 0 ? deposits : withdrawals).increment();
+        }
+        commit(batch, results);
+    }
+
+    private InMemoryTransaction deposit(InMemoryAccount target, long units) throws BalanceOverflowException {
+        target.credit(units);
+        deposits.increment();
+        return commit(null, target, units);
+    }
+
+    private InMemoryTransaction withdraw(InMemoryAccount source, long units) throws OverdraftException {
+        if (!source.debit(units)) {
+            overdrafts.increment();
+            throw new OverdraftException(source.getAccountId());
+        }
+        withdrawals.increment();
+        return commit(source, null, units);
+    }
+
+    private InMemoryTransaction transfer(InMemoryAccount source, InMemoryAccount target, long units)
+            throws OverdraftException, BalanceOverflowException
+    {
+        if (!source.transferTo(target, units)) {
+            overdrafts.increment();
+            throw new OverdraftException(source.getAccountId());
+        }
+        transfers.increment();
+        return commit(source, target, units);
+    }
+
+    /**
+     * Assigns next transaction id and publishes the transaction. Does not lock anything, so transactions on
+     * disjoint accounts are committed in parallel. The transaction record is written last, so account histories
+     * are complete up to the finished id limit. If publishing fails, the id is aborted.
+     */
+    private InMemoryTransaction commit(InMemoryAccount source, InMemoryAccount target, long amount) {
+        int transactionId = transactionIdSequence.getAndIncrement();
+        if (transactionId < 0) {
+            throw new IllegalStateException("Transaction ids exhausted");
+        }
+        InMemoryTransaction transaction;
+        try {
+            Instant transactionTime = clock.instant();
+            if (source != null) {
+                source.addTransactionId(transactionId);
+                contention.operated(source.getAccountId());
+            }
+            if (target != null) {
+                target.addTransactionId(transactionId);
+                contention.operated(target.getAccountId());
+            }
+            transaction = transactions.put(transactionId, transactionTime, accountId(source), accountId(target),
+                    amount);
+        } catch (RuntimeException | Error ex) {
+            abort(transactionId, ex);
+            throw ex;
+        }
+        finishedTransactionIds.written(transactionId, transactionId + 1);
+        totals.transactionCommitted(transactionId, source == null ? amount : 0, target == null ? amount : 0);
+        auditLog.transactionCreated(transaction);
+        return transaction;
+    }
+
+    /**
+     * Assigns a block of transaction ids to applied operations of the batch and publishes them like
+     * {@link #commit(InMemoryAccount, InMemoryAccount, long)} does, adding all ids to the account history at once.
+     * If publishing fails, ids of transactions which are not published are aborted.
+     */
+    private void commit(AccountBatch batch, BatchResult[] results) {
+        int count = batch.size();
+        if (count == 0) {
+            return;
+        }
+        InMemoryAccount account = batch.getAccount();
+        int firstId = transactionIdSequence.getAndAdd(count);
+        if (firstId < 0 || firstId > Integer.MAX_VALUE - count) {
+            throw new IllegalStateException("Transaction ids exhausted");
+        }
+        InMemoryTransaction[] committed = new InMemoryTransaction[count];
+        int published = 0;
+        try {
+            Instant transactionTime = clock.instant();
+            account.addTransactionIds(firstId, 1, count);
+            for (; published < count; published++) {
+                long amount = batch.getAmount(published);
+                contention.operated(account.getAccountId());
+                committed[published] = transactions.put(firstId + published, transactionTime,
+                        amount < 0 ? account.getAccountId() : TransactionStore.NO_ACCOUNT,
+                        amount > 0 ? account.getAccountId() : TransactionStore.NO_ACCOUNT, Math.abs(amount));
+            }
+        } catch (RuntimeException | Error ex) {
+            for (int transactionId = firstId + published; transactionId < firstId + count; transactionId++) {
+                abort(transactionId, ex);
+            }
+            throw ex;
+        } finally {
+            finishedTransactionIds.written(firstId, firstId + published);
+            for (int i = 0; i < published; i++) {
+                long amount = batch.getAmount(i);
+                totals.transactionCommitted(firstId + i, Math.max(amount, 0), Math.max(-amount, 0));
+                auditLog.transactionCreated(committed[i]);
+                results[batch.getIndex(i)] = BatchResult.created(committed[i]);
             }
         }
     }
 
+    /**
+     * Marks assigned id of a transaction which failed to commit as skipped and counts it as aborted, so that it
+     * holds back neither pages nor consistent totals. Account histories may have the id already, lookups drop it.
+     */
+    private void abort(int transactionId, Throwable cause) {
+        totals.transactionAborted(transactionId);
+        try {
+            transactions.skip(transactionId);
+            finishedTransactionIds.written(transactionId, transactionId + 1);
+        } catch (RuntimeException | Error ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    private static int accountId(InMemoryAccount account) {
+        return account == null ? TransactionStore.NO_ACCOUNT : account.getAccountId();
+    }
+
     @Override
     public Transaction lookupTransaction(int transactionId) {
-        synchronized (transactions) {
-            if (transactionId < 0 || transactionId >= transactions.size()) {
-                return null;
+        return transactions.get(transactionId);
+    }
+
+    @Override
+    public List<Transaction> lookupTransactions(int afterId, int limit) {
+        List<Transaction> page = new ArrayList<>(Math.min(limit, PAGE_CAPACITY_HINT));
+        int idLimit = finishedTransactionIds.get();
+        for (int transactionId = Math.max(afterId, -1) + 1; page.size() < limit && transactionId >= 0
+                && transactionId < idLimit; transactionId++)
+        {
+            // ids below the limit are either committed, aborted or lost before restore
+            InMemoryTransaction transaction = transactions.get(transactionId);
+            if (transaction != null) {
+                page.add(transaction);
             }
-            return transactions.get(transactionId);
+        }
+        return page;
+    }
+
+    @Override
+    public List<Transaction> lookupAccountTransactions(int accountId, int afterId, int limit)
+            throws AccountNotFoundException
+    {
+        InMemoryAccount account = getAccount(accountId);
+        int[] transactionIds = account.getTransactionIds(afterId, finishedTransactionIds.get(), limit);
+        List<Transaction> page = new ArrayList<>(transactionIds.length);
+        for (int transactionId : transactionIds) {
+            InMemoryTransaction transaction = transactions.get(transactionId);
+            if (transaction != null) { // not aborted
+                page.add(transaction);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public BankSummary summarize() {
+        return totals.summarize();
+    }
+
+    @Override
+    public BankSummary summarizeConsistently() {
+        return totals.summarizeConsistently();
+    }
+
+    @Override
+    public List<HotAccount> lookupHotAccounts(int limit) {
+        return contention.hotAccounts(limit);
+    }
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.family("bank_operations_total", "counter", "Committed operations by type")
+                .sample("bank_operations_total", deposits.sum(), "type", "deposit")
+                .sample("bank_operations_total", withdrawals.sum(), "type", "withdrawal")
+                .sample("bank_operations_total", transfers.sum(), "type", "transfer");
+        writer.counter("bank_overdrafts_total", "Withdrawals and transfers rejected for lack of money",
+                overdrafts.sum());
+        contention.writeMetrics(writer);
+        writer.gauge("bank_accounts", "Number of accounts", accountIdSequence.get());
+        writer.gauge("bank_transactions", "Number of transactions", transactionIdSequence.get());
+    }
+
+    /**
+     * Stop the audit log if it was created by the service, an audit log passed by the caller is left open.
+     */
+    @Override
+    public void close() {
+        if (ownsAuditLog) {
+            auditLog.close();
         }
     }
 }
@@ -4,29 +4,29 @@ import io.github.zyulyaev.jaxrswebapp.service.Transaction;
 
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.Objects;
 
 /**
- * Immutable in-memory transaction class
+ * Immutable view of a transaction of {@link TransactionStore}, created on lookup and not retained by the store
  */
 final class InMemoryTransaction implements Transaction {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
     private final int transactionId;
-    private final Instant transactionTime;
-    private final InMemoryAccount source;
-    private final InMemoryAccount target;
-    private final BigDecimal amount;
+    private final long epochNanos;
+    private final int sourceAccountId;
+    private final int targetAccountId;
+    private final long amount;
+    private final int scale;
 
-    InMemoryTransaction(int transactionId, Instant transactionTime, InMemoryAccount source, InMemoryAccount target,
-                        BigDecimal amount)
+    InMemoryTransaction(int transactionId, long epochNanos, int sourceAccountId, int targetAccountId, long amount,
+                        int scale)
     {
         this.transactionId = transactionId;
-        this.transactionTime = Objects.requireNonNull(transactionTime, "transactionTime");
-        if (source == null && target == null) {
-            throw new IllegalArgumentException("At least one of source and target must not be null");
-        }
-        this.source = source;
-        this.target = target;
-        this.amount = Objects.requireNonNull(amount, "amount");
+        this.epochNanos = epochNanos;
+        this.sourceAccountId = sourceAccountId;
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+        this.scale = scale;
     }
 
     @Override
@@ -36,32 +36,45 @@ final class InMemoryTransaction implements Transaction {
 
     @Override
     public Instant getTransactionTime() {
-        return transactionTime;
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                Math.floorMod(epochNanos, NANOS_PER_SECOND));
     }
 
     @Override
     public Integer getSourceAccountId() {
-        return source == null ? null : source.getAccountId();
+        return sourceAccountId == TransactionStore.NO_ACCOUNT ? null : sourceAccountId;
     }
 
     @Override
     public Integer getTargetAccountId() {
-        return target == null ? null : target.getAccountId();
+        return targetAccountId == TransactionStore.NO_ACCOUNT ? null : targetAccountId;
     }
 
     @Override
     public BigDecimal getAmount() {
+        return BigDecimal.valueOf(amount, scale);
+    }
+
+    long getUnits() {
         return amount;
     }
 
+    boolean isDeposit() {
+        return sourceAccountId == TransactionStore.NO_ACCOUNT;
+    }
+
+    boolean isWithdrawal() {
+        return targetAccountId == TransactionStore.NO_ACCOUNT;
+    }
+
     @Override
     public String toString() {
         return "InMemoryTransaction{" +
                 "transactionId=" + transactionId +
-                ", transactionTime=" + transactionTime +
-                ", source=" + source +
-                ", target=" + target +
-                ", amount=" + amount +
+                ", transactionTime=" + getTransactionTime() +
+                ", sourceAccountId=" + getSourceAccountId() +
+                ", targetAccountId=" + getTargetAccountId() +
+                ", amount=" + getAmount() +
                 '}';
     }
 }
@@ -0,0 +1,760 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.concurrent.SegmentedArray;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
+import io.github.zyulyaev.jaxrswebapp.service.*;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>In-memory implementation of {@link BankService} which partitions accounts across independent shards.</p>
+ * <p>Every shard has its own account table, transaction log and id sequences. Shard number is encoded into ids:
+ * an entity with local id {@code n} in shard {@code s} of {@code N} has global id {@code n * N + s}, so ids are
+ * globally unique and resolved to their shard without any shared state. New accounts are spread across shards
+ * randomly, a transaction is logged by the shard of its source account, or of its target account in case of
+ * deposit.</p>
+ * <p>Transfers between shards are applied the same way as within one: monitors of both accounts are taken in order
+ * of account ids, so transfers can not deadlock, then target capacity and source balance are checked before the
+ * amount is moved, so nothing needs to be undone. Deposits and withdrawals lock accounts only when batched.</p>
+ * <p>Listing walks all shards in global id order and, like account history pages, stops at the lowest id which is
+ * either not assigned yet or not finished in its shard, so a page never passes an id which may still be committed.
+ * Reads change nothing: committing threads skip not assigned ids of shards lagging behind the others, so that this
+ * limit keeps up with commits of all shards. Accounts of all shards are searched by owner in one shared
+ * {@link OwnerIndex}.</p>
+ * <p>Contention on accounts is counted and exported as metrics. The most used and contended accounts are tracked
+ * with fixed memory.</p>
+ * <p>Every shard maintains {@link BankTotals} of its accounts and local ids, bank-wide totals are their sum.
+ * Consistent totals of all shards are read at the finished id limit, where local ids of every shard are finished
+ * too.</p>
+ */
+public final class ShardedBankService
+        implements RecoverableBankService, MetricsSource, HotAccountTracker, BankSummaryTracker
+{
+    private static final int PAGE_CAPACITY_HINT = 1024;
+    /**
+     * Number of ids a shard may lag behind the latest assigned one while others are committing, see
+     * {@link #catchUp()}
+     */
+    private static final long CATCH_UP_SLACK = 1024;
+
+    private final Clock clock;
+    private final int scale;
+    private final AuditLog auditLog;
+    private final Shard[] shards;
+    private final Contention contention;
+    private final OwnerIndex ownerIndex = new OwnerIndex();
+    /**
+     * Ids below this one are either restored or lost before restore, so missing ones are never committed
+     */
+    private volatile int restoredTransactionIdLimit;
+
+    /**
+     * Account table and transaction log of one shard
+     */
+    private static final class Shard {
+        private final AtomicInteger accountIdSequence = new AtomicInteger();
+        private final SegmentedArray<InMemoryAccount> accounts = new SegmentedArray<>();
+        private final AtomicInteger transactionIdSequence = new AtomicInteger();
+        /**
+         * Committed transactions and skipped ids, indexed by local id
+         */
+        private final TransactionStore transactions;
+        private final FinishedIdLimit finishedIds;
+        /**
+         * Totals of accounts and transactions of the shard, indexed by local id
+         */
+        private final BankTotals totals;
+
+        Shard(TransactionStore transactions, int scale) {
+            this.transactions = transactions;
+            this.finishedIds = new FinishedIdLimit(transactions);
+            this.totals = new BankTotals(scale, transactionIdSequence);
+        }
+
+        /**
+         * Skips local id which is assigned to a transaction failed to commit.
+         */
+        void skipAssigned(int localId) {
+            totals.transactionAborted(localId);
+            transactions.skip(localId);
+            finishedIds.written(localId, localId + 1);
+        }
+
+        /**
+         * Makes sure that no local id below specified one is assigned from now on, skipping the ones not assigned
+         * yet.
+         */
+        void skipTo(int localId) {
+            while (true) {
+                int next = transactionIdSequence.get();
+                if (next >= localId) {
+                    return;
+                }
+                if (transactionIdSequence.compareAndSet(next, localId)) {
+                    for (int i = next; i < localId; i++) {
+                        transactions.skip(i);
+                    }
+                    totals.transactionsSkipped(next, localId);
+                    finishedIds.written(next, localId);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Create new sharded bank service which supports amounts with up to specified number of fractional digits.
+     * </p>
+     * <p>Passed clock instance is used to assign timestamps to events like account or transaction creation.
+     * Created accounts and committed transactions are recorded to passed audit log.</p>
+     *
+     * @param clock       clock to use for assigning timestamps
+     * @param scale       max number of fractional digits of money amounts
+     * @param auditLog    audit log to record events to
+     * @param shardsCount number of shards
+     */
+    public ShardedBankService(Clock clock, int scale, AuditLog auditLog, int shardsCount) {
+        this(clock, scale, auditLog, shardsCount, TransactionStorage.HEAP);
+    }
+
+    /**
+     * <p>Create new sharded bank service which supports amounts with up to specified number of fractional digits
+     * and keeps transactions in specified storage.</p>
+     * <p>Passed clock instance is used to assign timestamps to events like account or transaction creation.
+     * Created accounts and committed transactions are recorded to passed audit log.</p>
+     *
+     * @param clock              clock to use for assigning timestamps
+     * @param scale              max number of fractional digits of money amounts
+     * @param auditLog           audit log to record events to
+     * @param shardsCount        number of shards
+     * @param transactionStorage where to keep committed transactions
+     */
+    public ShardedBankService(Clock clock, int scale, AuditLog auditLog, int shardsCount,
+                              TransactionStorage transactionStorage)
+    {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Negative scale: " + scale);
+        }
+        if (shardsCount <= 0) {
+            throw new IllegalArgumentException("Invalid shards count: " + shardsCount);
+        }
+        this.clock = clock;
+        this.scale = scale;
+        this.auditLog = auditLog;
+        this.contention = new Contention(clock);
+        this.shards = new Shard[shardsCount];
+        for (int i = 0; i < shardsCount; i++) {
+            shards[i] = new Shard(new TransactionStore(transactionStorage, scale, shardsCount, i), scale);
+        }
+    }
+
+    private int globalId(int localId, int shardIndex) {
+        if (localId > (Integer.MAX_VALUE - shardIndex) / shards.length) {
+            return -1;
+        }
+        return localId * shards.length + shardIndex;
+    }
+
+    @Override
+    public Account createAccount(String owner) {
+        int shardIndex = ThreadLocalRandom.current().nextInt(shards.length);
+        Shard shard = shards[shardIndex];
+        int localId = shard.accountIdSequence.getAndIncrement();
+        int accountId = globalId(localId, shardIndex);
+        if (localId < 0 || accountId < 0) {
+            throw new IllegalStateException("Account ids exhausted");
+        }
+        String indexedOwner = ownerIndex.deduplicate(owner);
+        InMemoryAccount account = new InMemoryAccount(accountId, indexedOwner, clock.instant(), scale, contention);
+        shard.accounts.set(localId, account);
+        ownerIndex.add(indexedOwner, accountId);
+        shard.totals.accountsCreated(1);
+        AccountSnapshot snapshot = account.toSnapshot();
+        auditLog.accountCreated(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Accounts are dealt to shards in turn starting from a random one, every shard reserves local ids of its part
+     * of the batch with a single atomic addition.</p>
+     */
+    @Override
+    public List<Account> createAccounts(List<String> owners) {
+        int count = owners.size();
+        int firstShardIndex = ThreadLocalRandom.current().nextInt(shards.length);
+        int[] firstLocalIds = new int[shards.length];
+        for (int i = 0; i < shards.length && i < count; i++) {
+            int shardIndex = (firstShardIndex + i) % shards.length;
+            int shardCount = (count - i + shards.length - 1) / shards.length;
+            int firstLocalId = shards[shardIndex].accountIdSequence.getAndAdd(shardCount);
+            if (firstLocalId < 0 || firstLocalId > Integer.MAX_VALUE - shardCount
+                    || globalId(firstLocalId + shardCount - 1, shardIndex) < 0)
+            {
+                throw new IllegalStateException("Account ids exhausted");
+            }
+            firstLocalIds[shardIndex] = firstLocalId;
+        }
+        Instant creationTime = clock.instant();
+        List<Account> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int shardIndex = (firstShardIndex + i) % shards.length;
+            int localId = firstLocalIds[shardIndex] + i / shards.length;
+            int accountId = globalId(localId, shardIndex);
+            String indexedOwner = ownerIndex.deduplicate(owners.get(i));
+            InMemoryAccount account = new InMemoryAccount(accountId, indexedOwner, creationTime, scale, contention);
+            shards[shardIndex].accounts.set(localId, account);
+            ownerIndex.add(indexedOwner, accountId);
+            created.add(account.toSnapshot());
+        }
+        for (int i = 0; i < shards.length && i < count; i++) {
+            shards[(firstShardIndex + i) % shards.length].totals
+                    .accountsCreated((count - i + shards.length - 1) / shards.length);
+        }
+        auditLog.accountsCreated(created);
+        return created;
+    }
+
+    @Override
+    public Account lookupAccount(int accountId) {
+        InMemoryAccount account = findAccount(accountId);
+        return account == null ? null : account.toSnapshot();
+    }
+
+    @Override
+    public long lookupAccountVersion(int accountId) {
+        InMemoryAccount account = findAccount(accountId);
+        return account == null ? NO_ACCOUNT_VERSION : account.getBalance();
+    }
+
+    private InMemoryAccount findAccount(int accountId) {
+        if (accountId < 0) {
+            return null;
+        }
+        return shards[accountId % shards.length].accounts.get(accountId / shards.length);
+    }
+
+    @Override
+    public List<Account> lookupAccountsByOwner(String owner, boolean prefix, String afterOwner, int afterId,
+                                               int limit)
+    {
+        int[] accountIds = ownerIndex.search(owner, prefix, afterOwner, afterId, limit);
+        List<Account> page = new ArrayList<>(accountIds.length);
+        for (int accountId : accountIds) {
+            page.add(findAccount(accountId).toSnapshot());
+        }
+        return page;
+    }
+
+    private InMemoryAccount getAccount(int accountId) throws AccountNotFoundException {
+        InMemoryAccount account = findAccount(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException(accountId);
+        }
+        return account;
+    }
+
+    /**
+     * Returns multiplier which converts minor units of specified scale to minor units of the service.
+     *
+     * @throws IllegalArgumentException if the scale does not fit
+     */
+    private long multiplier(int unitsScale) {
+        if (unitsScale > scale) {
+            throw new IllegalArgumentException("Unsupported scale: " + unitsScale);
+        }
+        return BigDecimal.ONE.movePointRight(scale - unitsScale).longValueExact();
+    }
+
+    /**
+     * Converts positive amount to minor units.
+     *
+     * @throws IllegalArgumentException if amount is not positive, or its scale does not fit
+     */
+    private long toUnits(BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("Negative amount: " + amount);
+        }
+        return toUnscaled(amount);
+    }
+
+    /**
+     * Converts amount of any sign to minor units.
+     *
+     * @throws IllegalArgumentException if amount scale does not fit
+     */
+    private long toUnscaled(BigDecimal amount) {
+        try {
+            return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Unsupported amount: " + amount);
+        }
+    }
+
+    @Override
+    public Transaction deposit(int targetAccountId, BigDecimal amount) throws BankOperationException {
+        long units = toUnits(amount);
+        InMemoryAccount target = getAccount(targetAccountId);
+        target.credit(units);
+        return commit(null, target, units);
+    }
+
+    @Override
+    public Transaction withdraw(int sourceAccountId, BigDecimal amount) throws BankOperationException {
+        long units = toUnits(amount);
+        InMemoryAccount source = getAccount(sourceAccountId);
+        if (!source.debit(units)) {
+            throw new OverdraftException(sourceAccountId);
+        }
+        return commit(source, null, units);
+    }
+
+    @Override
+    public Transaction transfer(int sourceAccountId, int targetAccountId, BigDecimal amount)
+            throws BankOperationException
+    {
+        if (sourceAccountId == targetAccountId) {
+            throw new IllegalArgumentException("Self transfer: " + sourceAccountId);
+        }
+        long units = toUnits(amount);
+        InMemoryAccount source = getAccount(sourceAccountId);
+        InMemoryAccount target = getAccount(targetAccountId);
+        if (!source.transferTo(target, units)) {
+            throw new OverdraftException(sourceAccountId);
+        }
+        return commit(source, target, units);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Deposits and withdrawals are grouped by account: every group is applied holding the account monitor once
+     * and committed with a block of consecutive local ids of the account shard, which are added to the account
+     * history at once. A transfer first applies pending groups of both its accounts, so operations on every account
+     * keep their order. Transaction ids of operations on different accounts may not follow the order of requests.
+     * </p>
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<TransactionRequest> requests) {
+        BatchResult[] results = new BatchResult[requests.size()];
+        Map<Integer, AccountBatch> batches = new HashMap<>();
+        for (int index = 0; index < results.length; index++) {
+            TransactionRequest request = requests.get(index);
+            Integer sourceAccountId = request.getSourceAccountId();
+            Integer targetAccountId = request.getTargetAccountId();
+            try {
+                if (request.getAmount() == null) {
+                    throw new IllegalArgumentException("No amount: " + request);
+                }
+                if (sourceAccountId == null && targetAccountId == null) {
+                    throw new IllegalArgumentException("No accounts: " + request);
+                }
+                if (sourceAccountId != null && targetAccountId != null) {
+                    apply(batches.remove(sourceAccountId), results);
+                    apply(batches.remove(targetAccountId), results);
+                    results[index] = BatchResult.created(transfer(sourceAccountId, targetAccountId,
+                            request.getAmount()));
+                } else {
+                    long units = toUnits(request.getAmount());
+                    int accountId = sourceAccountId == null ? targetAccountId : sourceAccountId;
+                    AccountBatch batch = batches.get(accountId);
+                    if (batch == null) {
+                        batch = new AccountBatch(getAccount(accountId));
+                        batches.put(accountId, batch);
+                    }
+                    batch.add(index, sourceAccountId == null ? units : -units);
+                }
+            } catch (IllegalArgumentException ex) {
+                results[index] = BatchResult.invalid(ex);
+            } catch (BankOperationException ex) {
+                results[index] = BatchResult.failed(ex);
+            }
+        }
+        for (AccountBatch batch : batches.values()) {
+            apply(batch, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void apply(AccountBatch batch, BatchResult[] results) {
+        if (batch != null) {
+            batch.apply(results);
+            commit(batch, results);
+        }
+    }
+
+    /**
+     * Assigns next transaction id of the logging shard and publishes the transaction. The transaction record is
+     * written last, so account histories are complete up to the finished id limit. If publishing fails, the id is
+     * skipped.
+     */
+    private InMemoryTransaction commit(InMemoryAccount source, InMemoryAccount target, long amount) {
+        int shardIndex = (source != null ? source : target).getAccountId() % shards.length;
+        Shard shard = shards[shardIndex];
+        int localId = shard.transactionIdSequence.getAndIncrement();
+        if (localId < 0) {
+            throw new IllegalStateException("Transaction ids exhausted");
+        }
+        InMemoryTransaction transaction;
+        try {
+            int transactionId = globalId(localId, shardIndex);
+            if (transactionId < 0) {
+                throw new IllegalStateException("Transaction ids exhausted");
+            }
+            Instant transactionTime = clock.instant();
+            if (source != null) {
+                source.addTransactionId(transactionId);
+                contention.operated(source.getAccountId());
+            }
+            if (target != null) {
+                target.addTransactionId(transactionId);
+                contention.operated(target.getAccountId());
+            }
+            transaction = shard.transactions.put(localId, transactionTime, accountId(source), accountId(target),
+                    amount);
+        } catch (RuntimeException | Error ex) {
+            // assigned local id must not hold pages back, account histories may have it already, lookups drop it
+            try {
+                shard.skipAssigned(localId);
+            } catch (RuntimeException | Error skipFailure) {
+                ex.addSuppressed(skipFailure);
+            }
+            throw ex;
+        }
+        shard.finishedIds.written(localId, localId + 1);
+        shard.totals.transactionCommitted(localId, source == null ? amount : 0, target == null ? amount : 0);
+        if (shard.finishedIds.get() == shard.transactionIdSequence.get()) {
+            catchUp();
+        }
+        auditLog.transactionCreated(transaction);
+        return transaction;
+    }
+
+    /**
+     * Assigns a block of local ids of the account shard to applied operations of the batch and publishes them like
+     * {@link #commit(InMemoryAccount, InMemoryAccount, long)} does, adding all ids to the account history at once.
+     * If publishing fails, ids of transactions which are not published are skipped.
+     */
+    private void commit(AccountBatch batch, BatchResult[] results) {
+        int count = batch.size();
+        if (count == 0) {
+            return;
+        }
+        InMemoryAccount account = batch.getAccount();
+        int shardIndex = account.getAccountId() % shards.length;
+        Shard shard = shards[shardIndex];
+        int firstLocalId = shard.transactionIdSequence.getAndAdd(count);
+        if (firstLocalId < 0 || firstLocalId > Integer.MAX_VALUE - count
+                || globalId(firstLocalId + count - 1, shardIndex) < 0)
+        {
+            throw new IllegalStateException("Transaction ids exhausted");
+        }
+        InMemoryTransaction[] committed = new InMemoryTransaction[count];
+        int published = 0;
+        try {
+            Instant transactionTime = clock.instant();
+            account.addTransactionIds(globalId(firstLocalId, shardIndex), shards.length, count);
+            for (; published < count; published++) {
+                long amount = batch.getAmount(published);
+                contention.operated(account.getAccountId());
+                committed[published] = shard.transactions.put(firstLocalId + published, transactionTime,
+                        amount < 0 ? account.getAccountId() : TransactionStore.NO_ACCOUNT,
+                        amount > 0 ? account.getAccountId() : TransactionStore.NO_ACCOUNT, Math.abs(amount));
+            }
+        } catch (RuntimeException | Error ex) {
+            try {
+                for (int localId = firstLocalId + published; localId < firstLocalId + count; localId++) {
+                    shard.skipAssigned(localId);
+                }
+            } catch (RuntimeException | Error skipFailure) {
+                ex.addSuppressed(skipFailure);
+            }
+            throw ex;
+        } finally {
+            shard.finishedIds.written(firstLocalId, firstLocalId + published);
+            for (int i = 0; i < published; i++) {
+                long amount = batch.getAmount(i);
+                shard.totals.transactionCommitted(firstLocalId + i, Math.max(amount, 0), Math.max(-amount, 0));
+                auditLog.transactionCreated(committed[i]);
+                results[batch.getIndex(i)] = BatchResult.created(committed[i]);
+            }
+        }
+        if (shard.finishedIds.get() == shard.transactionIdSequence.get()) {
+            catchUp();
+        }
+    }
+
+    private static int accountId(InMemoryAccount account) {
+        return account == null ? TransactionStore.NO_ACCOUNT : account.getAccountId();
+    }
+
+    @Override
+    public Transaction lookupTransaction(int transactionId) {
+        if (transactionId < 0) {
+            return null;
+        }
+        return shards[transactionId % shards.length].transactions.get(transactionId / shards.length);
+    }
+
+    /**
+     * <p>Skips not assigned ids of shards lagging behind the greatest assigned transaction id, so that the finished
+     * id limit follows commits of other shards. Called when the committing shard has no transactions in flight.</p>
+     * <p>Every skipped id costs a record, so while any shard is committing the ones lagging by less than
+     * {@link #CATCH_UP_SLACK} ids are left to catch up on their own. The last committing thread to finish sees all
+     * shards idle and catches all of them up to the latest transaction.</p>
+     */
+    private void catchUp() {
+        long idLimit = 0;
+        long minNextId = Long.MAX_VALUE;
+        boolean idle = true;
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            int finished = shard.finishedIds.get();
+            int next = shard.transactionIdSequence.get();
+            idle &= finished == next;
+            long nextId = (long) next * shards.length + i;
+            idLimit = Math.max(idLimit, nextId - shards.length + 1);
+            minNextId = Math.min(minNextId, nextId);
+        }
+        if (minNextId >= idLimit || !idle && idLimit - minNextId <= CATCH_UP_SLACK) {
+            return;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].skipTo((int) ((idLimit - i + shards.length - 1) / shards.length));
+        }
+    }
+
+    /**
+     * Returns the lowest transaction id which is either not assigned yet or assigned to a transaction being
+     * committed. Transactions with lower ids are finished, and no transaction gets a lower id later.
+     */
+    private long finishedTransactionIdLimit() {
+        long limit = Long.MAX_VALUE;
+        for (int i = 0; i < shards.length; i++) {
+            limit = Math.min(limit, (long) shards[i].finishedIds.get() * shards.length + i);
+        }
+        return limit;
+    }
+
+    @Override
+    public List<Transaction> lookupTransactions(int afterId, int limit) {
+        List<Transaction> page = new ArrayList<>(Math.min(limit, PAGE_CAPACITY_HINT));
+        long idLimit = finishedTransactionIdLimit();
+        for (int transactionId = Math.max(afterId, -1) + 1; page.size() < limit && transactionId >= 0
+                && transactionId < idLimit; transactionId++)
+        {
+            // ids below the limit are either committed, skipped or lost before restore
+            InMemoryTransaction transaction = shards[transactionId % shards.length].transactions
+                    .get(transactionId / shards.length);
+            if (transaction != null) {
+                page.add(transaction);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<Transaction> lookupAccountTransactions(int accountId, int afterId, int limit)
+            throws AccountNotFoundException
+    {
+        InMemoryAccount account = getAccount(accountId);
+        int[] transactionIds = account.getTransactionIds(afterId, finishedTransactionIdLimit(), limit);
+        List<Transaction> page = new ArrayList<>(transactionIds.length);
+        for (int transactionId : transactionIds) {
+            Transaction transaction = lookupTransaction(transactionId);
+            if (transaction != null) { // not skipped after failed commit
+                page.add(transaction);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void restoreAccount(int accountId, String owner, Instant creationTime, BigDecimal balance) {
+        String indexedOwner = ownerIndex.deduplicate(owner);
+        InMemoryAccount account = new InMemoryAccount(accountId, indexedOwner, creationTime, scale, contention);
+        long units = toUnscaled(balance);
+        account.adjust(units);
+        Shard shard = shards[accountId % shards.length];
+        int localId = accountId / shards.length;
+        shard.accounts.set(localId, account);
+        ownerIndex.add(indexedOwner, accountId);
+        shard.totals.accountRestored(units);
+        shard.accountIdSequence.accumulateAndGet(localId + 1, Math::max);
+    }
+
+    @Override
+    public void restoreTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                   Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException
+    {
+        restore(transactionId, transactionTime, sourceAccountId, targetAccountId, amount, true);
+    }
+
+    @Override
+    public void restoreAppliedTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                          Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException
+    {
+        restore(transactionId, transactionTime, sourceAccountId, targetAccountId, amount, false);
+    }
+
+    /**
+     * Restores transaction into the shard its id belongs to, which may differ from the shard of its accounts if
+     * the transaction was recorded by another engine or with another number of shards.
+     */
+    private void restore(int transactionId, Instant transactionTime, Integer sourceAccountId, Integer targetAccountId,
+                         BigDecimal amount, boolean apply) throws AccountNotFoundException
+    {
+        long units = toUnits(amount);
+        InMemoryAccount source = sourceAccountId == null ? null : getAccount(sourceAccountId);
+        InMemoryAccount target = targetAccountId == null ? null : getAccount(targetAccountId);
+        if (source != null) {
+            if (apply) {
+                source.adjust(-units); // recorded withdrawals are applied without overdraft check
+            }
+            source.addTransactionId(transactionId);
+        }
+        if (target != null) {
+            if (apply) {
+                target.adjust(units);
+            }
+            target.addTransactionId(transactionId);
+        }
+        Shard shard = shards[transactionId % shards.length];
+        int localId = transactionId / shards.length;
+        shard.transactions.put(localId, transactionTime, accountId(source), accountId(target), units);
+        shard.totals.transactionRestored(localId, source == null ? units : 0, target == null ? units : 0, !apply);
+        restoredUpTo(transactionId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Records are written to the transaction stores of shards their ids belong to without creating any objects,
+     * ids of every account are collected into one sorted array which becomes its history as is, and totals of every
+     * shard are added once.</p>
+     */
+    @Override
+    public void restoreAppliedTransactions(TransactionColumns restored) throws AccountNotFoundException {
+        if (restored.size() == 0) {
+            return;
+        }
+        long multiplier = multiplier(restored.getScale());
+        for (int i = 0; i < restored.size(); i++) {
+            checkRestored(restored.getSourceAccountId(i));
+            checkRestored(restored.getTargetAccountId(i));
+        }
+        int[] restoredCounts = new int[shards.length];
+        long[] restoredDeposits = new long[shards.length];
+        long[] restoredWithdrawals = new long[shards.length];
+        int lastTransactionId = 0;
+        for (int i = 0; i < restored.size(); i++) {
+            int transactionId = restored.getTransactionId(i);
+            int sourceAccountId = restored.getSourceAccountId(i);
+            int targetAccountId = restored.getTargetAccountId(i);
+            long units = Math.multiplyExact(restored.getAmount(i), multiplier);
+            int shardIndex = transactionId % shards.length;
+            shards[shardIndex].transactions.restore(transactionId / shards.length, restored.getEpochSecond(i),
+                    restored.getNano(i), sourceAccountId, targetAccountId, units);
+            restoredCounts[shardIndex]++;
+            if (sourceAccountId == TransactionColumns.NO_ACCOUNT) {
+                restoredDeposits[shardIndex] += units;
+            } else if (targetAccountId == TransactionColumns.NO_ACCOUNT) {
+                restoredWithdrawals[shardIndex] += units;
+            }
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+        }
+        int[][] transactionIds = TransactionHistory.collect(restored);
+        for (int accountId = 0; accountId < transactionIds.length; accountId++) {
+            if (transactionIds[accountId] != null) {
+                getAccount(accountId).restoreTransactionIds(transactionIds[accountId]);
+            }
+        }
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].totals.transactionsRestored(restoredCounts[i], restoredDeposits[i], restoredWithdrawals[i], 0);
+        }
+        restoredUpTo(lastTransactionId);
+    }
+
+    private void checkRestored(int accountId) throws AccountNotFoundException {
+        if (accountId != TransactionColumns.NO_ACCOUNT) {
+            getAccount(accountId);
+        }
+    }
+
+    /**
+     * Makes sure that no shard assigns an id below the restored one, missing ones are lost.
+     */
+    private void restoredUpTo(int transactionId) {
+        if (transactionId >= restoredTransactionIdLimit) {
+            restoredTransactionIdLimit = transactionId + 1;
+            for (int i = 0; i < shards.length; i++) {
+                int nextLocalId = Math.floorDiv(transactionId - i, shards.length) + 1;
+                shards[i].transactionIdSequence.accumulateAndGet(nextLocalId, Math::max);
+                shards[i].finishedIds.restored(nextLocalId - 1);
+                shards[i].totals.restoredBelow(nextLocalId);
+            }
+        }
+    }
+
+    @Override
+    public BankSummary summarize() {
+        BankSummary[] summaries = new BankSummary[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            summaries[i] = shards[i].totals.summarize();
+        }
+        return sum(summaries, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Totals of every shard are read below the local id the finished id limit maps to. A shard which is ahead
+     * of the others has its transactions above that id read back from its store.</p>
+     */
+    @Override
+    public BankSummary summarizeConsistently() {
+        long limit = finishedTransactionIdLimit();
+        BankSummary[] summaries = new BankSummary[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            int localLimit = (int) ((limit - i + shards.length - 1) / shards.length);
+            summaries[i] = shards[i].totals.summarizeBelow(localLimit, shards[i].transactions);
+        }
+        return sum(summaries, (int) Math.min(limit, Integer.MAX_VALUE));
+    }
+
+    private static BankSummary sum(BankSummary[] summaries, Integer transactionIdLimit) {
+        long accountsCount = 0;
+        long transactionsCount = 0;
+        BigDecimal totalDeposits = BigDecimal.ZERO;
+        BigDecimal totalWithdrawals = BigDecimal.ZERO;
+        BigDecimal totalMoney = BigDecimal.ZERO;
+        for (BankSummary summary : summaries) {
+            accountsCount += summary.getAccountsCount();
+            transactionsCount += summary.getTransactionsCount();
+            totalDeposits = totalDeposits.add(summary.getTotalDeposits());
+            totalWithdrawals = totalWithdrawals.add(summary.getTotalWithdrawals());
+            totalMoney = totalMoney.add(summary.getTotalMoney());
+        }
+        return new BankSummary(accountsCount, transactionsCount, totalDeposits, totalWithdrawals, totalMoney,
+                transactionIdLimit);
+    }
+
+    @Override
+    public List<HotAccount> lookupHotAccounts(int limit) {
+        return contention.hotAccounts(limit);
+    }
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        contention.writeMetrics(writer);
+    }
+}
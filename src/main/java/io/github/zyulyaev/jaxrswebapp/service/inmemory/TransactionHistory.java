@@ -0,0 +1,291 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.service.TransactionColumns;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * <p>Ids of committed transactions involving one account.</p>
+ * <p>Committing threads append ids without locking: a slot is reserved with an atomic addition and the id is
+ * written to it. Slots are kept in a linked list of chunks, the thread which first needs a slot past the last chunk
+ * links the next one. Concurrent commits append ids slightly out of order, and a reserved slot may stay empty for
+ * a while after later ones are written.</p>
+ * <p>Readers pass the finished id limit: every id below it is appended already, since transactions are published
+ * after their histories. Ids below the limit are folded into a sorted array which pages are read from. Folding is
+ * guarded by a lock readers only take, so it never blocks commits. Chunks whose ids are all folded are unlinked,
+ * so ids are kept once after they have been read.</p>
+ * <p>Ids restored in bulk, e.g. from a snapshot, are collected into one sorted array per account which becomes the
+ * sorted array as is. Ids restored after them may be lower, they are merged in on the first fold.</p>
+ */
+final class TransactionHistory {
+    private static final AtomicIntegerFieldUpdater<TransactionHistory> RESERVED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(TransactionHistory.class, "reserved");
+    private static final AtomicReferenceFieldUpdater<TransactionHistory, Chunk> HEAD_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(TransactionHistory.class, Chunk.class, "head");
+    private static final int[] NO_TRANSACTIONS = new int[0];
+    private static final int FIRST_CHUNK_SIZE = 4;
+    private static final int MAX_CHUNK_SIZE = 1024;
+    /**
+     * Value of a slot which is reserved but not written yet, ids are stored incremented by one
+     */
+    private static final int EMPTY = 0;
+
+    private volatile int reserved;
+    /**
+     * The first chunk which is not folded entirely, null until the first id is appended
+     */
+    private volatile Chunk head;
+    /**
+     * Chunk the last append was written to, where the next one most likely goes
+     */
+    private volatile Chunk tail;
+    // guarded by this
+    private int[] sorted = NO_TRANSACTIONS;
+    private int sortedCount;
+    /**
+     * Sorted array holds restored ids and exactly the appended ids below this one
+     */
+    private long sortedLimit;
+    /**
+     * Ids of all slots below this one are folded
+     */
+    private int foldedSlots;
+
+    /**
+     * Slots {@code [offset, offset + length)}
+     */
+    private static final class Chunk {
+        private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+        private final int offset;
+        private final AtomicIntegerArray slots;
+        private volatile Chunk next;
+
+        Chunk(int offset, int length) {
+            this.offset = offset;
+            this.slots = new AtomicIntegerArray(length);
+        }
+
+        int end() {
+            return offset + slots.length();
+        }
+
+        Chunk next() {
+            Chunk next = this.next;
+            if (next == null) {
+                Chunk linked = new Chunk(end(), Math.min(slots.length() * 2, MAX_CHUNK_SIZE));
+                next = NEXT_UPDATER.compareAndSet(this, null, linked) ? linked : this.next;
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Appends id of a transaction which is not published yet.
+     *
+     * @param transactionId transaction id
+     */
+    void append(int transactionId) {
+        int slot = RESERVED_UPDATER.getAndIncrement(this);
+        Chunk chunk = chunkOf(slot);
+        chunk.slots.lazySet(slot - chunk.offset, transactionId + 1);
+    }
+
+    /**
+     * Appends ids of transactions which are not published yet, reserving their slots at once.
+     *
+     * @param firstId id of the first transaction
+     * @param step    difference between consecutive ids
+     * @param count   number of ids
+     */
+    void append(int firstId, int step, int count) {
+        int slot = RESERVED_UPDATER.getAndAdd(this, count);
+        Chunk chunk = chunkOf(slot);
+        for (int i = 0; i < count; i++) {
+            while (slot + i >= chunk.end()) {
+                chunk = chunk.next();
+            }
+            chunk.slots.lazySet(slot + i - chunk.offset, firstId + i * step + 1);
+        }
+        tail = chunk;
+    }
+
+    /**
+     * Adds ids of restored transactions, which are published already. Must not be called concurrently with appends
+     * or reads.
+     *
+     * @param transactionIds sorted transaction ids, the array is kept by the history
+     */
+    synchronized void restore(int[] transactionIds) {
+        if (sortedCount == 0) {
+            sorted = transactionIds;
+            sortedCount = transactionIds.length;
+        } else {
+            merge(transactionIds, transactionIds.length);
+        }
+    }
+
+    /**
+     * Collects ids of restored transactions by account.
+     *
+     * @param transactions restored transactions
+     * @return sorted transaction ids indexed by account id, null for accounts without transactions
+     */
+    static int[][] collect(TransactionColumns transactions) {
+        int accountsLimit = 0;
+        for (int i = 0; i < transactions.size(); i++) {
+            accountsLimit = Math.max(accountsLimit, Math.max(transactions.getSourceAccountId(i),
+                    transactions.getTargetAccountId(i)) + 1);
+        }
+        int[] counts = new int[accountsLimit];
+        for (int i = 0; i < transactions.size(); i++) {
+            count(counts, transactions.getSourceAccountId(i));
+            count(counts, transactions.getTargetAccountId(i));
+        }
+        int[][] transactionIds = new int[accountsLimit][];
+        for (int accountId = 0; accountId < accountsLimit; accountId++) {
+            if (counts[accountId] != 0) {
+                transactionIds[accountId] = new int[counts[accountId]];
+                counts[accountId] = 0;
+            }
+        }
+        // ids of an account are recorded in ascending order unless the account was restored after them
+        BitSet unsorted = new BitSet();
+        for (int i = 0; i < transactions.size(); i++) {
+            int transactionId = transactions.getTransactionId(i);
+            add(transactionIds, counts, unsorted, transactions.getSourceAccountId(i), transactionId);
+            add(transactionIds, counts, unsorted, transactions.getTargetAccountId(i), transactionId);
+        }
+        for (int accountId = unsorted.nextSetBit(0); accountId >= 0; accountId = unsorted.nextSetBit(accountId + 1)) {
+            Arrays.sort(transactionIds[accountId]);
+        }
+        return transactionIds;
+    }
+
+    private static void count(int[] counts, int accountId) {
+        if (accountId != TransactionColumns.NO_ACCOUNT) {
+            counts[accountId]++;
+        }
+    }
+
+    private static void add(int[][] transactionIds, int[] counts, BitSet unsorted, int accountId,
+                            int transactionId)
+    {
+        if (accountId == TransactionColumns.NO_ACCOUNT) {
+            return;
+        }
+        int[] ids = transactionIds[accountId];
+        int index = counts[accountId]++;
+        if (index > 0 && ids[index - 1] > transactionId) {
+            unsorted.set(accountId);
+        }
+        ids[index] = transactionId;
+    }
+
+    /**
+     * Finds chunk of a reserved slot, linking new chunks if needed. Unlinked chunks are all written, so the chunk of
+     * a slot which is not written yet is reachable from the head.
+     */
+    private Chunk chunkOf(int slot) {
+        Chunk chunk = tail;
+        if (chunk == null || slot < chunk.offset) {
+            chunk = head;
+            if (chunk == null) {
+                Chunk first = new Chunk(0, FIRST_CHUNK_SIZE);
+                chunk = HEAD_UPDATER.compareAndSet(this, null, first) ? first : head;
+            }
+        }
+        while (slot >= chunk.end()) {
+            chunk = chunk.next();
+        }
+        tail = chunk;
+        return chunk;
+    }
+
+    /**
+     * Returns ids of transactions in ascending order.
+     *
+     * @param afterId  id of the transaction to start after
+     * @param beforeId finished id limit, no id below it may be appended later
+     * @param limit    max number of ids to return
+     * @return transaction ids greater than {@code afterId} and less than {@code beforeId}
+     */
+    synchronized int[] get(int afterId, long beforeId, int limit) {
+        fold(beforeId);
+        int from = Arrays.binarySearch(sorted, 0, sortedCount, afterId);
+        from = from < 0 ? -from - 1 : from + 1;
+        int to = from + Math.min(limit, sortedCount - from);
+        while (to > from && sorted[to - 1] >= beforeId) {
+            to--;
+        }
+        return Arrays.copyOfRange(sorted, from, to);
+    }
+
+    /**
+     * Moves appended ids below the limit to the sorted array. Slots are read after the limit, so they include all
+     * ids below it. Ids below the previous limit are folded already, ones above the new limit are left in place.
+     */
+    private void fold(long limit) {
+        if (limit <= sortedLimit) {
+            return;
+        }
+        int end = reserved;
+        Chunk chunk = head;
+        if (chunk == null || foldedSlots == end) {
+            sortedLimit = limit;
+            return;
+        }
+        int[] folded = new int[end - foldedSlots];
+        int foldedCount = 0;
+        int contiguousEnd = foldedSlots;
+        boolean contiguous = true;
+        for (int slot = foldedSlots; slot < end; slot++) {
+            while (chunk != null && slot >= chunk.end()) {
+                chunk = chunk.next;
+            }
+            if (chunk == null) {
+                break; // reserved slots of chunks not linked yet, not written either
+            }
+            int value = chunk.slots.get(slot - chunk.offset);
+            if (value == EMPTY || value - 1 >= limit) {
+                contiguous = false; // appended after the limit was read, folded later
+            } else if (value - 1 >= sortedLimit) {
+                folded[foldedCount++] = value - 1;
+            }
+            if (contiguous) {
+                contiguousEnd = slot + 1;
+            }
+        }
+        Arrays.sort(folded, 0, foldedCount);
+        merge(folded, foldedCount);
+        sortedLimit = limit;
+        foldedSlots = contiguousEnd;
+        Chunk first = head;
+        while (first.next != null && first.end() <= foldedSlots) {
+            first = first.next;
+        }
+        head = first;
+    }
+
+    /**
+     * Adds sorted ids to the sorted array. Appended ids follow the ones folded before, restored ones may not.
+     */
+    private void merge(int[] ids, int count) {
+        if (sortedCount + count > sorted.length) {
+            sorted = Arrays.copyOf(sorted, Math.max(sortedCount + count, sortedCount + (sortedCount >> 1)));
+        }
+        if (count == 0 || sortedCount == 0 || ids[0] > sorted[sortedCount - 1]) {
+            System.arraycopy(ids, 0, sorted, sortedCount, count);
+        } else {
+            for (int i = sortedCount - 1, j = count - 1, k = sortedCount + count - 1; j >= 0; k--) {
+                sorted[k] = i >= 0 && sorted[i] > ids[j] ? sorted[i--] : ids[j--];
+            }
+        }
+        sortedCount += count;
+    }
+}
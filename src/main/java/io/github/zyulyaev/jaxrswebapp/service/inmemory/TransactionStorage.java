@@ -0,0 +1,20 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+/**
+ * Where in-memory engines keep committed transactions
+ */
+public enum TransactionStorage {
+    /**
+     * Heap arrays
+     */
+    HEAP,
+    /**
+     * Direct buffers outside of the heap, so heap use does not grow with the number of transactions
+     */
+    DIRECT,
+    /**
+     * Memory-mapped temporary files, which are deleted right after mapping, so the system can page transactions
+     * out instead of keeping all of them in memory
+     */
+    MAPPED
+}
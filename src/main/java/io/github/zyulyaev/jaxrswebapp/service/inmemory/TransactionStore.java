@@ -0,0 +1,370 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Append-only columnar store of transactions addressed by non-negative int index.</p>
+ * <p>Transactions are not kept as objects: times, account ids and amounts are stored as fixed-width records of
+ * {@value #RECORD_SIZE} bytes in segments of {@value #SEGMENT_SIZE} records, either in heap arrays or outside of the
+ * heap, see {@link TransactionStorage}. Garbage collector has nothing to trace in either case. Transaction ids are
+ * not stored, a record at index {@code n} has id {@code n * idStride + idOffset}. {@link InMemoryTransaction} views
+ * are created on lookup.</p>
+ * <p>Every index is written by one thread only, which publishes the record by setting its state after all its
+ * columns. Once all records of a segment are written their states are dropped, so heap use of off-heap storages
+ * does not grow with the number of transactions. Reads never lock: they see either nothing or a fully written
+ * record. Writers only lock when a new segment has to be allocated.</p>
+ */
+final class TransactionStore {
+    /**
+     * Account id of the missing side of deposits and withdrawals
+     */
+    static final int NO_ACCOUNT = -1;
+    /**
+     * Bytes of all columns of one record: epoch nanos, amount, source and target account ids
+     */
+    static final int RECORD_SIZE = 8 + 8 + 4 + 4;
+
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INITIAL_DIRECTORY_SIZE = 16;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final int EMPTY = 0;
+    private static final int COMMITTED = 1;
+    private static final int SKIPPED = 2;
+
+    private final TransactionStorage storage;
+    private final int scale;
+    private final int idStride;
+    private final int idOffset;
+    private volatile AtomicReferenceArray<Segment> directory = new AtomicReferenceArray<>(INITIAL_DIRECTORY_SIZE);
+
+    /**
+     * Records of {@value #SEGMENT_SIZE} consecutive indices. Skipped records have no accounts, which is how they are
+     * told from committed ones after states are dropped.
+     */
+    private abstract static class Segment {
+        private final AtomicInteger writtenCount = new AtomicInteger();
+        /**
+         * States of records until all of them are written, null after that. Written after the columns, so that
+         * columns of a record are visible to whoever sees it committed.
+         */
+        private volatile AtomicIntegerArray states = new AtomicIntegerArray(SEGMENT_SIZE);
+
+        abstract void write(int offset, long epochNanos, int sourceAccountId, int targetAccountId, long amount);
+
+        abstract long epochNanos(int offset);
+
+        abstract int sourceAccountId(int offset);
+
+        abstract int targetAccountId(int offset);
+
+        abstract long amount(int offset);
+
+        void publish(int offset, int state) {
+            AtomicIntegerArray states = this.states;
+            if (states != null && states.getAndSet(offset, state) == EMPTY
+                    && writtenCount.incrementAndGet() == SEGMENT_SIZE)
+            {
+                this.states = null;
+            }
+        }
+
+        /**
+         * Returns state of the record, reading its accounts if all records are written.
+         */
+        int state(int offset) {
+            AtomicIntegerArray states = this.states;
+            if (states != null) {
+                return states.get(offset);
+            }
+            if (sourceAccountId(offset) == NO_ACCOUNT && targetAccountId(offset) == NO_ACCOUNT) {
+                return SKIPPED;
+            }
+            return COMMITTED;
+        }
+    }
+
+    private static final class HeapSegment extends Segment {
+        private final long[] epochNanos = new long[SEGMENT_SIZE];
+        private final long[] amounts = new long[SEGMENT_SIZE];
+        private final int[] sourceAccountIds = new int[SEGMENT_SIZE];
+        private final int[] targetAccountIds = new int[SEGMENT_SIZE];
+
+        @Override
+        void write(int offset, long epochNanos, int sourceAccountId, int targetAccountId, long amount) {
+            this.epochNanos[offset] = epochNanos;
+            this.amounts[offset] = amount;
+            this.sourceAccountIds[offset] = sourceAccountId;
+            this.targetAccountIds[offset] = targetAccountId;
+        }
+
+        @Override
+        long epochNanos(int offset) {
+            return epochNanos[offset];
+        }
+
+        @Override
+        int sourceAccountId(int offset) {
+            return sourceAccountIds[offset];
+        }
+
+        @Override
+        int targetAccountId(int offset) {
+            return targetAccountIds[offset];
+        }
+
+        @Override
+        long amount(int offset) {
+            return amounts[offset];
+        }
+    }
+
+    /**
+     * Segment of records in a direct or mapped buffer, accessed with absolute gets and puts only, so threads
+     * never interfere through buffer's position
+     */
+    private static final class BufferSegment extends Segment {
+        private static final int EPOCH_NANOS = 0;
+        private static final int AMOUNT = 8;
+        private static final int SOURCE_ACCOUNT_ID = 16;
+        private static final int TARGET_ACCOUNT_ID = 20;
+
+        private final ByteBuffer buffer;
+
+        BufferSegment(ByteBuffer buffer) {
+            this.buffer = buffer.order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        void write(int offset, long epochNanos, int sourceAccountId, int targetAccountId, long amount) {
+            int position = offset * RECORD_SIZE;
+            buffer.putLong(position + EPOCH_NANOS, epochNanos);
+            buffer.putLong(position + AMOUNT, amount);
+            buffer.putInt(position + SOURCE_ACCOUNT_ID, sourceAccountId);
+            buffer.putInt(position + TARGET_ACCOUNT_ID, targetAccountId);
+        }
+
+        @Override
+        long epochNanos(int offset) {
+            return buffer.getLong(offset * RECORD_SIZE + EPOCH_NANOS);
+        }
+
+        @Override
+        int sourceAccountId(int offset) {
+            return buffer.getInt(offset * RECORD_SIZE + SOURCE_ACCOUNT_ID);
+        }
+
+        @Override
+        int targetAccountId(int offset) {
+            return buffer.getInt(offset * RECORD_SIZE + TARGET_ACCOUNT_ID);
+        }
+
+        @Override
+        long amount(int offset) {
+            return buffer.getLong(offset * RECORD_SIZE + AMOUNT);
+        }
+    }
+
+    /**
+     * Create new transaction store.
+     *
+     * @param storage  where to keep records
+     * @param scale    number of fractional digits of stored amounts
+     * @param idStride difference of ids of adjacent records
+     * @param idOffset id of the first record
+     */
+    TransactionStore(TransactionStorage storage, int scale, int idStride, int idOffset) {
+        this.storage = storage;
+        this.scale = scale;
+        this.idStride = idStride;
+        this.idOffset = idOffset;
+    }
+
+    /**
+     * Publishes transaction at specified index.
+     *
+     * @param index           record index, must not be negative
+     * @param transactionTime transaction time, must be within years 1678 to 2262
+     * @param sourceAccountId source account id or {@link #NO_ACCOUNT}
+     * @param targetAccountId target account id or {@link #NO_ACCOUNT}
+     * @param amount          amount in minor units
+     * @return view of the published transaction
+     * @throws UncheckedIOException if a new segment can not be mapped
+     */
+    InMemoryTransaction put(int index, Instant transactionTime, int sourceAccountId, int targetAccountId,
+                            long amount)
+    {
+        long epochNanos = epochNanos(transactionTime.getEpochSecond(), transactionTime.getNano());
+        write(index, epochNanos, sourceAccountId, targetAccountId, amount);
+        return new InMemoryTransaction(transactionId(index), epochNanos, sourceAccountId, targetAccountId, amount,
+                scale);
+    }
+
+    /**
+     * Publishes restored transaction at specified index without creating any objects.
+     *
+     * @param index           record index, must not be negative
+     * @param epochSecond     seconds of transaction time since the epoch
+     * @param nano            nanoseconds of transaction time within the second
+     * @param sourceAccountId source account id or {@link #NO_ACCOUNT}
+     * @param targetAccountId target account id or {@link #NO_ACCOUNT}
+     * @param amount          amount in minor units
+     * @throws UncheckedIOException if a new segment can not be mapped
+     */
+    void restore(int index, long epochSecond, int nano, int sourceAccountId, int targetAccountId, long amount) {
+        write(index, epochNanos(epochSecond, nano), sourceAccountId, targetAccountId, amount);
+    }
+
+    private void write(int index, long epochNanos, int sourceAccountId, int targetAccountId, long amount) {
+        if (sourceAccountId == NO_ACCOUNT && targetAccountId == NO_ACCOUNT) {
+            throw new IllegalArgumentException("At least one of source and target must be present");
+        }
+        Segment segment = segmentFor(index);
+        int offset = index & SEGMENT_MASK;
+        segment.write(offset, epochNanos, sourceAccountId, targetAccountId, amount);
+        segment.publish(offset, COMMITTED);
+    }
+
+    private static long epochNanos(long epochSecond, int nano) {
+        try {
+            return Math.addExact(Math.multiplyExact(epochSecond, NANOS_PER_SECOND), nano);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Unsupported transaction time: "
+                    + Instant.ofEpochSecond(epochSecond, nano));
+        }
+    }
+
+    /**
+     * Marks index as never to be committed.
+     *
+     * @param index record index, must not be negative
+     */
+    void skip(int index) {
+        Segment segment = segmentFor(index);
+        int offset = index & SEGMENT_MASK;
+        segment.write(offset, 0, NO_ACCOUNT, NO_ACCOUNT, 0);
+        segment.publish(offset, SKIPPED);
+    }
+
+    /**
+     * Returns view of transaction at specified index. Allocates nothing but the view.
+     *
+     * @param index record index
+     * @return transaction view, or null if it is not published yet, skipped or index is negative
+     */
+    InMemoryTransaction get(int index) {
+        Segment segment = findSegment(index);
+        if (segment == null) {
+            return null;
+        }
+        int offset = index & SEGMENT_MASK;
+        if (segment.state(offset) != COMMITTED) {
+            return null;
+        }
+        return new InMemoryTransaction(transactionId(index), segment.epochNanos(offset),
+                segment.sourceAccountId(offset), segment.targetAccountId(offset), segment.amount(offset), scale);
+    }
+
+    /**
+     * Checks whether record at index is either committed or skipped.
+     *
+     * @param index record index
+     * @return true if index is written
+     */
+    boolean isWritten(int index) {
+        Segment segment = findSegment(index);
+        return segment != null && segment.state(index & SEGMENT_MASK) != EMPTY;
+    }
+
+    /**
+     * Checks whether index is skipped.
+     *
+     * @param index record index
+     * @return true if index is skipped
+     */
+    boolean isSkipped(int index) {
+        Segment segment = findSegment(index);
+        return segment != null && segment.state(index & SEGMENT_MASK) == SKIPPED;
+    }
+
+    private int transactionId(int index) {
+        return index * idStride + idOffset;
+    }
+
+    private Segment findSegment(int index) {
+        if (index < 0) {
+            return null;
+        }
+        AtomicReferenceArray<Segment> directory = this.directory;
+        int segmentIndex = index >>> SEGMENT_SHIFT;
+        return segmentIndex < directory.length() ? directory.get(segmentIndex) : null;
+    }
+
+    private Segment segmentFor(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Negative index: " + index);
+        }
+        Segment segment = findSegment(index);
+        return segment != null ? segment : allocateSegment(index >>> SEGMENT_SHIFT);
+    }
+
+    private synchronized Segment allocateSegment(int segmentIndex) {
+        AtomicReferenceArray<Segment> directory = this.directory;
+        if (segmentIndex >= directory.length()) {
+            AtomicReferenceArray<Segment> grown =
+                    new AtomicReferenceArray<>(Math.max(directory.length() * 2, segmentIndex + 1));
+            for (int i = 0; i < directory.length(); i++) {
+                grown.set(i, directory.get(i));
+            }
+            this.directory = directory = grown;
+        }
+        Segment segment = directory.get(segmentIndex);
+        if (segment == null) {
+            segment = createSegment();
+            directory.set(segmentIndex, segment);
+        }
+        return segment;
+    }
+
+    private Segment createSegment() {
+        switch (storage) {
+            case HEAP:
+                return new HeapSegment();
+            case DIRECT:
+                return new BufferSegment(ByteBuffer.allocateDirect(SEGMENT_SIZE * RECORD_SIZE));
+            case MAPPED:
+                return new BufferSegment(mapTemporaryFile(SEGMENT_SIZE * RECORD_SIZE));
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+    }
+
+    /**
+     * Maps a new temporary file and deletes it. The mapping stays valid until the buffer is collected.
+     */
+    private static ByteBuffer mapTemporaryFile(int size) {
+        try {
+            Path file = Files.createTempFile("bank-transactions-", ".segment");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to map transactions segment", ex);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package io.github.zyulyaev.jaxrswebapp.service.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import static org.apache.logging.log4j.util.Unbox.box;
+
+/**
+ * <p>Append-only binary journal of created accounts and committed transactions.</p>
+ * <p>The journal is a sequence of memory-mapped segment files of fixed size. Every record is framed with its length
+ * and CRC32 checksum and never spans segments. Writes go to the mapped memory, a dedicated group commit thread
+ * forces written segments to disk, batching records of all concurrent writers into one flush.</p>
+ * <p>On {@link #open(Path, int, Durability, int, Listener) open} records are replayed starting at specified
+ * segment, older segments may be folded into a snapshot and deleted. A torn or corrupted record ends the journal: it
+ * and everything after it is erased, so new records are appended right after the last valid one. So does a hole:
+ * pages of a segment may reach the disk out of order, records found after a zeroed frame are erased as well.</p>
+ */
+public final class Journal implements AutoCloseable {
+    /**
+     * Default size of a journal segment file
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final Logger log = LogManager.getLogger(Journal.class);
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final byte ACCOUNT_RECORD = 1;
+    private static final byte TRANSACTION_RECORD = 2;
+    private static final int NO_ACCOUNT = -1;
+    private static final int NO_OWNER = -1;
+    private static final long FLUSH_INTERVAL_MILLIS = 10;
+
+    /**
+     * Defines when journaled operations are acknowledged
+     */
+    public enum Durability {
+        /**
+         * Operation completes after its record is flushed to disk
+         */
+        SYNC,
+        /**
+         * Operation completes once its record is written to the mapped memory, records are flushed to disk
+         * periodically
+         */
+        ASYNC
+    }
+
+    /**
+     * Receives replayed records
+     */
+    public interface Listener {
+        void accountCreated(int accountId, String owner, Instant creationTime);
+
+        void transactionCreated(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                Integer targetAccountId, BigDecimal amount);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Durability durability;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final List<MappedByteBuffer> unflushedSegments = new ArrayList<>();
+    private final Thread flusher;
+    // guarded by lock
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+    private long writtenPosition;
+    private long durablePosition;
+    private RuntimeException flushFailure;
+    private boolean closed;
+
+    private Journal(Path directory, int segmentSize, Durability durability, int segmentIndex,
+                    MappedByteBuffer segment)
+    {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.durability = durability;
+        this.segmentIndex = segmentIndex;
+        this.segment = segment;
+        this.writtenPosition = this.durablePosition = position(segmentIndex, segment.position());
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Open journal stored in specified directory, replay its records and start the group commit thread.
+     *
+     * @param directory    directory with journal segments, created if absent
+     * @param segmentSize  size of a segment file
+     * @param durability   when appended records are acknowledged
+     * @param firstSegment index of the first segment to replay, older segments are ignored
+     * @param listener     receiver of replayed records
+     * @return opened journal ready for appending
+     * @throws IOException if journal cannot be read or written
+     */
+    public static Journal open(Path directory, int segmentSize, Durability durability, int firstSegment,
+                               Listener listener) throws IOException
+    {
+        Files.createDirectories(directory);
+        int segmentIndex = firstSegment;
+        MappedByteBuffer segment = map(directory.resolve(segmentName(segmentIndex)), segmentSize);
+        boolean clean;
+        while ((clean = replaySegment(segment, listener))) {
+            Path next = directory.resolve(segmentName(segmentIndex + 1));
+            if (!Files.exists(next)) {
+                break;
+            }
+            segmentIndex++;
+            segment = map(next, segmentSize);
+        }
+        if (!clean) {
+            // everything after the end of the last valid record is erased
+            for (int i = segment.position(); i < segment.limit(); i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+            for (int i = segmentIndex + 1; Files.deleteIfExists(directory.resolve(segmentName(i))); i++) {
+                log.warn("Discarded journal segment after corrupted record: {}", box(i));
+            }
+        }
+        Journal journal = new Journal(directory, segmentSize, durability, segmentIndex, segment);
+        journal.flusher.start();
+        log.info("Journal opened at segment {} offset {}", box(segmentIndex), box(segment.position()));
+        return journal;
+    }
+
+    /**
+     * Replay records of a sealed segment, i.e. one which is older than the {@link #getSegmentIndex() current} one.
+     *
+     * @param directory    directory with journal segments
+     * @param segmentSize  size of a segment file
+     * @param segmentIndex index of the segment to replay
+     * @param listener     receiver of replayed records
+     * @throws IOException if segment cannot be read or contains a corrupted record
+     */
+    static void replaySealed(Path directory, int segmentSize, int segmentIndex, Listener listener)
+            throws IOException
+    {
+        Path path = directory.resolve(segmentName(segmentIndex));
+        MappedByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+        }
+        if (!replaySegment(segment, listener)) {
+            throw new IOException("Corrupted sealed journal segment: " + path);
+        }
+    }
+
+    /**
+     * Reads records of the segment starting at its beginning and leaves segment position at the end of the last
+     * valid record.
+     *
+     * @return true if segment ended cleanly, false if a corrupted record or data after the end was found
+     */
+    private static boolean replaySegment(MappedByteBuffer segment, Listener listener) {
+        CRC32 crc = new CRC32();
+        while (segment.remaining() >= HEADER_SIZE) {
+            int start = segment.position();
+            int length = segment.getInt(start);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > segment.remaining() - HEADER_SIZE) {
+                log.warn("Truncated journal record at offset {}", box(start));
+                return false;
+            }
+            ByteBuffer payload = (ByteBuffer) segment.duplicate().position(start + HEADER_SIZE)
+                    .limit(start + HEADER_SIZE + length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != segment.getInt(start + 4) || !replayRecord(payload, listener)) {
+                log.warn("Corrupted journal record at offset {}", box(start));
+                return false;
+            }
+            segment.position(start + HEADER_SIZE + length);
+        }
+        if (!isZero(segment, segment.position())) {
+            log.warn("Unexpected data after the end of journal records at offset {}", box(segment.position()));
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isZero(MappedByteBuffer segment, int from) {
+        for (int i = from; i < segment.limit(); i++) {
+            if (segment.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean replayRecord(ByteBuffer payload, Listener listener) {
+        byte type = payload.get();
+        if (type == ACCOUNT_RECORD) {
+            int accountId = payload.getInt();
+            Instant creationTime = Instant.ofEpochSecond(payload.getLong(), payload.getInt());
+            int ownerLength = payload.getInt();
+            String owner = null;
+            if (ownerLength != NO_OWNER) {
+                byte[] ownerBytes = new byte[ownerLength];
+                payload.get(ownerBytes);
+                owner = new String(ownerBytes, StandardCharsets.UTF_8);
+            }
+            listener.accountCreated(accountId, owner, creationTime);
+            return true;
+        } else if (type == TRANSACTION_RECORD) {
+            int transactionId = payload.getInt();
+            Instant transactionTime = Instant.ofEpochSecond(payload.getLong(), payload.getInt());
+            int sourceAccountId = payload.getInt();
+            int targetAccountId = payload.getInt();
+            BigDecimal amount = BigDecimal.valueOf(payload.getLong(), payload.get());
+            listener.transactionCreated(transactionId, transactionTime,
+                    sourceAccountId == NO_ACCOUNT ? null : sourceAccountId,
+                    targetAccountId == NO_ACCOUNT ? null : targetAccountId, amount);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Append account creation record.
+     *
+     * @param accountId    created account id
+     * @param owner        account owner
+     * @param creationTime account creation time
+     */
+    public void appendAccount(int accountId, String owner, Instant creationTime) {
+        byte[] ownerBytes = owner == null ? null : owner.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(21 + (ownerBytes == null ? 0 : ownerBytes.length))
+                .put(ACCOUNT_RECORD)
+                .putInt(accountId)
+                .putLong(creationTime.getEpochSecond())
+                .putInt(creationTime.getNano())
+                .putInt(ownerBytes == null ? NO_OWNER : ownerBytes.length);
+        if (ownerBytes != null) {
+            payload.put(ownerBytes);
+        }
+        append(payload);
+    }
+
+    /**
+     * Append transaction commit record.
+     *
+     * @param transactionId   committed transaction id
+     * @param transactionTime transaction time
+     * @param sourceAccountId source account id, or null in case of deposit
+     * @param targetAccountId target account id, or null in case of withdrawal
+     * @param amount          transaction amount, its unscaled value must fit {@code long}
+     */
+    public void appendTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                  Integer targetAccountId, BigDecimal amount)
+    {
+        BigInteger unscaled = amount.unscaledValue();
+        if (unscaled.bitLength() >= Long.SIZE || amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount cannot be journaled: " + amount);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(34)
+                .put(TRANSACTION_RECORD)
+                .putInt(transactionId)
+                .putLong(transactionTime.getEpochSecond())
+                .putInt(transactionTime.getNano())
+                .putInt(sourceAccountId == null ? NO_ACCOUNT : sourceAccountId)
+                .putInt(targetAccountId == null ? NO_ACCOUNT : targetAccountId)
+                .putLong(unscaled.longValue())
+                .put((byte) amount.scale());
+        append(payload);
+    }
+
+    private void append(ByteBuffer payload) {
+        payload.flip();
+        int length = payload.remaining();
+        if (length + HEADER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("Record does not fit journal segment: " + length);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (segment.remaining() < length + HEADER_SIZE) {
+                nextSegment();
+            }
+            segment.putInt(length)
+                    .putInt((int) crc.getValue())
+                    .put(payload);
+            writtenPosition = position(segmentIndex, segment.position());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void nextSegment() {
+        try {
+            MappedByteBuffer next = map(directory.resolve(segmentName(segmentIndex + 1)), segmentSize);
+            unflushedSegments.add(segment);
+            segment = next;
+            segmentIndex++;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Wait until all records appended so far are flushed to disk if journal durability is {@link Durability#SYNC},
+     * return immediately otherwise.
+     */
+    public void sync() {
+        if (durability != Durability.SYNC) {
+            return;
+        }
+        lock.lock();
+        try {
+            long target = writtenPosition;
+            while (durablePosition < target) {
+                if (flushFailure != null) {
+                    throw flushFailure;
+                }
+                flushRequested.signal();
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (flushFailure == null) {
+                if (!closed && (durability == Durability.ASYNC || writtenPosition == durablePosition)) {
+                    flushRequested.await(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (writtenPosition != durablePosition) {
+                    flush();
+                } else if (closed) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces segments written so far. Called with lock held, releases it while waiting for disk.
+     */
+    private void flush() {
+        long target = writtenPosition;
+        List<MappedByteBuffer> segments = new ArrayList<>(unflushedSegments);
+        segments.add(segment);
+        unflushedSegments.clear();
+        lock.unlock();
+        RuntimeException failure = null;
+        try {
+            for (MappedByteBuffer flushedSegment : segments) {
+                flushedSegment.force();
+            }
+        } catch (RuntimeException ex) {
+            log.error("Failed to flush journal", ex);
+            failure = ex;
+        } finally {
+            lock.lock();
+        }
+        if (failure != null) {
+            flushFailure = failure;
+        } else {
+            durablePosition = target;
+        }
+        flushed.signalAll();
+    }
+
+    /**
+     * Returns index of the segment records are currently appended to. All older segments are sealed and never
+     * change.
+     *
+     * @return current segment index
+     */
+    public int getSegmentIndex() {
+        lock.lock();
+        try {
+            return segmentIndex;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete sealed segments older than specified one, e.g. after they are folded into a snapshot.
+     *
+     * @param segmentIndex index of the oldest segment to keep, must not be greater than the current one
+     * @throws IOException if segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(int segmentIndex) throws IOException {
+        if (segmentIndex > getSegmentIndex()) {
+            throw new IllegalArgumentException("Segment is not sealed: " + segmentIndex);
+        }
+        for (int i = segmentIndex - 1; i >= 0 && Files.deleteIfExists(directory.resolve(segmentName(i))); i--) {
+            log.debug("Deleted journal segment {}", box(i));
+        }
+    }
+
+    /**
+     * Flush all appended records and stop the group commit thread.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long position(int segmentIndex, int offset) {
+        return (long) segmentIndex * segmentSize + offset;
+    }
+
+    private static String segmentName(int segmentIndex) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(Path path, int segmentSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE))
+        {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package io.github.zyulyaev.jaxrswebapp.service.journal;
+
+import io.github.zyulyaev.jaxrswebapp.service.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.logging.log4j.util.Unbox.box;
+
+/**
+ * <p>{@link BankService} decorator which appends every created account and committed transaction to a
+ * {@link Journal} and restores the decorated service from it on startup.</p>
+ * <p>Sealed journal segments are periodically folded into a {@link Snapshot}, so restore loads the newest snapshot
+ * and replays only segments written after it.</p>
+ * <p>Operations on the same account are journaled in the order they are applied: an operation holds striped
+ * account locks while it is applied and appended, so any prefix of the journal is a consistent state. Waiting for
+ * the group commit happens after the locks are released.</p>
+ * <p>Journaling is write-behind: the decorated service assigns transaction ids and times, so an operation is
+ * applied before it is appended. Once an append or a flush fails, the decorated service may hold operations the
+ * journal lacks, so the service fails: the failed and all further mutating operations throw
+ * {@link IllegalStateException}, the journaled state is restored on restart.</p>
+ */
+public final class JournaledBankService implements BankService, AutoCloseable {
+    private static final Logger log = LogManager.getLogger(JournaledBankService.class);
+    private static final int STRIPES_COUNT = 1024;
+    private static final String ID_FILE = "journal.id";
+
+    private final BankService delegate;
+    private final Journal journal;
+    private final Snapshotter snapshotter;
+    private final String journalId;
+    private final Object[] stripes = new Object[STRIPES_COUNT];
+    private volatile RuntimeException journalFailure;
+
+    private JournaledBankService(BankService delegate, Journal journal, Snapshotter snapshotter, String journalId) {
+        this.delegate = delegate;
+        this.journal = journal;
+        this.snapshotter = snapshotter;
+        this.journalId = journalId;
+        for (int i = 0; i < STRIPES_COUNT; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Restore the service from the journal stored in specified directory and start journaling its operations.
+     * Snapshots are only written on {@link #snapshot() demand}.
+     *
+     * @param delegate    service to restore and decorate, must be empty
+     * @param directory   journal directory
+     * @param segmentSize size of a journal segment file
+     * @param durability  when journaled operations are acknowledged
+     * @return journaled service
+     * @throws IOException if journal cannot be read or written
+     */
+    public static JournaledBankService open(RecoverableBankService delegate, Path directory, int segmentSize,
+                                            Journal.Durability durability) throws IOException
+    {
+        return open(delegate, directory, segmentSize, durability, Duration.ZERO);
+    }
+
+    /**
+     * Restore the service from the newest snapshot and the journal stored in specified directory and start
+     * journaling its operations.
+     *
+     * @param delegate         service to restore and decorate, must be empty
+     * @param directory        journal directory
+     * @param segmentSize      size of a journal segment file
+     * @param durability       when journaled operations are acknowledged
+     * @param snapshotInterval interval between periodic snapshots, zero disables them
+     * @return journaled service
+     * @throws IOException if journal or snapshot cannot be read or written
+     */
+    public static JournaledBankService open(RecoverableBankService delegate, Path directory, int segmentSize,
+                                            Journal.Durability durability, Duration snapshotInterval)
+            throws IOException
+    {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        String journalId = readOrCreateId(directory);
+        Snapshot snapshot = Snapshot.readLatest(directory);
+        snapshot.restore(delegate);
+        long snapshotRestored = System.nanoTime();
+        Replay replay = new Replay(delegate, snapshot);
+        Journal journal = Journal.open(directory, segmentSize, durability, snapshot.getJournalSegment(), replay);
+        replay.finish();
+        // segments folded into the snapshot may survive a crash right after it is written
+        journal.deleteSegmentsBefore(snapshot.getJournalSegment());
+        long journalReplayed = System.nanoTime();
+        log.info("Restored {} accounts and {} transactions from snapshot in {} ms, "
+                        + "{} accounts and {} transactions from journal in {} ms",
+                box(snapshot.getAccountsCount()), box(snapshot.getTransactionsCount()),
+                box(TimeUnit.NANOSECONDS.toMillis(snapshotRestored - start)),
+                box(replay.accountsCount), box(replay.transactionsCount),
+                box(TimeUnit.NANOSECONDS.toMillis(journalReplayed - snapshotRestored)));
+        return new JournaledBankService(delegate, journal,
+                new Snapshotter(directory, segmentSize, journal, snapshotInterval), journalId);
+    }
+
+    /**
+     * Reads id of the journal stored in specified directory, or assigns a random one to a new journal.
+     */
+    private static String readOrCreateId(Path directory) throws IOException {
+        Path file = directory.resolve(ID_FILE);
+        if (!Files.exists(file)) {
+            Path temporary = directory.resolve(ID_FILE + ".tmp");
+            String id = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, Character.MAX_RADIX);
+            Files.write(temporary, id.getBytes(StandardCharsets.US_ASCII));
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Returns id of the journal assigned when it was created. Transaction ids are unique within the journal, but
+     * are reused by a journal created anew in the same place.
+     *
+     * @return journal id
+     */
+    public String getJournalId() {
+        return journalId;
+    }
+
+    /**
+     * Fold all sealed journal segments into a new snapshot and delete them. Does not block operations.
+     *
+     * @throws IOException if journal or snapshot cannot be read or written
+     */
+    public void snapshot() throws IOException {
+        snapshotter.snapshot();
+    }
+
+    @Override
+    public Account createAccount(String owner) {
+        checkJournal();
+        Account account = journaled(delegate.createAccount(owner));
+        sync();
+        return account;
+    }
+
+    @Override
+    public List<Account> createAccounts(List<String> owners) {
+        checkJournal();
+        List<Account> accounts = delegate.createAccounts(owners);
+        for (Account account : accounts) {
+            journaled(account);
+        }
+        sync();
+        return accounts;
+    }
+
+    @Override
+    public Account lookupAccount(int accountId) {
+        return delegate.lookupAccount(accountId);
+    }
+
+    @Override
+    public long lookupAccountVersion(int accountId) {
+        return delegate.lookupAccountVersion(accountId);
+    }
+
+    @Override
+    public Transaction deposit(int targetAccountId, BigDecimal amount) throws BankOperationException {
+        checkJournal();
+        Transaction transaction;
+        synchronized (stripe(targetAccountId)) {
+            transaction = journaled(delegate.deposit(targetAccountId, amount));
+        }
+        sync();
+        return transaction;
+    }
+
+    @Override
+    public Transaction withdraw(int sourceAccountId, BigDecimal amount) throws BankOperationException {
+        checkJournal();
+        Transaction transaction;
+        synchronized (stripe(sourceAccountId)) {
+            transaction = journaled(delegate.withdraw(sourceAccountId, amount));
+        }
+        sync();
+        return transaction;
+    }
+
+    @Override
+    public Transaction transfer(int sourceAccountId, int targetAccountId, BigDecimal amount)
+            throws BankOperationException
+    {
+        checkJournal();
+        Transaction transaction = journaledTransfer(sourceAccountId, targetAccountId, amount);
+        sync();
+        return transaction;
+    }
+
+    private Transaction journaledTransfer(int sourceAccountId, int targetAccountId, BigDecimal amount)
+            throws BankOperationException
+    {
+        Object sourceStripe = stripe(sourceAccountId);
+        Object targetStripe = stripe(targetAccountId);
+        boolean sourceFirst = stripeIndex(sourceAccountId) <= stripeIndex(targetAccountId);
+        synchronized (sourceFirst ? sourceStripe : targetStripe) {
+            synchronized (sourceFirst ? targetStripe : sourceStripe) {
+                return journaled(delegate.transfer(sourceAccountId, targetAccountId, amount));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Waits for the group commit once per batch.</p>
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<TransactionRequest> requests) {
+        checkJournal();
+        List<BatchResult> results = new ArrayList<>(requests.size());
+        for (TransactionRequest request : requests) {
+            try {
+                results.add(BatchResult.created(executeJournaled(request)));
+            } catch (IllegalArgumentException ex) {
+                results.add(BatchResult.invalid(ex));
+            } catch (BankOperationException ex) {
+                results.add(BatchResult.failed(ex));
+            }
+        }
+        sync();
+        return results;
+    }
+
+    private Transaction executeJournaled(TransactionRequest request) throws BankOperationException {
+        if (request.getAmount() == null) {
+            throw new IllegalArgumentException("No amount: " + request);
+        }
+        if (request.getSourceAccountId() == null) {
+            if (request.getTargetAccountId() == null) {
+                throw new IllegalArgumentException("No accounts: " + request);
+            }
+            synchronized (stripe(request.getTargetAccountId())) {
+                return journaled(delegate.deposit(request.getTargetAccountId(), request.getAmount()));
+            }
+        } else if (request.getTargetAccountId() == null) {
+            synchronized (stripe(request.getSourceAccountId())) {
+                return journaled(delegate.withdraw(request.getSourceAccountId(), request.getAmount()));
+            }
+        } else {
+            return journaledTransfer(request.getSourceAccountId(), request.getTargetAccountId(),
+                    request.getAmount());
+        }
+    }
+
+    @Override
+    public List<Account> lookupAccountsByOwner(String owner, boolean prefix, String afterOwner, int afterId,
+                                               int limit)
+    {
+        return delegate.lookupAccountsByOwner(owner, prefix, afterOwner, afterId, limit);
+    }
+
+    @Override
+    public Transaction lookupTransaction(int transactionId) {
+        return delegate.lookupTransaction(transactionId);
+    }
+
+    @Override
+    public List<Transaction> lookupTransactions(int afterId, int limit) {
+        return delegate.lookupTransactions(afterId, limit);
+    }
+
+    @Override
+    public List<Transaction> lookupAccountTransactions(int accountId, int afterId, int limit)
+            throws AccountNotFoundException
+    {
+        return delegate.lookupAccountTransactions(accountId, afterId, limit);
+    }
+
+    private Account journaled(Account account) {
+        try {
+            journal.appendAccount(account.getAccountId(), account.getOwner(), account.getCreationTime());
+        } catch (RuntimeException ex) {
+            throw failed(ex);
+        }
+        return account;
+    }
+
+    private Transaction journaled(Transaction transaction) {
+        try {
+            journal.appendTransaction(transaction.getTransactionId(), transaction.getTransactionTime(),
+                    transaction.getSourceAccountId(), transaction.getTargetAccountId(), transaction.getAmount());
+        } catch (RuntimeException ex) {
+            throw failed(ex);
+        }
+        return transaction;
+    }
+
+    private void sync() {
+        try {
+            journal.sync();
+        } catch (RuntimeException ex) {
+            throw failed(ex);
+        }
+    }
+
+    /**
+     * Fails the service after the journal failed, operations applied by then may be missing in the journal.
+     */
+    private IllegalStateException failed(RuntimeException ex) {
+        if (journalFailure == null) {
+            log.error("Journal failed, rejecting further operations", ex);
+            journalFailure = ex;
+        }
+        return new IllegalStateException("Journal failed", ex);
+    }
+
+    private void checkJournal() {
+        RuntimeException failure = journalFailure;
+        if (failure != null) {
+            throw new IllegalStateException("Journal failed", failure);
+        }
+    }
+
+    private int stripeIndex(int accountId) {
+        return accountId & (STRIPES_COUNT - 1);
+    }
+
+    private Object stripe(int accountId) {
+        return stripes[stripeIndex(accountId)];
+    }
+
+    /**
+     * Stop periodic snapshots, flush the journal and close it.
+     */
+    @Override
+    public void close() {
+        snapshotter.close();
+        journal.close();
+    }
+
+    /**
+     * Applies replayed records to the restored service. Transactions which are journaled before their accounts
+     * (account creation and first operation raced) are applied after all other records. A transaction included in
+     * the restored snapshot means that the journal does not continue the snapshot, so restore fails rather than
+     * apply it twice.
+     */
+    private static final class Replay implements Journal.Listener {
+        private final RecoverableBankService service;
+        private final Snapshot snapshot;
+        private final List<Runnable> deferred = new ArrayList<>();
+        private int accountsCount;
+        private int transactionsCount;
+
+        Replay(RecoverableBankService service, Snapshot snapshot) {
+            this.service = service;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void accountCreated(int accountId, String owner, Instant creationTime) {
+            service.restoreAccount(accountId, owner, creationTime);
+            accountsCount++;
+        }
+
+        @Override
+        public void transactionCreated(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                       Integer targetAccountId, BigDecimal amount)
+        {
+            if (snapshot.includes(transactionId, sourceAccountId, targetAccountId)) {
+                throw new IllegalStateException("Journaled transaction #" + transactionId
+                        + " is already restored from snapshot of journal segment " + snapshot.getJournalSegment());
+            }
+            try {
+                service.restoreTransaction(transactionId, transactionTime, sourceAccountId, targetAccountId, amount);
+                transactionsCount++;
+            } catch (AccountNotFoundException ex) {
+                deferred.add(() -> {
+                    try {
+                        service.restoreTransaction(transactionId, transactionTime, sourceAccountId, targetAccountId,
+                                amount);
+                        transactionsCount++;
+                    } catch (AccountNotFoundException retryEx) {
+                        log.error("Skipped journaled transaction #{}: {}", box(transactionId),
+                                retryEx.getMessage());
+                    }
+                });
+            }
+        }
+
+        void finish() {
+            deferred.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package io.github.zyulyaev.jaxrswebapp.service.journal;
+
+import io.github.zyulyaev.jaxrswebapp.service.AccountNotFoundException;
+import io.github.zyulyaev.jaxrswebapp.service.RecoverableBankService;
+import io.github.zyulyaev.jaxrswebapp.service.TransactionColumns;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * <p>State of all accounts and transactions recorded in a prefix of the journal.</p>
+ * <p>Snapshot is built by folding sealed journal segments, so it never touches the live service and does not stop
+ * its writers. It is stored in a columnar binary file: a header followed by one contiguous column per field and a
+ * CRC32 of everything before it. Accounts are stored with their final balances and last transaction ids, so
+ * transactions covered by the snapshot are restored without being applied again.</p>
+ * <p>Only accounts are read to the heap. Transaction columns of the file are mapped and handed to
+ * {@link RecoverableBankService#restoreAppliedTransactions(TransactionColumns)} as they are, so restore creates no
+ * objects per transaction. Transactions folded after the file is read are kept in heap columns, and the next file
+ * is written by copying the mapped columns followed by the folded ones, so folding costs no heap for the history
+ * which is folded already.</p>
+ */
+final class Snapshot implements Journal.Listener {
+    private static final String FILE_PREFIX = "snapshot-";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x424e4b53;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 28;
+    private static final int NO_OWNER = -1;
+    private static final int NO_TRANSACTION = -1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // accounts, indexed by account id
+    private final BitSet accountIds = new BitSet();
+    private String[] owners = new String[INITIAL_CAPACITY];
+    private long[] creationSeconds = new long[INITIAL_CAPACITY];
+    private int[] creationNanos = new int[INITIAL_CAPACITY];
+    private long[] balances = new long[INITIAL_CAPACITY];
+    private int[] lastTransactionIds = new int[INITIAL_CAPACITY];
+    // transactions of the file the snapshot is read from, in journal order
+    private StoredColumns stored = StoredColumns.EMPTY;
+    // transactions folded after that, in journal order, amounts have scale of the snapshot
+    private final FoldedColumns folded = new FoldedColumns();
+    private int foldedCount;
+    private int[] transactionIds = new int[INITIAL_CAPACITY];
+    private long[] transactionSeconds = new long[INITIAL_CAPACITY];
+    private int[] transactionNanos = new int[INITIAL_CAPACITY];
+    private int[] sourceAccountIds = new int[INITIAL_CAPACITY];
+    private int[] targetAccountIds = new int[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    // transactions recorded before their accounts
+    private final List<Runnable> pending = new ArrayList<>();
+    /**
+     * Number of fractional digits of balances and folded amounts, stored amounts may have less
+     */
+    private int scale;
+    private int journalSegment;
+    /**
+     * Ids of all transactions, collected on the first lookup
+     */
+    private BitSet transactionIdSet;
+
+    /**
+     * Returns index of the first journal segment not covered by the snapshot.
+     *
+     * @return index of the first journal segment to replay after restoring the snapshot
+     */
+    int getJournalSegment() {
+        return journalSegment;
+    }
+
+    int getAccountsCount() {
+        return accountIds.cardinality();
+    }
+
+    int getTransactionsCount() {
+        return stored.size() + foldedCount;
+    }
+
+    /**
+     * <p>Checks whether a journaled transaction is included in the snapshot, which means that the journal replays
+     * segments folded into it.</p>
+     * <p>Transactions of an account are journaled in the order of their ids, unless the ids are assigned by
+     * different shards, so ids of the snapshot are only looked up for ids not above the last transaction of the
+     * account.</p>
+     *
+     * @param transactionId   journaled transaction id
+     * @param sourceAccountId journaled source account id, or null in case of deposit
+     * @param targetAccountId journaled target account id, or null in case of withdrawal
+     * @return true if the transaction is included in the snapshot
+     */
+    boolean includes(int transactionId, Integer sourceAccountId, Integer targetAccountId) {
+        int accountId = sourceAccountId != null ? sourceAccountId : targetAccountId;
+        if (!accountIds.get(accountId) || transactionId > lastTransactionIds[accountId]) {
+            return false;
+        }
+        if (transactionIdSet == null) {
+            transactionIdSet = new BitSet();
+            for (int i = 0; i < stored.size(); i++) {
+                transactionIdSet.set(stored.getTransactionId(i));
+            }
+            for (int i = 0; i < foldedCount; i++) {
+                transactionIdSet.set(transactionIds[i]);
+            }
+        }
+        return transactionIdSet.get(transactionId);
+    }
+
+    /**
+     * Fold sealed journal segments into the snapshot.
+     *
+     * @param directory    journal directory
+     * @param segmentSize  size of a journal segment file
+     * @param segmentLimit index of the first segment not to fold
+     * @return true if all folded transactions are resolved, false if some refer to accounts recorded in later
+     * segments
+     * @throws IOException if segment cannot be read
+     */
+    boolean fold(Path directory, int segmentSize, int segmentLimit) throws IOException {
+        for (; journalSegment < segmentLimit; journalSegment++) {
+            Journal.replaySealed(directory, segmentSize, journalSegment, this);
+        }
+        List<Runnable> retried = new ArrayList<>(pending);
+        pending.clear();
+        retried.forEach(Runnable::run);
+        return pending.isEmpty();
+    }
+
+    @Override
+    public void accountCreated(int accountId, String owner, Instant creationTime) {
+        if (accountId >= owners.length) {
+            int capacity = Math.max(accountId + 1, owners.length + (owners.length >> 1));
+            owners = Arrays.copyOf(owners, capacity);
+            creationSeconds = Arrays.copyOf(creationSeconds, capacity);
+            creationNanos = Arrays.copyOf(creationNanos, capacity);
+            balances = Arrays.copyOf(balances, capacity);
+            lastTransactionIds = Arrays.copyOf(lastTransactionIds, capacity);
+        }
+        accountIds.set(accountId);
+        owners[accountId] = owner;
+        creationSeconds[accountId] = creationTime.getEpochSecond();
+        creationNanos[accountId] = creationTime.getNano();
+        balances[accountId] = 0;
+        lastTransactionIds[accountId] = NO_TRANSACTION;
+    }
+
+    @Override
+    public void transactionCreated(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                   Integer targetAccountId, BigDecimal amount)
+    {
+        if (sourceAccountId != null && !accountIds.get(sourceAccountId)
+                || targetAccountId != null && !accountIds.get(targetAccountId))
+        {
+            pending.add(() -> transactionCreated(transactionId, transactionTime, sourceAccountId, targetAccountId,
+                    amount));
+            return;
+        }
+        if (foldedCount == transactionIds.length) {
+            int capacity = foldedCount + (foldedCount >> 1);
+            transactionIds = Arrays.copyOf(transactionIds, capacity);
+            transactionSeconds = Arrays.copyOf(transactionSeconds, capacity);
+            transactionNanos = Arrays.copyOf(transactionNanos, capacity);
+            sourceAccountIds = Arrays.copyOf(sourceAccountIds, capacity);
+            targetAccountIds = Arrays.copyOf(targetAccountIds, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+        long units = toUnits(amount);
+        int index = foldedCount++;
+        transactionIds[index] = transactionId;
+        transactionSeconds[index] = transactionTime.getEpochSecond();
+        transactionNanos[index] = transactionTime.getNano();
+        sourceAccountIds[index] = sourceAccountId == null ? TransactionColumns.NO_ACCOUNT : sourceAccountId;
+        targetAccountIds[index] = targetAccountId == null ? TransactionColumns.NO_ACCOUNT : targetAccountId;
+        amounts[index] = units;
+        if (sourceAccountId != null) {
+            balances[sourceAccountId] = Math.subtractExact(balances[sourceAccountId], units);
+            lastTransactionIds[sourceAccountId] = Math.max(lastTransactionIds[sourceAccountId], transactionId);
+        }
+        if (targetAccountId != null) {
+            balances[targetAccountId] = Math.addExact(balances[targetAccountId], units);
+            lastTransactionIds[targetAccountId] = Math.max(lastTransactionIds[targetAccountId], transactionId);
+        }
+        transactionIdSet = null;
+    }
+
+    /**
+     * Converts amount to minor units, increasing snapshot scale if amount has more fractional digits. Stored
+     * amounts are converted when the snapshot is written.
+     */
+    private long toUnits(BigDecimal amount) {
+        if (amount.scale() > scale) {
+            long multiplier = BigDecimal.ONE.movePointRight(amount.scale() - scale).longValueExact();
+            for (int i = accountIds.nextSetBit(0); i >= 0; i = accountIds.nextSetBit(i + 1)) {
+                balances[i] = Math.multiplyExact(balances[i], multiplier);
+            }
+            for (int i = 0; i < foldedCount; i++) {
+                amounts[i] = Math.multiplyExact(amounts[i], multiplier);
+            }
+            scale = amount.scale();
+        }
+        return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Restore snapshot state to the service.
+     *
+     * @param service empty service to restore
+     */
+    void restore(RecoverableBankService service) {
+        for (int i = accountIds.nextSetBit(0); i >= 0; i = accountIds.nextSetBit(i + 1)) {
+            service.restoreAccount(i, owners[i], Instant.ofEpochSecond(creationSeconds[i], creationNanos[i]),
+                    BigDecimal.valueOf(balances[i], scale));
+        }
+        try {
+            service.restoreAppliedTransactions(stored);
+            service.restoreAppliedTransactions(folded);
+        } catch (AccountNotFoundException ex) {
+            throw new IllegalStateException("Inconsistent snapshot", ex);
+        }
+    }
+
+    /**
+     * Atomically write the snapshot to specified directory. Transaction columns of the file the snapshot is read
+     * from are copied as is, unless the scale of amounts has changed.
+     *
+     * @param directory journal directory
+     * @return written snapshot file
+     * @throws IOException if snapshot cannot be written
+     */
+    Path write(Path directory) throws IOException {
+        int accountsCount = getAccountsCount();
+        long storedMultiplier = BigDecimal.ONE.movePointRight(scale - stored.getScale()).longValueExact();
+        byte[][] ownerBytes = new byte[accountsCount][];
+        int ownersLength = 0;
+        for (int i = accountIds.nextSetBit(0), j = 0; i >= 0; i = accountIds.nextSetBit(i + 1), j++) {
+            if (owners[i] != null) {
+                ownerBytes[j] = owners[i].getBytes(StandardCharsets.UTF_8);
+                ownersLength += ownerBytes[j].length;
+            }
+        }
+        Path temporary = directory.resolve(fileName(journalSegment) + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ColumnWriter writer = new ColumnWriter(channel);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putInt(journalSegment);
+            writer.putInt(scale);
+            writer.putInt(accountsCount);
+            writer.putInt(ownersLength);
+            writer.putInt(getTransactionsCount());
+            for (int i = accountIds.nextSetBit(0); i >= 0; i = accountIds.nextSetBit(i + 1)) {
+                writer.putInt(i);
+            }
+            for (int i = accountIds.nextSetBit(0); i >= 0; i = accountIds.nextSetBit(i + 1)) {
+                writer.putLong(creationSeconds[i]);
+            }
+            for (int i = accountIds.nextSetBit(0); i >= 0; i = accountIds.nextSetBit(i + 1)) {
+                writer.putInt(creationNanos[i]);
+            }
+            for (int i = accountIds.nextSetBit(0); i >= 0; i = accountIds.nextSetBit(i + 1)) {
+                writer.putLong(balances[i]);
+            }
+            for (int i = accountIds.nextSetBit(0); i >= 0; i = accountIds.nextSetBit(i + 1)) {
+                writer.putInt(lastTransactionIds[i]);
+            }
+            for (byte[] bytes : ownerBytes) {
+                writer.putInt(bytes == null ? NO_OWNER : bytes.length);
+            }
+            for (byte[] bytes : ownerBytes) {
+                if (bytes != null) {
+                    writer.putBytes(bytes);
+                }
+            }
+            writer.putBytes(stored.transactionIds);
+            writer.putInts(transactionIds, foldedCount);
+            writer.putBytes(stored.seconds);
+            writer.putLongs(transactionSeconds, foldedCount);
+            writer.putBytes(stored.nanos);
+            writer.putInts(transactionNanos, foldedCount);
+            writer.putBytes(stored.sourceAccountIds);
+            writer.putInts(sourceAccountIds, foldedCount);
+            writer.putBytes(stored.targetAccountIds);
+            writer.putInts(targetAccountIds, foldedCount);
+            if (storedMultiplier == 1) {
+                writer.putBytes(stored.amounts);
+            } else {
+                for (int i = 0; i < stored.size(); i++) {
+                    writer.putLong(Math.multiplyExact(stored.getAmount(i), storedMultiplier));
+                }
+            }
+            writer.putLongs(amounts, foldedCount);
+            writer.finish();
+            channel.force(true);
+        }
+        Path file = directory.resolve(fileName(journalSegment) + FILE_SUFFIX);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Read the newest snapshot stored in specified directory. Transactions are not read, their columns are mapped.
+     *
+     * @param directory journal directory
+     * @return the newest snapshot, or empty snapshot if there is none
+     * @throws IOException if snapshot cannot be read or is corrupted
+     */
+    static Snapshot readLatest(Path directory) throws IOException {
+        Path latest = findLatest(directory);
+        return latest == null ? new Snapshot() : read(latest);
+    }
+
+    /**
+     * Delete snapshots older than specified one.
+     *
+     * @param directory journal directory
+     * @param snapshot  snapshot file to keep
+     * @throws IOException if snapshot cannot be deleted
+     */
+    static void deleteOlder(Path directory, Path snapshot) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                if (file.getFileName().toString().compareTo(snapshot.getFileName().toString()) < 0) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static Path findLatest(Path directory) throws IOException {
+        Path latest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                // zero padded segment index makes lexicographic order numeric
+                if (latest == null || file.getFileName().toString().compareTo(latest.getFileName().toString()) > 0) {
+                    latest = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static Snapshot read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_SIZE + 4) {
+                throw new IOException("Invalid snapshot size: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32 crc = new CRC32();
+        crc.update((ByteBuffer) buffer.duplicate().limit(buffer.limit() - 4));
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)
+                || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+        {
+            throw new IOException("Corrupted snapshot: " + file);
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.journalSegment = buffer.getInt();
+        snapshot.scale = buffer.getInt();
+        int accountsCount = buffer.getInt();
+        int ownersLength = buffer.getInt();
+        int transactionsCount = buffer.getInt();
+        int[] ids = getInts(buffer, accountsCount);
+        long[] seconds = getLongs(buffer, accountsCount);
+        int[] nanos = getInts(buffer, accountsCount);
+        long[] accountBalances = getLongs(buffer, accountsCount);
+        int[] accountLastTransactionIds = getInts(buffer, accountsCount);
+        int[] ownerLengths = getInts(buffer, accountsCount);
+        byte[] ownerBytes = new byte[ownersLength];
+        buffer.get(ownerBytes);
+        int accountsLimit = accountsCount == 0 ? 0 : ids[accountsCount - 1] + 1;
+        snapshot.owners = new String[accountsLimit];
+        snapshot.creationSeconds = new long[accountsLimit];
+        snapshot.creationNanos = new int[accountsLimit];
+        snapshot.balances = new long[accountsLimit];
+        snapshot.lastTransactionIds = new int[accountsLimit];
+        for (int i = 0, ownerOffset = 0; i < accountsCount; i++) {
+            int accountId = ids[i];
+            snapshot.accountIds.set(accountId);
+            snapshot.creationSeconds[accountId] = seconds[i];
+            snapshot.creationNanos[accountId] = nanos[i];
+            snapshot.balances[accountId] = accountBalances[i];
+            snapshot.lastTransactionIds[accountId] = accountLastTransactionIds[i];
+            if (ownerLengths[i] != NO_OWNER) {
+                snapshot.owners[accountId] = new String(ownerBytes, ownerOffset, ownerLengths[i],
+                        StandardCharsets.UTF_8);
+                ownerOffset += ownerLengths[i];
+            }
+        }
+        snapshot.stored = new StoredColumns(buffer, transactionsCount, snapshot.scale);
+        return snapshot;
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        // keep room for growth, so creating more accounts does not copy columns right away
+        int[] values = new int[Math.max(count, INITIAL_CAPACITY)];
+        buffer.asIntBuffer().get(values, 0, count);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static long[] getLongs(ByteBuffer buffer, int count) {
+        long[] values = new long[Math.max(count, INITIAL_CAPACITY)];
+        buffer.asLongBuffer().get(values, 0, count);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+    /**
+     * Takes next {@code length} bytes of the buffer.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = ((ByteBuffer) buffer.duplicate().limit(buffer.position() + length)).slice();
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static String fileName(int journalSegment) {
+        return String.format("%s%08d", FILE_PREFIX, journalSegment);
+    }
+
+    /**
+     * Transaction columns of a snapshot file, read by absolute gets from slices of the mapped file
+     */
+    private static final class StoredColumns implements TransactionColumns {
+        private static final StoredColumns EMPTY = new StoredColumns(ByteBuffer.allocate(0), 0, 0);
+
+        private final int count;
+        private final int scale;
+        private final ByteBuffer transactionIds;
+        private final ByteBuffer seconds;
+        private final ByteBuffer nanos;
+        private final ByteBuffer sourceAccountIds;
+        private final ByteBuffer targetAccountIds;
+        private final ByteBuffer amounts;
+
+        /**
+         * @param buffer buffer positioned at the first column, the position is moved past the last one
+         */
+        StoredColumns(ByteBuffer buffer, int count, int scale) {
+            this.count = count;
+            this.scale = scale;
+            this.transactionIds = slice(buffer, count * Integer.BYTES);
+            this.seconds = slice(buffer, count * Long.BYTES);
+            this.nanos = slice(buffer, count * Integer.BYTES);
+            this.sourceAccountIds = slice(buffer, count * Integer.BYTES);
+            this.targetAccountIds = slice(buffer, count * Integer.BYTES);
+            this.amounts = slice(buffer, count * Long.BYTES);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public int getScale() {
+            return scale;
+        }
+
+        @Override
+        public int getTransactionId(int index) {
+            return transactionIds.getInt(index * Integer.BYTES);
+        }
+
+        @Override
+        public long getEpochSecond(int index) {
+            return seconds.getLong(index * Long.BYTES);
+        }
+
+        @Override
+        public int getNano(int index) {
+            return nanos.getInt(index * Integer.BYTES);
+        }
+
+        @Override
+        public int getSourceAccountId(int index) {
+            return sourceAccountIds.getInt(index * Integer.BYTES);
+        }
+
+        @Override
+        public int getTargetAccountId(int index) {
+            return targetAccountIds.getInt(index * Integer.BYTES);
+        }
+
+        @Override
+        public long getAmount(int index) {
+            return amounts.getLong(index * Long.BYTES);
+        }
+    }
+
+    /**
+     * Transactions folded into the snapshot after its file is read
+     */
+    private final class FoldedColumns implements TransactionColumns {
+        @Override
+        public int size() {
+            return foldedCount;
+        }
+
+        @Override
+        public int getScale() {
+            return scale;
+        }
+
+        @Override
+        public int getTransactionId(int index) {
+            return transactionIds[index];
+        }
+
+        @Override
+        public long getEpochSecond(int index) {
+            return transactionSeconds[index];
+        }
+
+        @Override
+        public int getNano(int index) {
+            return transactionNanos[index];
+        }
+
+        @Override
+        public int getSourceAccountId(int index) {
+            return sourceAccountIds[index];
+        }
+
+        @Override
+        public int getTargetAccountId(int index) {
+            return targetAccountIds[index];
+        }
+
+        @Override
+        public long getAmount(int index) {
+            return amounts[index];
+        }
+    }
+
+    /**
+     * Buffered writer of column values which computes CRC32 of everything written
+     */
+    private static final class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        ColumnWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                putInt(values[i]);
+            }
+        }
+
+        void putLongs(long[] values, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                putLong(values[i]);
+            }
+        }
+
+        /**
+         * Write remaining bytes of the buffer, e.g. a mapped column of another snapshot, without copying them.
+         */
+        void putBytes(ByteBuffer bytes) throws IOException {
+            flush();
+            crc.update(bytes.duplicate());
+            ByteBuffer source = bytes.duplicate();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Write the CRC32 trailer and everything buffered.
+         */
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            writeFully();
+        }
+
+        private void ensureRemaining(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            writeFully();
+        }
+
+        private void writeFully() throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
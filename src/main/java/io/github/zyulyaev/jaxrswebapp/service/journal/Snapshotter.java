@@ -0,0 +1,101 @@
+package io.github.zyulyaev.jaxrswebapp.service.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.logging.log4j.util.Unbox.box;
+
+/**
+ * <p>Folds sealed journal segments into a new {@link Snapshot} and deletes them, either on demand or periodically on
+ * a dedicated daemon thread.</p>
+ * <p>Only accounts of the previous snapshot and transactions of the new segments are kept in the heap: transactions
+ * of the previous snapshot are copied from its mapped file to the new one.</p>
+ */
+final class Snapshotter implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(Snapshotter.class);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Journal journal;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Create new snapshotter.
+     *
+     * @param directory   journal directory
+     * @param segmentSize size of a journal segment file
+     * @param journal     journal to fold
+     * @param interval    interval between periodic snapshots, zero disables them
+     */
+    Snapshotter(Path directory, int segmentSize, Journal journal, Duration interval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.journal = journal;
+        if (interval.isZero()) {
+            this.executor = null;
+        } else {
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.scheduleWithFixedDelay(this::snapshotQuietly, interval.toMillis(), interval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException ex) {
+            log.error("Failed to write snapshot", ex);
+        }
+    }
+
+    /**
+     * Fold all sealed journal segments into a new snapshot unless they are already folded.
+     *
+     * @throws IOException if journal or snapshot cannot be read or written
+     */
+    synchronized void snapshot() throws IOException {
+        long start = System.nanoTime();
+        int segmentLimit = journal.getSegmentIndex();
+        Snapshot snapshot = Snapshot.readLatest(directory);
+        if (snapshot.getJournalSegment() >= segmentLimit) {
+            return;
+        }
+        if (!snapshot.fold(directory, segmentSize, segmentLimit)) {
+            log.info("Snapshot postponed: some transactions are journaled before their accounts");
+            return;
+        }
+        Path file = snapshot.write(directory);
+        Snapshot.deleteOlder(directory, file);
+        journal.deleteSegmentsBefore(segmentLimit);
+        log.info("Snapshot of {} accounts and {} transactions up to journal segment {} written in {} ms",
+                box(snapshot.getAccountsCount()), box(snapshot.getTransactionsCount()), box(segmentLimit),
+                box(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * Stop periodic snapshots, waiting for the running one to complete.
+     */
+    @Override
+    public void close() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
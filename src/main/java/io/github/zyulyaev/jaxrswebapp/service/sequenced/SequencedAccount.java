@@ -0,0 +1,133 @@
+package io.github.zyulyaev.jaxrswebapp.service.sequenced;
+
+import io.github.zyulyaev.jaxrswebapp.service.Account;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * <p>Immutable published state of an account.</p>
+ * <p>Every change produces a new instance. Ids of transactions involving the account are kept in an array shared
+ * between successive instances: the writer only appends past the count visible to published instances and copies
+ * the array when it is full, so readers never see a changing prefix.</p>
+ */
+final class SequencedAccount implements Account {
+    private static final int[] NO_TRANSACTIONS = new int[0];
+    private static final int INITIAL_TRANSACTIONS_CAPACITY = 4;
+
+    private final int accountId;
+    private final String owner;
+    private final Instant creationTime;
+    private final long balance;
+    private final int scale;
+    private final int[] transactionIds;
+    private final int transactionsCount;
+
+    SequencedAccount(int accountId, String owner, Instant creationTime, long balance, int scale) {
+        this(accountId, owner, creationTime, balance, scale, NO_TRANSACTIONS, 0);
+    }
+
+    private SequencedAccount(int accountId, String owner, Instant creationTime, long balance, int scale,
+                             int[] transactionIds, int transactionsCount)
+    {
+        this.accountId = accountId;
+        this.owner = owner;
+        this.creationTime = creationTime;
+        this.balance = balance;
+        this.scale = scale;
+        this.transactionIds = transactionIds;
+        this.transactionsCount = transactionsCount;
+    }
+
+    @Override
+    public int getAccountId() {
+        return accountId;
+    }
+
+    @Override
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public Instant getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public BigDecimal getBalance() {
+        return BigDecimal.valueOf(balance, scale);
+    }
+
+    @Override
+    public long getVersion() {
+        return balance;
+    }
+
+    long getBalanceUnits() {
+        return balance;
+    }
+
+    /**
+     * Returns new state with balance changed by specified amount and transaction appended to the history. Must be
+     * called by the writer on the latest state only.
+     *
+     * @param amount        balance change in minor units
+     * @param transactionId id of the transaction which changes the balance, must be greater than all recorded ones
+     * @return new account state
+     * @throws ArithmeticException if balance overflows
+     */
+    SequencedAccount withTransaction(long amount, int transactionId) {
+        long updatedBalance = Math.addExact(balance, amount);
+        int[] ids = transactionIds;
+        if (transactionsCount == ids.length) {
+            int capacity = Math.max(INITIAL_TRANSACTIONS_CAPACITY, transactionsCount + (transactionsCount >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        ids[transactionsCount] = transactionId;
+        return new SequencedAccount(accountId, owner, creationTime, updatedBalance, scale, ids,
+                transactionsCount + 1);
+    }
+
+    /**
+     * Returns new state with transaction inserted at its sorted position. Used by restore only, which precedes any
+     * reads.
+     *
+     * @param amount        balance change in minor units
+     * @param transactionId id of restored transaction
+     * @return new account state
+     */
+    SequencedAccount withRestoredTransaction(long amount, int transactionId) {
+        SequencedAccount updated = withTransaction(amount, transactionId);
+        int[] ids = updated.transactionIds;
+        for (int position = transactionsCount; position > 0 && ids[position - 1] > transactionId; position--) {
+            ids[position] = ids[position - 1];
+            ids[position - 1] = transactionId;
+        }
+        return updated;
+    }
+
+    /**
+     * Returns ids of transactions involving the account in ascending order.
+     *
+     * @param afterId id of the transaction to start after
+     * @param limit   max number of ids to return
+     * @return transaction ids greater than {@code afterId}
+     */
+    int[] getTransactionIds(int afterId, int limit) {
+        int from = Arrays.binarySearch(transactionIds, 0, transactionsCount, afterId);
+        from = from < 0 ? -from - 1 : from + 1;
+        return Arrays.copyOfRange(transactionIds, from, from + Math.min(limit, transactionsCount - from));
+    }
+
+    @Override
+    public String toString() {
+        return "SequencedAccount{" +
+                "accountId=" + accountId +
+                ", owner='" + owner + '\'' +
+                ", creationTime=" + creationTime +
+                ", balance=" + getBalance() +
+                '}';
+    }
+}
@@ -0,0 +1,529 @@
+package io.github.zyulyaev.jaxrswebapp.service.sequenced;
+
+import io.github.zyulyaev.jaxrswebapp.concurrent.RingBuffer;
+import io.github.zyulyaev.jaxrswebapp.concurrent.SegmentedArray;
+import io.github.zyulyaev.jaxrswebapp.service.*;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Single-writer implementation of {@link BankService}.</p>
+ * <p>Callers validate their requests and put them into a bounded {@link RingBuffer}. The only writer thread takes
+ * requests in order, applies them to the accounts without any locks or CAS loops and completes the callers'
+ * futures. Every change is published as a new immutable account state, so reads never wait for the writer.</p>
+ * <p>Bank-wide totals are kept by the writer, which replaces their immutable snapshot after every change, so they
+ * include exactly the transactions committed so far.</p>
+ */
+public final class SequencedBankService implements RecoverableBankService, BankSummaryTracker, AutoCloseable {
+    /**
+     * Default max number of requests waiting for the writer
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int NO_ACCOUNT = -1;
+    private static final int BATCH_SIZE = 1024;
+    private static final long IDLE_WAIT_MILLIS = 100;
+    private static final long PRODUCER_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final int PAGE_CAPACITY_HINT = 1024;
+
+    private final Clock clock;
+    private final int scale;
+    private final AuditLog auditLog;
+    private final RingBuffer<Command<?>> commands;
+    private final SegmentedArray<SequencedAccount> accounts = new SegmentedArray<>();
+    private final SegmentedArray<SequencedTransaction> transactions = new SegmentedArray<>();
+    private final OwnerIndex ownerIndex = new OwnerIndex();
+    private final Thread writer;
+    private volatile boolean closed;
+    // owned by the writer thread, or by the restoring thread before the service is used
+    private int nextAccountId;
+    private int nextTransactionId;
+    /**
+     * Totals as of the latest change, replaced by the writer
+     */
+    private volatile Totals totals = new Totals(0, 0, 0, 0, 0, 0);
+    /**
+     * Ids below this one are either restored or lost before restore, so missing ones are never committed
+     */
+    private volatile int restoredTransactionIdLimit;
+
+    /**
+     * <p>Create new sequenced bank service and start its writer thread.</p>
+     * <p>Passed clock instance is used to assign timestamps to events like account or transaction creation.
+     * Created accounts and committed transactions are recorded to passed audit log.</p>
+     *
+     * @param clock    clock to use for assigning timestamps
+     * @param scale    max number of fractional digits of money amounts
+     * @param auditLog audit log to record events to
+     * @param capacity max number of requests waiting for the writer
+     */
+    public SequencedBankService(Clock clock, int scale, AuditLog auditLog, int capacity) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Negative scale: " + scale);
+        }
+        this.clock = clock;
+        this.scale = scale;
+        this.auditLog = auditLog;
+        this.commands = new RingBuffer<>(capacity);
+        this.writer = new Thread(this::writeLoop, "bank-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Immutable bank-wide totals in minor units
+     */
+    private static final class Totals {
+        private final long accountsCount;
+        private final long transactionsCount;
+        private final long deposits;
+        private final long withdrawals;
+        private final long money;
+        private final int transactionIdLimit;
+
+        Totals(long accountsCount, long transactionsCount, long deposits, long withdrawals, long money,
+               int transactionIdLimit)
+        {
+            this.accountsCount = accountsCount;
+            this.transactionsCount = transactionsCount;
+            this.deposits = deposits;
+            this.withdrawals = withdrawals;
+            this.money = money;
+            this.transactionIdLimit = transactionIdLimit;
+        }
+
+        Totals withAccounts(int count, long balance) {
+            return new Totals(accountsCount + count, transactionsCount, deposits, withdrawals, money + balance,
+                    transactionIdLimit);
+        }
+
+        /**
+         * @param deposit    deposited units, zero unless transaction is a deposit
+         * @param withdrawal withdrawn units, zero unless transaction is a withdrawal
+         * @param applied    whether balances already include the transaction
+         */
+        Totals withTransaction(long deposit, long withdrawal, boolean applied, int nextTransactionId) {
+            return new Totals(accountsCount, transactionsCount + 1, deposits + deposit, withdrawals + withdrawal,
+                    applied ? money : money + deposit - withdrawal, nextTransactionId);
+        }
+    }
+
+    /**
+     * Request applied by the writer thread, completes with its result
+     */
+    private abstract static class Command<T> extends CompletableFuture<T> {
+        abstract T apply() throws BankOperationException;
+
+        void run() {
+            try {
+                complete(apply());
+            } catch (Throwable ex) {
+                completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * Validated deposit, withdrawal or transfer
+     */
+    private final class Mutation extends Command<Transaction> {
+        private final int sourceAccountId;
+        private final int targetAccountId;
+        private final long amount;
+
+        Mutation(int sourceAccountId, int targetAccountId, long amount) {
+            this.sourceAccountId = sourceAccountId;
+            this.targetAccountId = targetAccountId;
+            this.amount = amount;
+        }
+
+        @Override
+        Transaction apply() throws BankOperationException {
+            return commit(sourceAccountId, targetAccountId, amount);
+        }
+    }
+
+    private void writeLoop() {
+        while (!closed) {
+            if (commands.drain(Command::run, BATCH_SIZE) == 0) {
+                commands.awaitNotEmpty(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        while (commands.drain(Command::run, BATCH_SIZE) != 0) {
+            // complete remaining requests
+        }
+    }
+
+    /**
+     * Passes the command to the writer and waits for its result.
+     */
+    private <T> T execute(Command<T> command) throws BankOperationException {
+        if (closed) {
+            throw new IllegalStateException("Service is closed");
+        }
+        boolean interrupted = false;
+        while (!commands.offer(command)) {
+            // the buffer is full, wait for the writer to catch up
+            LockSupport.parkNanos(this, PRODUCER_BACKOFF_NANOS);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            return command.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof BankOperationException) {
+                throw (BankOperationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+    private <T> T executeUnchecked(Command<T> command) {
+        try {
+            return execute(command);
+        } catch (BankOperationException ex) {
+            throw new IllegalStateException("Unexpected failure", ex);
+        }
+    }
+
+    @Override
+    public Account createAccount(String owner) {
+        return executeUnchecked(new Command<Account>() {
+            @Override
+            Account apply() {
+                int accountId = nextAccountId;
+                if (accountId < 0) {
+                    throw new IllegalStateException("Account ids exhausted");
+                }
+                nextAccountId++;
+                String indexedOwner = ownerIndex.deduplicate(owner);
+                SequencedAccount account = new SequencedAccount(accountId, indexedOwner, clock.instant(), 0, scale);
+                accounts.set(accountId, account);
+                ownerIndex.add(indexedOwner, accountId);
+                totals = totals.withAccounts(1, 0);
+                auditLog.accountCreated(account);
+                return account;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The whole batch is a single command of the writer.</p>
+     */
+    @Override
+    public List<Account> createAccounts(List<String> owners) {
+        return executeUnchecked(new Command<List<Account>>() {
+            @Override
+            List<Account> apply() {
+                int count = owners.size();
+                int firstAccountId = nextAccountId;
+                if (firstAccountId < 0 || firstAccountId > Integer.MAX_VALUE - count) {
+                    throw new IllegalStateException("Account ids exhausted");
+                }
+                nextAccountId += count;
+                Instant creationTime = clock.instant();
+                List<Account> created = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int accountId = firstAccountId + i;
+                    String indexedOwner = ownerIndex.deduplicate(owners.get(i));
+                    SequencedAccount account = new SequencedAccount(accountId, indexedOwner, creationTime, 0, scale);
+                    accounts.set(accountId, account);
+                    ownerIndex.add(indexedOwner, accountId);
+                    created.add(account);
+                }
+                totals = totals.withAccounts(count, 0);
+                auditLog.accountsCreated(created);
+                return created;
+            }
+        });
+    }
+
+    @Override
+    public Account lookupAccount(int accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public List<Account> lookupAccountsByOwner(String owner, boolean prefix, String afterOwner, int afterId,
+                                               int limit)
+    {
+        int[] accountIds = ownerIndex.search(owner, prefix, afterOwner, afterId, limit);
+        List<Account> page = new ArrayList<>(accountIds.length);
+        for (int accountId : accountIds) {
+            page.add(accounts.get(accountId));
+        }
+        return page;
+    }
+
+    private SequencedAccount getAccount(int accountId) throws AccountNotFoundException {
+        SequencedAccount account = accounts.get(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException(accountId);
+        }
+        return account;
+    }
+
+    /**
+     * Converts positive amount to minor units.
+     *
+     * @throws IllegalArgumentException if amount is not positive, or its scale does not fit
+     */
+    private long toUnits(BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("Negative amount: " + amount);
+        }
+        return toUnscaled(amount);
+    }
+
+    /**
+     * Converts amount of any sign to minor units.
+     *
+     * @throws IllegalArgumentException if amount scale does not fit
+     */
+    private long toUnscaled(BigDecimal amount) {
+        try {
+            return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Unsupported amount: " + amount);
+        }
+    }
+
+    @Override
+    public Transaction deposit(int targetAccountId, BigDecimal amount) throws BankOperationException {
+        return execute(new Mutation(NO_ACCOUNT, targetAccountId, toUnits(amount)));
+    }
+
+    @Override
+    public Transaction withdraw(int sourceAccountId, BigDecimal amount) throws BankOperationException {
+        return execute(new Mutation(sourceAccountId, NO_ACCOUNT, toUnits(amount)));
+    }
+
+    @Override
+    public Transaction transfer(int sourceAccountId, int targetAccountId, BigDecimal amount)
+            throws BankOperationException
+    {
+        if (sourceAccountId == targetAccountId) {
+            throw new IllegalArgumentException("Self transfer: " + sourceAccountId);
+        }
+        return execute(new Mutation(sourceAccountId, targetAccountId, toUnits(amount)));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Requests are validated by the caller and applied by the writer in one go, without interleaving with
+     * other requests.</p>
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<TransactionRequest> requests) {
+        List<Object> prepared = new ArrayList<>(requests.size());
+        for (TransactionRequest request : requests) {
+            try {
+                prepared.add(prepare(request));
+            } catch (IllegalArgumentException ex) {
+                prepared.add(BatchResult.invalid(ex));
+            }
+        }
+        return executeUnchecked(new Command<List<BatchResult>>() {
+            @Override
+            List<BatchResult> apply() {
+                List<BatchResult> results = new ArrayList<>(prepared.size());
+                for (Object item : prepared) {
+                    if (item instanceof Mutation) {
+                        try {
+                            results.add(BatchResult.created(((Mutation) item).apply()));
+                        } catch (BankOperationException ex) {
+                            results.add(BatchResult.failed(ex));
+                        }
+                    } else {
+                        results.add((BatchResult) item);
+                    }
+                }
+                return results;
+            }
+        });
+    }
+
+    private Mutation prepare(TransactionRequest request) {
+        Integer sourceAccountId = request.getSourceAccountId();
+        Integer targetAccountId = request.getTargetAccountId();
+        if (request.getAmount() == null) {
+            throw new IllegalArgumentException("No amount: " + request);
+        }
+        if (sourceAccountId == null && targetAccountId == null) {
+            throw new IllegalArgumentException("No accounts: " + request);
+        }
+        if (Objects.equals(sourceAccountId, targetAccountId)) {
+            throw new IllegalArgumentException("Self transfer: " + sourceAccountId);
+        }
+        return new Mutation(sourceAccountId == null ? NO_ACCOUNT : sourceAccountId,
+                targetAccountId == null ? NO_ACCOUNT : targetAccountId, toUnits(request.getAmount()));
+    }
+
+    /**
+     * Applies validated mutation and publishes its results. Called by the writer thread only.
+     */
+    private Transaction commit(int sourceAccountId, int targetAccountId, long amount) throws BankOperationException {
+        SequencedAccount source = sourceAccountId == NO_ACCOUNT ? null : getAccount(sourceAccountId);
+        SequencedAccount target = targetAccountId == NO_ACCOUNT ? null : getAccount(targetAccountId);
+        if (source != null && source.getBalanceUnits() < amount) {
+            throw new OverdraftException(sourceAccountId);
+        }
+        if (target != null && target.getBalanceUnits() > Long.MAX_VALUE - amount) {
+            throw new BalanceOverflowException(targetAccountId);
+        }
+        int transactionId = nextTransactionId;
+        if (transactionId < 0) {
+            throw new IllegalStateException("Transaction ids exhausted");
+        }
+        // both states are computed before anything is published
+        SequencedAccount updatedSource = source == null ? null : source.withTransaction(-amount, transactionId);
+        SequencedAccount updatedTarget = target == null ? null : target.withTransaction(amount, transactionId);
+        nextTransactionId++;
+        SequencedTransaction transaction = new SequencedTransaction(transactionId, clock.instant(),
+                source == null ? null : sourceAccountId, target == null ? null : targetAccountId, amount, scale);
+        transactions.set(transactionId, transaction);
+        if (updatedSource != null) {
+            accounts.set(sourceAccountId, updatedSource);
+        }
+        if (updatedTarget != null) {
+            accounts.set(targetAccountId, updatedTarget);
+        }
+        totals = totals.withTransaction(source == null ? amount : 0, target == null ? amount : 0, false,
+                nextTransactionId);
+        auditLog.transactionCreated(transaction);
+        return transaction;
+    }
+
+    @Override
+    public Transaction lookupTransaction(int transactionId) {
+        return transactions.get(transactionId);
+    }
+
+    @Override
+    public List<Transaction> lookupTransactions(int afterId, int limit) {
+        List<Transaction> page = new ArrayList<>(Math.min(limit, PAGE_CAPACITY_HINT));
+        for (int transactionId = Math.max(afterId, -1) + 1; page.size() < limit && transactionId >= 0;
+             transactionId++)
+        {
+            SequencedTransaction transaction = transactions.get(transactionId);
+            if (transaction == null) {
+                if (transactionId < restoredTransactionIdLimit) {
+                    continue;
+                }
+                break;
+            }
+            page.add(transaction);
+        }
+        return page;
+    }
+
+    @Override
+    public List<Transaction> lookupAccountTransactions(int accountId, int afterId, int limit)
+            throws AccountNotFoundException
+    {
+        int[] transactionIds = getAccount(accountId).getTransactionIds(afterId, limit);
+        List<Transaction> page = new ArrayList<>(transactionIds.length);
+        for (int transactionId : transactionIds) {
+            page.add(transactions.get(transactionId));
+        }
+        return page;
+    }
+
+    @Override
+    public void restoreAccount(int accountId, String owner, Instant creationTime, BigDecimal balance) {
+        String indexedOwner = ownerIndex.deduplicate(owner);
+        long units = toUnscaled(balance);
+        accounts.set(accountId, new SequencedAccount(accountId, indexedOwner, creationTime, units, scale));
+        ownerIndex.add(indexedOwner, accountId);
+        nextAccountId = Math.max(nextAccountId, accountId + 1);
+        totals = totals.withAccounts(1, units);
+    }
+
+    @Override
+    public void restoreTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                   Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException
+    {
+        restore(transactionId, transactionTime, sourceAccountId, targetAccountId, toUnits(amount), true);
+    }
+
+    @Override
+    public void restoreAppliedTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                                          Integer targetAccountId, BigDecimal amount) throws AccountNotFoundException
+    {
+        restore(transactionId, transactionTime, sourceAccountId, targetAccountId, toUnits(amount), false);
+    }
+
+    private void restore(int transactionId, Instant transactionTime, Integer sourceAccountId, Integer targetAccountId,
+                         long amount, boolean apply) throws AccountNotFoundException
+    {
+        SequencedAccount source = sourceAccountId == null ? null : getAccount(sourceAccountId);
+        SequencedAccount target = targetAccountId == null ? null : getAccount(targetAccountId);
+        if (source != null) {
+            // recorded withdrawals are applied without overdraft check
+            accounts.set(sourceAccountId, source.withRestoredTransaction(apply ? -amount : 0, transactionId));
+        }
+        if (target != null) {
+            accounts.set(targetAccountId, target.withRestoredTransaction(apply ? amount : 0, transactionId));
+        }
+        transactions.set(transactionId, new SequencedTransaction(transactionId, transactionTime, sourceAccountId,
+                targetAccountId, amount, scale));
+        nextTransactionId = Math.max(nextTransactionId, transactionId + 1);
+        restoredTransactionIdLimit = Math.max(restoredTransactionIdLimit, transactionId + 1);
+        totals = totals.withTransaction(source == null ? amount : 0, target == null ? amount : 0, !apply,
+                nextTransactionId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Totals are replaced by the writer as a whole, so they are consistent anyway.</p>
+     */
+    @Override
+    public BankSummary summarize() {
+        return toSummary(totals, null);
+    }
+
+    @Override
+    public BankSummary summarizeConsistently() {
+        Totals current = totals;
+        return toSummary(current, current.transactionIdLimit);
+    }
+
+    private BankSummary toSummary(Totals snapshot, Integer transactionIdLimit) {
+        return new BankSummary(snapshot.accountsCount, snapshot.transactionsCount,
+                BigDecimal.valueOf(snapshot.deposits, scale), BigDecimal.valueOf(snapshot.withdrawals, scale),
+                BigDecimal.valueOf(snapshot.money, scale), transactionIdLimit);
+    }
+
+    /**
+     * Complete pending requests and stop the writer thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
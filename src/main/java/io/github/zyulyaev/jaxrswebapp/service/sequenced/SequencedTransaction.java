@@ -0,0 +1,69 @@
+package io.github.zyulyaev.jaxrswebapp.service.sequenced;
+
+import io.github.zyulyaev.jaxrswebapp.service.Transaction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Immutable transaction committed by the sequenced engine
+ */
+final class SequencedTransaction implements Transaction {
+    private final int transactionId;
+    private final Instant transactionTime;
+    private final Integer sourceAccountId;
+    private final Integer targetAccountId;
+    private final long amount;
+    private final int scale;
+
+    SequencedTransaction(int transactionId, Instant transactionTime, Integer sourceAccountId,
+                         Integer targetAccountId, long amount, int scale)
+    {
+        this.transactionId = transactionId;
+        this.transactionTime = Objects.requireNonNull(transactionTime, "transactionTime");
+        if (sourceAccountId == null && targetAccountId == null) {
+            throw new IllegalArgumentException("At least one of source and target must not be null");
+        }
+        this.sourceAccountId = sourceAccountId;
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+        this.scale = scale;
+    }
+
+    @Override
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    @Override
+    public Instant getTransactionTime() {
+        return transactionTime;
+    }
+
+    @Override
+    public Integer getSourceAccountId() {
+        return sourceAccountId;
+    }
+
+    @Override
+    public Integer getTargetAccountId() {
+        return targetAccountId;
+    }
+
+    @Override
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(amount, scale);
+    }
+
+    @Override
+    public String toString() {
+        return "SequencedTransaction{" +
+                "transactionId=" + transactionId +
+                ", transactionTime=" + transactionTime +
+                ", sourceAccountId=" + sourceAccountId +
+                ", targetAccountId=" + targetAccountId +
+                ", amount=" + getAmount() +
+                '}';
+    }
+}
@@ -1,33 +1,56 @@
 package io.github.zyulyaev.jaxrswebapp.web;
 
 import io.github.zyulyaev.jaxrswebapp.service.Account;
+import io.github.zyulyaev.jaxrswebapp.service.AccountNotFoundException;
 import io.github.zyulyaev.jaxrswebapp.service.BankService;
+import io.github.zyulyaev.jaxrswebapp.service.Transaction;
 import io.github.zyulyaev.jaxrswebapp.web.model.AccountModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.AccountsBatchModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.AccountsPageModel;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.ws.rs.*;
-import javax.ws.rs.core.Context;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
-import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.*;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
 
 import static org.apache.logging.log4j.util.Unbox.box;
 
 /**
- * RESTful accounts resource
+ * <p>RESTful accounts resource. Requests are suspended and handled by {@link RequestExecutor}.</p>
+ * <p>Account representations are tagged with {@linkplain Account#getVersion() account version}, so conditional
+ * requests are answered with {@code 304 Not Modified} without building an account snapshot.</p>
+ * <p>Accounts can be created in batches of up to {@value #MAX_BATCH_SIZE} owners, with ids reserved at once and a
+ * compact response of created ids only.</p>
+ * <p>Accounts can be searched by owner or owner prefix. Pages of found accounts are linked by opaque cursors which
+ * encode owner and id of the last account of a page.</p>
+ * <p>Besides JSON, accounts are produced and consumed in binary encodings.</p>
  */
 @Path("/accounts")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, ExtendedMediaType.APPLICATION_SMILE, ExtendedMediaType.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ExtendedMediaType.APPLICATION_SMILE, ExtendedMediaType.APPLICATION_CBOR})
 public class AccountsResource {
     private static final Logger log = LogManager.getLogger(AccountsResource.class);
+    /**
+     * Accounts change, so caches must revalidate them on every use
+     */
+    private static final String CACHE_CONTROL = "no-cache";
+    private static final char CURSOR_SEPARATOR = ':';
+    private static final int MAX_BATCH_SIZE = 1_000_000;
 
     private final BankService bankService;
+    private final RequestExecutor requestExecutor;
 
-    public AccountsResource(BankService bankService) {
+    public AccountsResource(BankService bankService, RequestExecutor requestExecutor) {
         this.bankService = bankService;
+        this.requestExecutor = requestExecutor;
     }
 
     private static AccountModel convertToModel(Account account) {
@@ -36,18 +59,113 @@ public class AccountsResource {
     }
 
     @POST
-    public Response create(AccountModel request, @Context UriInfo uriInfo) {
+    public void create(AccountModel request, @Context UriInfo uriInfo, @Suspended AsyncResponse response) {
+        UriBuilder locationBuilder = uriInfo.getRequestUriBuilder();
+        requestExecutor.submit(response, () -> create(request, locationBuilder));
+    }
+
+    private Response create(AccountModel request, UriBuilder locationBuilder) {
         Account account = bankService.createAccount(request.getOwner());
-        URI location = uriInfo.getRequestUriBuilder().path("{accountId}")
+        URI location = locationBuilder.path("{accountId}")
                 .build(account.getAccountId());
         return Response.created(location)
                 .entity(convertToModel(account))
                 .build();
     }
 
+    @POST
+    @Path("/batch")
+    public void createBatch(List<String> owners, @Suspended AsyncResponse response) {
+        requestExecutor.submit(response, () -> createBatch(owners));
+    }
+
+    private Response createBatch(List<String> owners) {
+        if (owners == null || owners.size() > MAX_BATCH_SIZE) {
+            log.debug("Invalid batch size: {}", owners == null ? null : owners.size());
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        List<Account> accounts = bankService.createAccounts(owners);
+        int[] accountIds = new int[accounts.size()];
+        for (int i = 0; i < accountIds.length; i++) {
+            accountIds[i] = accounts.get(i).getAccountId();
+        }
+        Instant creationTime = accounts.isEmpty() ? null : accounts.get(0).getCreationTime();
+        return Response.ok()
+                .entity(new AccountsBatchModel(accountIds, creationTime))
+                .build();
+    }
+
+    @GET
+    public void search(@QueryParam("owner") String owner,
+                       @QueryParam("prefix") @DefaultValue("false") boolean prefix,
+                       @QueryParam("cursor") String cursor,
+                       @QueryParam("limit") @DefaultValue("100") int limit,
+                       @Suspended AsyncResponse response)
+    {
+        requestExecutor.submit(response, () -> search(owner, prefix, cursor, limit));
+    }
+
+    private Response search(String owner, boolean prefix, String cursor, int limit) {
+        if (owner == null) {
+            log.debug("No owner to search for");
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        if (limit <= 0 || limit > TransactionsResource.MAX_PAGE_SIZE) {
+            log.debug("Invalid page limit: {}", box(limit));
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        String afterOwner = null;
+        int afterId = -1;
+        if (cursor != null) {
+            String decoded;
+            try {
+                decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(CURSOR_SEPARATOR);
+                afterId = Integer.parseInt(decoded.substring(0, Math.max(separator, 0)));
+                afterOwner = decoded.substring(separator + 1);
+            } catch (IllegalArgumentException ex) {
+                log.debug("Invalid cursor: {}", cursor);
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .build();
+            }
+        }
+        List<Account> accounts = bankService.lookupAccountsByOwner(owner, prefix, afterOwner, afterId, limit);
+        List<AccountModel> models = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            models.add(convertToModel(account));
+        }
+        String nextCursor = accounts.isEmpty() ? cursor : cursor(accounts.get(accounts.size() - 1));
+        return Response.ok()
+                .entity(new AccountsPageModel(models, nextCursor))
+                .build();
+    }
+
+    private static String cursor(Account account) {
+        String decoded = Integer.toString(account.getAccountId()) + CURSOR_SEPARATOR + account.getOwner();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+
     @GET
     @Path("/{accountId}")
-    public Response lookup(@PathParam("accountId") int accountId) {
+    public void lookup(@PathParam("accountId") int accountId,
+                       @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                       @Context HttpHeaders headers, @Suspended AsyncResponse response)
+    {
+        MediaType encoding = ExtendedMediaType.selectEncoding(headers.getAcceptableMediaTypes());
+        requestExecutor.submit(accountId, response, () -> lookup(accountId, ifNoneMatch, encoding));
+    }
+
+    private Response lookup(int accountId, String ifNoneMatch, MediaType encoding) {
+        long version = bankService.lookupAccountVersion(accountId);
+        if (version != BankService.NO_ACCOUNT_VERSION && ifNoneMatch != null) {
+            EntityTag entityTag = entityTag(version, encoding);
+            if (EntityTags.matches(ifNoneMatch, entityTag)) {
+                return EntityTags.notModified(entityTag, CACHE_CONTROL);
+            }
+        }
         Account account = bankService.lookupAccount(accountId);
         if (account == null) {
             log.debug("Account not found: {}", box(accountId));
@@ -56,6 +174,43 @@ public class AccountsResource {
         }
         return Response.ok()
                 .entity(convertToModel(account))
+                .type(encoding)
+                .tag(entityTag(account.getVersion(), encoding))
+                .header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .build();
+    }
+
+    private static EntityTag entityTag(long version, MediaType encoding) {
+        return EntityTags.of(Long.toString(version), encoding);
+    }
+
+    @GET
+    @Path("/{accountId}/transactions")
+    public void lookupTransactions(@PathParam("accountId") int accountId,
+                                   @QueryParam("afterId") @DefaultValue("-1") int afterId,
+                                   @QueryParam("limit") @DefaultValue("100") int limit,
+                                   @Suspended AsyncResponse response)
+    {
+        requestExecutor.submit(accountId, response, () -> lookupTransactions(accountId, afterId, limit));
+    }
+
+    private Response lookupTransactions(int accountId, int afterId, int limit) {
+        if (limit <= 0 || limit > TransactionsResource.MAX_PAGE_SIZE) {
+            log.debug("Invalid page limit: {}", box(limit));
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        List<Transaction> transactions;
+        try {
+            transactions = bankService.lookupAccountTransactions(accountId, afterId, limit);
+        } catch (AccountNotFoundException ex) {
+            log.debug("Account not found: {}", box(accountId));
+            return Response.status(Response.Status.NOT_FOUND)
+                    .build();
+        }
+        return Response.ok()
+                .entity(TransactionsResource.convertToModel(transactions, afterId))
                 .build();
     }
 }
@@ -0,0 +1,56 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.service.HotAccount;
+import io.github.zyulyaev.jaxrswebapp.service.HotAccountTracker;
+import io.github.zyulyaev.jaxrswebapp.web.model.HotAccountModel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.logging.log4j.util.Unbox.box;
+
+/**
+ * Administrative resource exposing the most used and contended accounts. Estimates are read from fixed-size
+ * sketches, so requests are handled right on the container thread.
+ */
+@Path("/admin")
+@Produces(MediaType.APPLICATION_JSON)
+public class AdminResource {
+    private static final Logger log = LogManager.getLogger(AdminResource.class);
+    private static final int MAX_HOT_ACCOUNTS = 100;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final HotAccountTracker hotAccountTracker;
+
+    public AdminResource(HotAccountTracker hotAccountTracker) {
+        this.hotAccountTracker = hotAccountTracker;
+    }
+
+    private static HotAccountModel convertToModel(HotAccount hotAccount) {
+        return new HotAccountModel(hotAccount.getAccountId(), hotAccount.getOperations(),
+                hotAccount.getBalanceRetries(), hotAccount.getMonitorWaitNanos() / NANOS_PER_SECOND);
+    }
+
+    @GET
+    @Path("/hot-accounts")
+    public Response hotAccounts(@QueryParam("limit") @DefaultValue("10") int limit) {
+        if (limit <= 0 || limit > MAX_HOT_ACCOUNTS) {
+            log.debug("Invalid hot accounts limit: {}", box(limit));
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        List<HotAccount> hotAccounts = hotAccountTracker.lookupHotAccounts(limit);
+        List<HotAccountModel> models = new ArrayList<>(hotAccounts.size());
+        for (HotAccount hotAccount : hotAccounts) {
+            models.add(convertToModel(hotAccount));
+        }
+        return Response.ok()
+                .entity(models)
+                .build();
+    }
+}
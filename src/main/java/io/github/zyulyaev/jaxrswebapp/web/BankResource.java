@@ -0,0 +1,35 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankSummary;
+import io.github.zyulyaev.jaxrswebapp.service.BankSummaryTracker;
+import io.github.zyulyaev.jaxrswebapp.web.model.BankSummaryModel;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Bank-wide totals. Totals are maintained incrementally and read in time independent of the number of accounts and
+ * transactions, so requests are handled right on the container thread.
+ */
+@Path("/bank")
+@Produces(MediaType.APPLICATION_JSON)
+public class BankResource {
+    private final BankSummaryTracker bankSummaryTracker;
+
+    public BankResource(BankSummaryTracker bankSummaryTracker) {
+        this.bankSummaryTracker = bankSummaryTracker;
+    }
+
+    private static BankSummaryModel convertToModel(BankSummary summary) {
+        return new BankSummaryModel(summary.getAccountsCount(), summary.getTransactionsCount(),
+                summary.getTotalDeposits(), summary.getTotalWithdrawals(), summary.getTotalMoney(),
+                summary.getTransactionIdLimit());
+    }
+
+    @GET
+    @Path("/summary")
+    public BankSummaryModel summary(@QueryParam("consistent") @DefaultValue("false") boolean consistent) {
+        return convertToModel(consistent ? bankSummaryTracker.summarizeConsistently()
+                : bankSummaryTracker.summarize());
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>Evaluation of {@code If-None-Match} preconditions.</p>
+ * <p>Handlers may run on threads other than the container one, where injected {@link javax.ws.rs.core.Request}
+ * is not available, so resources capture the header value and evaluate it here.</p>
+ * <p>Tagged resources have a representation per encoding, each with its own tag, so responses vary by
+ * {@code Accept} header.</p>
+ */
+final class EntityTags {
+    private EntityTags() {
+    }
+
+    /**
+     * Builds tag of the representation in the encoding. JSON representations are tagged with the value itself.
+     *
+     * @param value    tag of the resource state
+     * @param encoding media type of the representation
+     * @return entity tag
+     */
+    static EntityTag of(String value, MediaType encoding) {
+        if (MediaType.APPLICATION_JSON_TYPE.isCompatible(encoding)) {
+            return new EntityTag(value);
+        }
+        return new EntityTag(value + "+" + encoding.getSubtype());
+    }
+
+    /**
+     * Checks whether {@code If-None-Match} header value matches the entity tag. Tags are compared weakly as required
+     * for this header.
+     *
+     * @param ifNoneMatch header value, may be null
+     * @param entityTag   tag of the current representation
+     * @return true if the header lists the tag or is {@code *}
+     */
+    static boolean matches(String ifNoneMatch, EntityTag entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String value = entityTag.getValue();
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.length() == value.length() + 2 && candidate.startsWith("\"") && candidate.endsWith("\"")
+                    && candidate.regionMatches(1, value, 0, value.length()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds {@code 304 Not Modified} response for the tag.
+     */
+    static Response notModified(EntityTag entityTag, String cacheControl) {
+        return Response.notModified(entityTag)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.web.serialization.BinaryJacksonProvider;
+
+import javax.ws.rs.core.MediaType;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * List of media types not included into JAX-RS.
+ */
+final class ExtendedMediaType {
+    /**
+     * Newline delimited JSON, one JSON value per line
+     */
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+    /**
+     * Prometheus text exposition format
+     */
+    static final String TEXT_PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+    /**
+     * Binary JSON of Jackson, lower server quality keeps JSON the default
+     */
+    static final String APPLICATION_SMILE = BinaryJacksonProvider.APPLICATION_SMILE + ";qs=0.9";
+    /**
+     * CBOR, lower server quality keeps JSON the default
+     */
+    static final String APPLICATION_CBOR = BinaryJacksonProvider.APPLICATION_CBOR + ";qs=0.9";
+
+    /**
+     * Encodings of models in order of server preference
+     */
+    private static final List<MediaType> ENCODINGS = Arrays.asList(MediaType.APPLICATION_JSON_TYPE,
+            BinaryJacksonProvider.APPLICATION_SMILE_TYPE, BinaryJacksonProvider.APPLICATION_CBOR_TYPE);
+
+    private ExtendedMediaType() {
+    }
+
+    /**
+     * Selects encoding of the response for handlers which depend on it. Handlers may run on threads other than the
+     * container one, so resources select it before submitting them.
+     *
+     * @param acceptable acceptable media types sorted by client preference
+     * @return most preferred encoding, JSON if none is acceptable
+     */
+    static MediaType selectEncoding(List<MediaType> acceptable) {
+        for (MediaType mediaType : acceptable) {
+            for (MediaType encoding : ENCODINGS) {
+                if (mediaType.isCompatible(encoding)) {
+                    return encoding;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON_TYPE;
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Cache of idempotency keys of transaction creation requests and ids of transactions created by them.</p>
+ * <p>Cache is bounded both by size and by time to live of entries. Entries expire in the order they are added, so
+ * they are kept in a queue and evicted from its head whenever a new one is added.</p>
+ */
+public final class IdempotencyCache {
+    /**
+     * Default max number of cached keys
+     */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+    /**
+     * Default time to live of cached keys
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Map.Entry<String, Entry>> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Request which claimed an idempotency key and its outcome
+     */
+    static final class Entry {
+        private final Object fingerprint;
+        private final CompletableFuture<Integer> transactionId = new CompletableFuture<>();
+        private long expirationTime;
+
+        /**
+         * @param fingerprint value which is equal for equal requests
+         */
+        Entry(Object fingerprint) {
+            this.fingerprint = Objects.requireNonNull(fingerprint, "fingerprint");
+        }
+
+        /**
+         * @return true if this entry was created for a request equal to the one of passed entry
+         */
+        boolean matches(Entry other) {
+            return fingerprint.equals(other.fingerprint);
+        }
+
+        /**
+         * Record id of the created transaction and wake up waiting duplicates.
+         */
+        void complete(int transactionId) {
+            this.transactionId.complete(transactionId);
+        }
+
+        /**
+         * Wake up waiting duplicates, so they retry the request themselves.
+         */
+        void fail() {
+            this.transactionId.complete(null);
+        }
+
+        /**
+         * Wait for the request to complete.
+         *
+         * @return id of the created transaction or null if the request failed
+         */
+        Integer await() {
+            return transactionId.join();
+        }
+    }
+
+    /**
+     * Create new idempotency cache.
+     *
+     * @param maxSize max number of cached keys
+     * @param ttl     time to live of cached keys
+     * @param clock   clock to check expiration with
+     */
+    public IdempotencyCache(int maxSize, Duration ttl, Clock clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid max size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Claim the key for the entry unless it is claimed by another entry which has not expired yet.
+     *
+     * @param key   idempotency key
+     * @param entry entry of the request
+     * @return entry which holds the key or null if it is claimed for passed entry
+     */
+    Entry putIfAbsent(String key, Entry entry) {
+        long now = clock.millis();
+        entry.expirationTime = now + ttlMillis;
+        while (true) {
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                size.incrementAndGet();
+                break;
+            }
+            if (existing.expirationTime > now) {
+                return existing;
+            }
+            if (entries.replace(key, existing, entry)) {
+                break;
+            }
+        }
+        evictionQueue.add(new AbstractMap.SimpleImmutableEntry<>(key, entry));
+        evict(now);
+        return null;
+    }
+
+    /**
+     * Release the key if it is still claimed by the entry, e.g. when its request failed.
+     */
+    void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Remove expired entries and the oldest ones above max size. Entries which were removed or replaced already are
+     * just dropped from the queue.
+     */
+    private void evict(long now) {
+        while (true) {
+            Map.Entry<String, Entry> head = evictionQueue.peek();
+            if (head == null || size.get() <= maxSize && head.getValue().expirationTime > now) {
+                return;
+            }
+            if (evictionQueue.remove(head)) {
+                remove(head.getKey(), head.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.metrics.LatencyHistogram;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.container.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Counts requests and records their latencies per endpoint, an endpoint being a resource method.</p>
+ * <p>Endpoint is resolved on the container thread when request is matched, and stored into request properties
+ * together with request start time, so responses resumed on other threads are recorded to the right endpoint.</p>
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, MetricsSource {
+    private static final String ENDPOINT_PROPERTY = MetricsFilter.class.getName() + ".endpoint";
+    private static final String START_PROPERTY = MetricsFilter.class.getName() + ".start";
+    private static final int STATUS_CLASSES = 5;
+
+    private final Map<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    /**
+     * Request counters and latencies of a resource method
+     */
+    private static final class Endpoint {
+        private final String httpMethod;
+        private final String path;
+        private final LongAdder[] statusCounts = new LongAdder[STATUS_CLASSES];
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        Endpoint(String httpMethod, String path) {
+            this.httpMethod = httpMethod;
+            this.path = path;
+            for (int i = 0; i < STATUS_CLASSES; i++) {
+                statusCounts[i] = new LongAdder();
+            }
+        }
+
+        void record(int status, long nanos) {
+            statusCounts[Math.min(Math.max(status / 100 - 1, 0), STATUS_CLASSES - 1)].increment();
+            latencies.record(nanos);
+        }
+    }
+
+    private static String pathOf(Class<?> resourceClass, Method resourceMethod) {
+        Path classPath = resourceClass.getAnnotation(Path.class);
+        Path methodPath = resourceMethod.getAnnotation(Path.class);
+        String path = classPath == null ? "" : classPath.value();
+        return methodPath == null ? path : path + methodPath.value();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Method resourceMethod = resourceInfo.getResourceMethod();
+        if (resourceMethod == null) {
+            return;
+        }
+        Endpoint endpoint = endpoints.get(resourceMethod);
+        if (endpoint == null) {
+            Class<?> resourceClass = resourceInfo.getResourceClass();
+            endpoint = endpoints.computeIfAbsent(resourceMethod, method -> new Endpoint(requestContext.getMethod(),
+                    pathOf(resourceClass, method)));
+        }
+        requestContext.setProperty(ENDPOINT_PROPERTY, endpoint);
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Endpoint endpoint = (Endpoint) requestContext.getProperty(ENDPOINT_PROPERTY);
+        if (endpoint == null) {
+            return;
+        }
+        long start = (Long) requestContext.getProperty(START_PROPERTY);
+        endpoint.record(responseContext.getStatus(), System.nanoTime() - start);
+    }
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.family("bank_http_requests_total", "counter", "Handled requests by endpoint and status class");
+        for (Endpoint endpoint : endpoints.values()) {
+            for (int i = 0; i < STATUS_CLASSES; i++) {
+                long count = endpoint.statusCounts[i].sum();
+                if (count != 0) {
+                    writer.sample("bank_http_requests_total", count, "method", endpoint.httpMethod,
+                            "path", endpoint.path, "status", (i + 1) + "xx");
+                }
+            }
+        }
+        writer.family("bank_http_request_duration_seconds", "histogram",
+                "Time from request matching to response by endpoint");
+        for (Endpoint endpoint : endpoints.values()) {
+            writer.histogram("bank_http_request_duration_seconds", endpoint.latencies, "method", endpoint.httpMethod,
+                    "path", endpoint.path);
+        }
+    }
+}
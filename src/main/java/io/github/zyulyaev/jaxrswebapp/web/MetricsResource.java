@@ -0,0 +1,35 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import java.util.List;
+
+/**
+ * Metrics of the application in Prometheus text format. Metrics are cheap to collect, so they are written right on
+ * the container thread.
+ */
+@Path("/metrics")
+public class MetricsResource {
+    private static final int INITIAL_CAPACITY = 8192;
+
+    private final List<MetricsSource> sources;
+
+    public MetricsResource(List<MetricsSource> sources) {
+        this.sources = sources;
+    }
+
+    @GET
+    @Produces(ExtendedMediaType.TEXT_PROMETHEUS)
+    public String metrics() {
+        StringBuilder output = new StringBuilder(INITIAL_CAPACITY);
+        MetricsWriter writer = new MetricsWriter(output);
+        for (MetricsSource source : sources) {
+            source.writeMetrics(writer);
+        }
+        return output.toString();
+    }
+}
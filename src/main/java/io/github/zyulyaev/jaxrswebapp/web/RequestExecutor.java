@@ -0,0 +1,196 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <p>Executes handlers of suspended requests and resumes them with the handler's response.</p>
+ * <p>Number of admitted requests which are not completed yet is bounded, requests above the bound are rejected with
+ * {@code 503 Service Unavailable} right away instead of queueing up. Where handlers run is defined by {@link Mode}.
+ * </p>
+ */
+public final class RequestExecutor implements AutoCloseable, MetricsSource {
+    /**
+     * Default max number of admitted requests which are not completed yet
+     */
+    public static final int DEFAULT_MAX_PENDING = 10_000;
+
+    private static final Logger log = LogManager.getLogger(RequestExecutor.class);
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    /**
+     * Defines threads which run request handlers
+     */
+    public enum Mode {
+        /**
+         * Handlers run on the container thread which received the request
+         */
+        DIRECT,
+        /**
+         * Handlers run on a fixed thread pool
+         */
+        POOL,
+        /**
+         * Handlers run on one of single-threaded event loops, one per core. Requests to the same account are
+         * handled by the same loop.
+         */
+        EVENT_LOOP,
+        /**
+         * Every handler runs on its own virtual thread, falls back to {@link #POOL} if the JVM has no virtual
+         * threads
+         */
+        VIRTUAL
+    }
+
+    private final Executor[] executors;
+    private final int maxPending;
+    private final Semaphore admission;
+    private final AtomicInteger nextExecutor = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private RequestExecutor(Executor[] executors, int maxPending) {
+        this.executors = executors;
+        this.maxPending = maxPending;
+        this.admission = new Semaphore(maxPending);
+    }
+
+    /**
+     * Create new request executor.
+     *
+     * @param mode       where handlers run
+     * @param threads    number of threads of {@link Mode#POOL} mode
+     * @param maxPending max number of admitted requests which are not completed yet
+     * @return created executor
+     */
+    public static RequestExecutor create(Mode mode, int threads, int maxPending) {
+        switch (mode) {
+            case DIRECT:
+                return new RequestExecutor(new Executor[]{Runnable::run}, maxPending);
+            case POOL:
+                return new RequestExecutor(new Executor[]{newPool("request-worker", threads)}, maxPending);
+            case EVENT_LOOP:
+                Executor[] loops = new Executor[Runtime.getRuntime().availableProcessors()];
+                for (int i = 0; i < loops.length; i++) {
+                    loops[i] = newPool("request-loop-" + i, 1);
+                }
+                return new RequestExecutor(loops, maxPending);
+            case VIRTUAL:
+                Executor virtual = newVirtualThreadPerTaskExecutor();
+                if (virtual == null) {
+                    log.warn("Virtual threads are not supported by this JVM, falling back to thread pool");
+                    return create(Mode.POOL, threads, maxPending);
+                }
+                return new RequestExecutor(new Executor[]{virtual}, maxPending);
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    private static ExecutorService newPool(String name, int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threads == 1 ? name : name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Looks virtual thread executor up reflectively, so the application still runs on JVMs without virtual threads.
+     *
+     * @return virtual thread per task executor, or null if not supported
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Run the handler unless too many requests are pending and resume the response with its result.
+     *
+     * @param response suspended response
+     * @param handler  request handler
+     */
+    void submit(AsyncResponse response, Supplier<Response> handler) {
+        submit(nextExecutor.getAndIncrement(), response, handler);
+    }
+
+    /**
+     * Run the handler unless too many requests are pending and resume the response with its result. Handlers with
+     * the same affinity run on the same event loop in {@link Mode#EVENT_LOOP} mode.
+     *
+     * @param affinity affinity key, e.g. account id
+     * @param response suspended response
+     * @param handler  request handler
+     */
+    void submit(int affinity, AsyncResponse response, Supplier<Response> handler) {
+        if (!admission.tryAcquire()) {
+            log.debug("Request rejected, too many pending requests");
+            rejected.increment();
+            response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build());
+            return;
+        }
+        Runnable task = () -> {
+            try {
+                response.resume(handler.get());
+            } catch (RuntimeException ex) {
+                response.resume(ex);
+            } catch (Error ex) {
+                // the client would otherwise wait for its timeout, rendering the error may need what has run out
+                response.resume(Response.serverError().build());
+                throw ex;
+            } finally {
+                admission.release();
+            }
+        };
+        try {
+            executors[Math.floorMod(affinity, executors.length)].execute(task);
+        } catch (RejectedExecutionException ex) {
+            admission.release();
+            rejected.increment();
+            response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .build());
+        }
+    }
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.gauge("bank_requests_pending", "Admitted requests which are not completed yet",
+                maxPending - admission.availablePermits());
+        writer.counter("bank_requests_rejected_total", "Requests rejected with 503 Service Unavailable",
+                rejected.sum());
+    }
+
+    /**
+     * Stop all threads after handlers of admitted requests complete.
+     */
+    @Override
+    public void close() {
+        for (Executor executor : executors) {
+            if (executor instanceof ExecutorService) {
+                ExecutorService executorService = (ExecutorService) executor;
+                executorService.shutdown();
+                try {
+                    executorService.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
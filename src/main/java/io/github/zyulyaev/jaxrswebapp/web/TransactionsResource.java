@@ -1,43 +1,169 @@
 package io.github.zyulyaev.jaxrswebapp.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.github.zyulyaev.jaxrswebapp.service.*;
+import io.github.zyulyaev.jaxrswebapp.web.model.BatchResultModel;
 import io.github.zyulyaev.jaxrswebapp.web.model.TransactionModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionsPageModel;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.TransactionBytes;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.TransactionBytesCache;
+import io.github.zyulyaev.jaxrswebapp.web.serialization.TransactionModelCodec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.ws.rs.*;
-import javax.ws.rs.core.Context;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
-import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.*;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import static org.apache.logging.log4j.util.Unbox.box;
 
 /**
- * RESTful transactions resource
+ * <p>RESTful transactions resource. Requests are suspended and handled by {@link RequestExecutor}.</p>
+ * <p>Transaction creation requests may carry {@value #IDEMPOTENCY_KEY_HEADER} header. The first request with a key
+ * creates the transaction, retries with the same key get the same response without creating another one. Retries
+ * which arrive while the first request is handled wait for it.</p>
+ * <p>Transactions never change, so their representations are tagged with transaction id. Ids are only unique within
+ * an epoch: a journal, or a process if the service is not journaled and ids start over after restart. Tags include
+ * the epoch, and representations are cached forever only if they outlive the process. Rendered representations are
+ * also cached by {@link TransactionBytesCache}, so a transaction is rendered once as long as it stays in the
+ * cache.</p>
+ * <p>Besides JSON, transactions are produced and consumed in binary encodings. Cached representations are JSON, so
+ * transactions are written from models in binary encodings.</p>
  */
 @Path("/transactions")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, ExtendedMediaType.APPLICATION_SMILE, ExtendedMediaType.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ExtendedMediaType.APPLICATION_SMILE, ExtendedMediaType.APPLICATION_CBOR})
 public class TransactionsResource {
     private static final Logger log = LogManager.getLogger(TransactionsResource.class);
+    private static final int MAX_BATCH_SIZE = 10_000;
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAMING_PAGE_SIZE = 1024;
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final String DURABLE_CACHE_CONTROL = "max-age=31536000, immutable";
+    private static final String VOLATILE_CACHE_CONTROL = "max-age=60";
+    private static final TransactionModelCodec TRANSACTION_CODEC = new TransactionModelCodec();
 
     private final BankService bankService;
+    private final ObjectMapper objectMapper;
+    private final RequestExecutor requestExecutor;
+    private final IdempotencyCache idempotencyCache;
+    private final TransactionBytesCache transactionBytesCache;
+    private final String epoch;
+    private final String cacheControl;
 
-    public TransactionsResource(BankService bankService) {
+    /**
+     * @param epoch   identifier of the span transaction ids are unique within, e.g. of the journal
+     * @param durable whether transactions survive restart, so their representations may be cached forever
+     */
+    public TransactionsResource(BankService bankService, ObjectMapper objectMapper, RequestExecutor requestExecutor,
+                                IdempotencyCache idempotencyCache, TransactionBytesCache transactionBytesCache,
+                                String epoch, boolean durable)
+    {
         this.bankService = bankService;
+        this.objectMapper = objectMapper;
+        this.requestExecutor = requestExecutor;
+        this.idempotencyCache = idempotencyCache;
+        this.transactionBytesCache = transactionBytesCache;
+        this.epoch = epoch;
+        this.cacheControl = durable ? DURABLE_CACHE_CONTROL : VOLATILE_CACHE_CONTROL;
     }
 
-    private static TransactionModel convertToModel(Transaction transaction) {
+    static TransactionModel convertToModel(Transaction transaction) {
         return new TransactionModel(transaction.getTransactionId(), transaction.getTransactionTime(),
                 transaction.getSourceAccountId(), transaction.getTargetAccountId(),
                 transaction.getAmount());
     }
 
+    static TransactionsPageModel convertToModel(List<Transaction> transactions, int afterId) {
+        List<TransactionModel> models = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            models.add(convertToModel(transaction));
+        }
+        int nextAfterId = transactions.isEmpty() ? afterId
+                : transactions.get(transactions.size() - 1).getTransactionId();
+        return new TransactionsPageModel(models, nextAfterId);
+    }
+
+    private static BatchResultModel convertToModel(BatchResult result) {
+        if (result.getTransaction() != null) {
+            return new BatchResultModel(Response.Status.CREATED.getStatusCode(),
+                    convertToModel(result.getTransaction()), null);
+        } else if (result.getInvalidRequest() != null) {
+            return new BatchResultModel(Response.Status.BAD_REQUEST.getStatusCode(), null,
+                    result.getInvalidRequest().getMessage());
+        } else if (result.getOperationFailure() instanceof AccountNotFoundException) {
+            return new BatchResultModel(Response.Status.NOT_FOUND.getStatusCode(), null,
+                    result.getOperationFailure().getMessage());
+        } else {
+            return new BatchResultModel(ResponseStatusCode.UNPROCESSABLE_ENTITY, null,
+                    result.getOperationFailure().getMessage());
+        }
+    }
+
     @POST
-    public Response create(TransactionModel request, @Context UriInfo uriInfo) {
+    public void create(TransactionModel request, @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                       @Context UriInfo uriInfo, @Context HttpHeaders headers, @Suspended AsyncResponse response)
+    {
+        UriBuilder locationBuilder = uriInfo.getRequestUriBuilder();
+        MediaType encoding = ExtendedMediaType.selectEncoding(headers.getAcceptableMediaTypes());
+        Integer accountId = request.getSourceAccountId() == null ? request.getTargetAccountId()
+                : request.getSourceAccountId();
+        requestExecutor.submit(accountId == null ? 0 : accountId, response, idempotencyKey == null
+                ? () -> create(request, locationBuilder, encoding)
+                : () -> createIdempotent(request, idempotencyKey, locationBuilder, encoding));
+    }
+
+    private Response createIdempotent(TransactionModel request, String idempotencyKey, UriBuilder locationBuilder,
+                                      MediaType encoding)
+    {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            log.debug("Invalid idempotency key: {}", idempotencyKey);
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        IdempotencyCache.Entry entry = new IdempotencyCache.Entry(Arrays.asList(request.getSourceAccountId(),
+                request.getTargetAccountId(), request.getAmount().stripTrailingZeros()));
+        IdempotencyCache.Entry existing;
+        while ((existing = idempotencyCache.putIfAbsent(idempotencyKey, entry)) != null) {
+            if (!existing.matches(entry)) {
+                log.debug("Idempotency key {} reused for another request: {}", idempotencyKey, request);
+                return Response.status(ResponseStatusCode.UNPROCESSABLE_ENTITY)
+                        .build();
+            }
+            Integer transactionId = existing.await();
+            if (transactionId != null) {
+                log.debug("Replaying transaction {} for idempotency key {}", transactionId, idempotencyKey);
+                return created(bankService.lookupTransaction(transactionId), locationBuilder, encoding);
+            }
+            // the first request failed and released the key, so this one is not a duplicate anymore
+        }
+        Response response = null;
+        try {
+            response = create(request, locationBuilder, encoding);
+        } finally {
+            if (response != null && response.getStatus() == Response.Status.CREATED.getStatusCode()) {
+                Object created = response.getEntity();
+                entry.complete(created instanceof TransactionBytes ? ((TransactionBytes) created).getTransactionId()
+                        : ((TransactionModel) created).getTransactionId());
+            } else {
+                idempotencyCache.remove(idempotencyKey, entry);
+                entry.fail();
+            }
+        }
+        return response;
+    }
+
+    private Response create(TransactionModel request, UriBuilder locationBuilder, MediaType encoding) {
         if (Objects.equals(request.getSourceAccountId(), request.getTargetAccountId())) {
             log.debug("Self transfer attempt: {}", request);
             return Response.status(Response.Status.BAD_REQUEST)
@@ -62,25 +188,159 @@ public class TransactionsResource {
             log.debug("Failed to create transaction: {}", ex.getMessage());
             return Response.status(ResponseStatusCode.UNPROCESSABLE_ENTITY)
                     .build();
+        } catch (IllegalArgumentException ex) {
+            log.debug("Invalid transaction: {}", ex.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
         }
-        URI location = uriInfo.getRequestUriBuilder().path("{transactionId}")
+        return created(transaction, locationBuilder, encoding);
+    }
+
+    private Response created(Transaction transaction, UriBuilder locationBuilder, MediaType encoding) {
+        URI location = locationBuilder.path("{transactionId}")
                 .build(transaction.getTransactionId());
         return Response.created(location)
-                .entity(convertToModel(transaction))
+                .entity(render(transaction, encoding))
+                .type(encoding)
+                .build();
+    }
+
+    /**
+     * Returns cached JSON representation of the transaction, rendering and caching it if necessary. Binary encodings
+     * are written from the model.
+     */
+    private Object render(Transaction transaction, MediaType encoding) {
+        if (!MediaType.APPLICATION_JSON_TYPE.isCompatible(encoding)) {
+            return convertToModel(transaction);
+        }
+        TransactionBytes cached = transactionBytesCache.get(transaction.getTransactionId());
+        if (cached != null) {
+            return cached;
+        }
+        return transactionBytesCache.put(transaction.getTransactionId(),
+                TRANSACTION_CODEC.toBytes(convertToModel(transaction)));
+    }
+
+    @POST
+    @Path("/batch")
+    public void createBatch(List<TransactionModel> request, @Suspended AsyncResponse response) {
+        requestExecutor.submit(response, () -> createBatch(request));
+    }
+
+    private Response createBatch(List<TransactionModel> request) {
+        if (request == null || request.size() > MAX_BATCH_SIZE) {
+            log.debug("Invalid batch size: {}", request == null ? null : request.size());
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        List<TransactionRequest> transactionRequests = new ArrayList<>(request.size());
+        for (TransactionModel model : request) {
+            transactionRequests.add(new TransactionRequest(model.getSourceAccountId(), model.getTargetAccountId(),
+                    model.getAmount()));
+        }
+        List<BatchResult> results = bankService.applyBatch(transactionRequests);
+        List<BatchResultModel> response = new ArrayList<>(results.size());
+        for (BatchResult result : results) {
+            response.add(convertToModel(result));
+        }
+        return Response.ok()
+                .entity(response)
                 .build();
     }
 
     @GET
     @Path("/{transactionId}")
-    public Response lookup(@PathParam("transactionId") int transactionId) {
+    public void lookup(@PathParam("transactionId") int transactionId,
+                       @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+                       @Context HttpHeaders headers, @Suspended AsyncResponse response)
+    {
+        MediaType encoding = ExtendedMediaType.selectEncoding(headers.getAcceptableMediaTypes());
+        requestExecutor.submit(response, () -> lookup(transactionId, ifNoneMatch, encoding));
+    }
+
+    private Response lookup(int transactionId, String ifNoneMatch, MediaType encoding) {
         Transaction transaction = bankService.lookupTransaction(transactionId);
         if (transaction == null) {
             log.debug("Transaction not found: {}", box(transactionId));
             return Response.status(Response.Status.NOT_FOUND)
                     .build();
         }
+        EntityTag entityTag = EntityTags.of(epoch + "-" + transactionId, encoding);
+        if (EntityTags.matches(ifNoneMatch, entityTag)) {
+            return EntityTags.notModified(entityTag, cacheControl);
+        }
         return Response.ok()
-                .entity(convertToModel(transaction))
+                .entity(render(transaction, encoding))
+                .type(encoding)
+                .tag(entityTag)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .build();
+    }
+
+    @GET
+    public void list(@QueryParam("afterId") @DefaultValue("-1") int afterId,
+                     @QueryParam("limit") @DefaultValue("100") int limit,
+                     @Suspended AsyncResponse response)
+    {
+        requestExecutor.submit(response, () -> list(afterId, limit));
+    }
+
+    private Response list(int afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            log.debug("Invalid page limit: {}", box(limit));
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        return Response.ok()
+                .entity(convertToModel(bankService.lookupTransactions(afterId, limit), afterId))
+                .build();
+    }
+
+    /**
+     * Streams transactions as newline delimited JSON. The log is read page by page and every transaction is written
+     * as soon as it is read, so memory usage does not depend on the number of streamed transactions.
+     */
+    @GET
+    @Produces(ExtendedMediaType.APPLICATION_NDJSON + ";qs=0.5") // JSON pages are preferred unless NDJSON is accepted
+    public void stream(@QueryParam("afterId") @DefaultValue("-1") int afterId,
+                       @QueryParam("limit") @DefaultValue("2147483647") int limit,
+                       @Suspended AsyncResponse response)
+    {
+        requestExecutor.submit(response, () -> stream(afterId, limit));
+    }
+
+    private Response stream(int afterId, int limit) {
+        if (limit <= 0) {
+            log.debug("Invalid stream limit: {}", box(limit));
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .build();
+        }
+        StreamingOutput output = outputStream -> {
+            ObjectWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                int cursor = afterId;
+                int remaining = limit;
+                while (remaining > 0) {
+                    List<Transaction> page = bankService.lookupTransactions(cursor,
+                            Math.min(remaining, STREAMING_PAGE_SIZE));
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    for (Transaction transaction : page) {
+                        writer.writeValue(generator, convertToModel(transaction));
+                        generator.writeRaw('\n');
+                    }
+                    generator.flush();
+                    cursor = page.get(page.size() - 1).getTransactionId();
+                    remaining -= page.size();
+                }
+            }
+        };
+        return Response.ok(output)
                 .build();
     }
 }
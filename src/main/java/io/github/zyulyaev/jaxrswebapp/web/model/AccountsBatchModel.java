@@ -0,0 +1,40 @@
+package io.github.zyulyaev.jaxrswebapp.web.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Json model of a batch of created accounts: ids in the order of requested owners and their common creation time
+ */
+public class AccountsBatchModel {
+    @JsonProperty
+    private int[] accountIds;
+    @JsonProperty
+    private Instant creationTime;
+
+    AccountsBatchModel() {
+    }
+
+    public AccountsBatchModel(int[] accountIds, Instant creationTime) {
+        this.accountIds = accountIds;
+        this.creationTime = creationTime;
+    }
+
+    public int[] getAccountIds() {
+        return accountIds;
+    }
+
+    public Instant getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountsBatchModel{" +
+                "accountIds=" + Arrays.toString(accountIds) +
+                ", creationTime=" + creationTime +
+                '}';
+    }
+}
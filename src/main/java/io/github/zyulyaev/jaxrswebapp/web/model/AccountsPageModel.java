@@ -0,0 +1,39 @@
+package io.github.zyulyaev.jaxrswebapp.web.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Json model of an accounts page. {@code nextCursor} is the cursor to request the next page with.
+ */
+public class AccountsPageModel {
+    @JsonProperty
+    private List<AccountModel> accounts;
+    @JsonProperty
+    private String nextCursor;
+
+    AccountsPageModel() {
+    }
+
+    public AccountsPageModel(List<AccountModel> accounts, String nextCursor) {
+        this.accounts = accounts;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<AccountModel> getAccounts() {
+        return accounts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountsPageModel{" +
+                "accounts=" + accounts +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.zyulyaev.jaxrswebapp.web.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+/**
+ * Json model of bank-wide totals. {@code transactionIdLimit} is only present in consistent summaries, which include
+ * exactly the transactions with lower ids.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BankSummaryModel {
+    @JsonProperty
+    private long accountsCount;
+    @JsonProperty
+    private long transactionsCount;
+    @JsonProperty
+    private BigDecimal totalDeposits;
+    @JsonProperty
+    private BigDecimal totalWithdrawals;
+    @JsonProperty
+    private BigDecimal totalMoney;
+    @JsonProperty
+    private Integer transactionIdLimit;
+
+    BankSummaryModel() {
+    }
+
+    public BankSummaryModel(long accountsCount, long transactionsCount, BigDecimal totalDeposits,
+                            BigDecimal totalWithdrawals, BigDecimal totalMoney, Integer transactionIdLimit)
+    {
+        this.accountsCount = accountsCount;
+        this.transactionsCount = transactionsCount;
+        this.totalDeposits = totalDeposits;
+        this.totalWithdrawals = totalWithdrawals;
+        this.totalMoney = totalMoney;
+        this.transactionIdLimit = transactionIdLimit;
+    }
+
+    public long getAccountsCount() {
+        return accountsCount;
+    }
+
+    public long getTransactionsCount() {
+        return transactionsCount;
+    }
+
+    public BigDecimal getTotalDeposits() {
+        return totalDeposits;
+    }
+
+    public BigDecimal getTotalWithdrawals() {
+        return totalWithdrawals;
+    }
+
+    public BigDecimal getTotalMoney() {
+        return totalMoney;
+    }
+
+    public Integer getTransactionIdLimit() {
+        return transactionIdLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "BankSummaryModel{" +
+                "accountsCount=" + accountsCount +
+                ", transactionsCount=" + transactionsCount +
+                ", totalDeposits=" + totalDeposits +
+                ", totalWithdrawals=" + totalWithdrawals +
+                ", totalMoney=" + totalMoney +
+                ", transactionIdLimit=" + transactionIdLimit +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.zyulyaev.jaxrswebapp.web.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Json model of a single batch item result: HTTP-like status and either created transaction or error message
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResultModel {
+    @JsonProperty
+    private int status;
+    @JsonProperty
+    private TransactionModel transaction;
+    @JsonProperty
+    private String error;
+
+    BatchResultModel() {
+    }
+
+    public BatchResultModel(int status, TransactionModel transaction, String error) {
+        this.status = status;
+        this.transaction = transaction;
+        this.error = error;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public TransactionModel getTransaction() {
+        return transaction;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResultModel{" +
+                "status=" + status +
+                ", transaction=" + transaction +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
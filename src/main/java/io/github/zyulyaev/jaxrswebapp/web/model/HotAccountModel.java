@@ -0,0 +1,53 @@
+package io.github.zyulyaev.jaxrswebapp.web.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Json model of a hot account: estimates of its recent operations and contention
+ */
+public class HotAccountModel {
+    @JsonProperty
+    private int accountId;
+    @JsonProperty
+    private long operations;
+    @JsonProperty
+    private long balanceRetries;
+    @JsonProperty
+    private double monitorWaitSeconds;
+
+    HotAccountModel() {
+    }
+
+    public HotAccountModel(int accountId, long operations, long balanceRetries, double monitorWaitSeconds) {
+        this.accountId = accountId;
+        this.operations = operations;
+        this.balanceRetries = balanceRetries;
+        this.monitorWaitSeconds = monitorWaitSeconds;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getBalanceRetries() {
+        return balanceRetries;
+    }
+
+    public double getMonitorWaitSeconds() {
+        return monitorWaitSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "HotAccountModel{" +
+                "accountId=" + accountId +
+                ", operations=" + operations +
+                ", balanceRetries=" + balanceRetries +
+                ", monitorWaitSeconds=" + monitorWaitSeconds +
+                '}';
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.zyulyaev.jaxrswebapp.web.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Json model of a transactions page. {@code nextAfterId} is the cursor to request the next page with.
+ */
+public class TransactionsPageModel {
+    @JsonProperty
+    private List<TransactionModel> transactions;
+    @JsonProperty
+    private int nextAfterId;
+
+    TransactionsPageModel() {
+    }
+
+    public TransactionsPageModel(List<TransactionModel> transactions, int nextAfterId) {
+        this.transactions = transactions;
+        this.nextAfterId = nextAfterId;
+    }
+
+    public List<TransactionModel> getTransactions() {
+        return transactions;
+    }
+
+    public int getNextAfterId() {
+        return nextAfterId;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionsPageModel{" +
+                "transactions=" + transactions +
+                ", nextAfterId=" + nextAfterId +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import io.github.zyulyaev.jaxrswebapp.web.model.AccountModel;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * JSON codec of {@link AccountModel}. Only {@code owner} property may be present in requests.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class AccountModelCodec extends ModelCodec<AccountModel> {
+    private static final SerializableString ACCOUNT_ID = new SerializedString("accountId");
+    private static final SerializableString OWNER = new SerializedString("owner");
+    private static final SerializableString CREATION_TIME = new SerializedString("creationTime");
+    private static final SerializableString BALANCE = new SerializedString("balance");
+
+    public AccountModelCodec() {
+        super(AccountModel.class);
+    }
+
+    @Override
+    AccountModel read(JsonParser parser) throws IOException {
+        JsonValues.startObject(parser, AccountModel.class);
+        String owner = null;
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (name) {
+                case "owner":
+                    owner = JsonValues.readString(parser);
+                    break;
+                case "accountId":
+                case "creationTime":
+                case "balance":
+                    throw JsonValues.unexpectedProperty(parser, AccountModel.class, name, true);
+                default:
+                    throw JsonValues.unexpectedProperty(parser, AccountModel.class, name, false);
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw JsonValues.unexpectedToken(parser, AccountModel.class);
+        }
+        return new AccountModel(null, owner, null, null);
+    }
+
+    @Override
+    void write(AccountModel model, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ACCOUNT_ID);
+        JsonValues.writeInteger(model.getAccountId(), generator);
+        generator.writeFieldName(OWNER);
+        generator.writeString(model.getOwner());
+        generator.writeFieldName(CREATION_TIME);
+        JsonValues.writeInstant(model.getCreationTime(), generator);
+        generator.writeFieldName(BALANCE);
+        generator.writeNumber(model.getBalance());
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.*;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Reader and writer of binary encodings of web models: Smile and CBOR. Object mappers of these encodings are
+ * configured by {@link JacksonProvider} the same way the JSON one is, so every encoding carries the same
+ * values.</p>
+ * <p>Amounts stay exact decimals and instants stay ISO-8601 strings in every encoding.</p>
+ */
+@Provider
+@Produces({BinaryJacksonProvider.APPLICATION_SMILE, BinaryJacksonProvider.APPLICATION_CBOR})
+@Consumes({BinaryJacksonProvider.APPLICATION_SMILE, BinaryJacksonProvider.APPLICATION_CBOR})
+public class BinaryJacksonProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    /**
+     * Jackson's binary JSON
+     */
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+    /**
+     * Concise Binary Object Representation, RFC 7049
+     */
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+    /**
+     * Types written by other providers
+     */
+    private static final List<Class<?>> UNTOUCHABLES = Arrays.asList(String.class, byte[].class, char[].class,
+            InputStream.class, Reader.class, StreamingOutput.class, Response.class);
+
+    private final ObjectMapper smileMapper = createMapper(new SmileFactory());
+    private final ObjectMapper cborMapper = createMapper(new CBORFactory());
+
+    private static ObjectMapper createMapper(JsonFactory factory) {
+        factory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return JacksonProvider.configure(new ObjectMapper(factory));
+    }
+
+    private ObjectMapper getMapper(MediaType mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        if (mediaType.isCompatible(APPLICATION_SMILE_TYPE) && !mediaType.isWildcardSubtype()) {
+            return smileMapper;
+        }
+        if (mediaType.isCompatible(APPLICATION_CBOR_TYPE) && !mediaType.isWildcardSubtype()) {
+            return cborMapper;
+        }
+        return null;
+    }
+
+    private static boolean isUntouchable(Class<?> type) {
+        for (Class<?> untouchable : UNTOUCHABLES) {
+            if (untouchable.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return getMapper(mediaType) != null && !isUntouchable(type);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException
+    {
+        ObjectMapper mapper = getMapper(mediaType);
+        try {
+            return mapper.readValue(entityStream, mapper.constructType(genericType));
+        } catch (JsonProcessingException ex) {
+            throw new BadRequestException(ex.getOriginalMessage(), ex);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return getMapper(mediaType) != null && !isUntouchable(type);
+    }
+
+    @Override
+    public long getSize(Object value, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType)
+    {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException
+    {
+        getMapper(mediaType).writeValue(entityStream, value);
+    }
+}
@@ -6,20 +6,17 @@ import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import java.io.IOException;
 import java.time.Instant;
-import java.time.format.DateTimeFormatter;
 
 /**
- * JSON {@link Instant} objects serializer
+ * JSON {@link Instant} objects serializer, writes them in ISO-8601 format with {@link InstantWriter}
  */
 public class InstantSerializer extends StdSerializer<Instant> {
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_INSTANT;
-
     public InstantSerializer() {
         super(Instant.class);
     }
 
     @Override
     public void serialize(Instant value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
-        gen.writeString(FORMATTER.format(value));
+        InstantWriter.write(value, gen);
     }
 }
@@ -0,0 +1,108 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * <p>Writes {@link Instant}s in the format of {@link DateTimeFormatter#ISO_INSTANT}, e.g.
+ * {@code 2019-01-01T12:34:56.789Z}, without allocating anything.</p>
+ * <p>Instants of years from 0 to 9999 are formatted into a per-thread buffer, others are rare enough to be passed to
+ * the formatter itself.</p>
+ */
+final class InstantWriter {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_INSTANT;
+    /**
+     * Length of the longest formatted instant: {@code 9999-12-31T23:59:59.999999999Z}
+     */
+    private static final int MAX_LENGTH = 30;
+    private static final long MIN_EPOCH_SECOND = -62167219200L; // 0000-01-01T00:00:00Z
+    private static final long MAX_EPOCH_SECOND = 253402300799L; // 9999-12-31T23:59:59Z
+    private static final long SECONDS_PER_DAY = 86400;
+    /**
+     * Days from 0000-03-01 to 1970-01-01
+     */
+    private static final long DAYS_0000_TO_1970 = 719468;
+    private static final int DAYS_PER_ERA = 146097;
+
+    private static final ThreadLocal<char[]> buffer = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+    private InstantWriter() {
+    }
+
+    /**
+     * Write the instant as JSON string.
+     *
+     * @param instant   instant to write
+     * @param generator generator to write to
+     * @throws IOException if generator fails
+     */
+    static void write(Instant instant, JsonGenerator generator) throws IOException {
+        long epochSecond = instant.getEpochSecond();
+        if (epochSecond < MIN_EPOCH_SECOND || epochSecond > MAX_EPOCH_SECOND) {
+            generator.writeString(FORMATTER.format(instant));
+            return;
+        }
+        char[] chars = buffer.get();
+        int length = format(epochSecond, instant.getNano(), chars);
+        generator.writeString(chars, 0, length);
+    }
+
+    /**
+     * Formats instant of years from 0 to 9999 into the buffer.
+     *
+     * @return number of written chars
+     */
+    static int format(long epochSecond, int nano, char[] chars) {
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        // civil date from day number, with years starting at March so that leap day is the last one
+        long days = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(days, DAYS_PER_ERA);
+        int dayOfEra = (int) (days - era * DAYS_PER_ERA);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        writeDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        writeDigits(chars, 5, month, 2);
+        chars[7] = '-';
+        writeDigits(chars, 8, day, 2);
+        chars[10] = 'T';
+        writeDigits(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        writeDigits(chars, 14, secondOfDay / 60 % 60, 2);
+        chars[16] = ':';
+        writeDigits(chars, 17, secondOfDay % 60, 2);
+        int length = 19;
+        if (nano != 0) {
+            // fraction is written in groups of three digits, as many as needed
+            chars[length++] = '.';
+            if (nano % 1_000_000 == 0) {
+                writeDigits(chars, length, nano / 1_000_000, 3);
+                length += 3;
+            } else if (nano % 1000 == 0) {
+                writeDigits(chars, length, nano / 1000, 6);
+                length += 6;
+            } else {
+                writeDigits(chars, length, nano, 9);
+                length += 9;
+            }
+        }
+        chars[length++] = 'Z';
+        return length;
+    }
+
+    private static void writeDigits(char[] chars, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
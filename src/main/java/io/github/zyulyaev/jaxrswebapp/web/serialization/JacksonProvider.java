@@ -3,20 +3,40 @@ package io.github.zyulyaev.jaxrswebapp.web.serialization;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.github.zyulyaev.jaxrswebapp.web.model.AccountModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionModel;
 
 import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Provider;
 
 /**
- * Jackson's {@link ObjectMapper} provider. Does some configuration of that object mapper.
+ * Jackson's {@link ObjectMapper} provider. Does some configuration of that object mapper, models with hand-written
+ * codecs are handled by them. The same configuration is applied to mappers of binary encodings by
+ * {@link BinaryJacksonProvider}.
  */
 @Provider
 public class JacksonProvider implements ContextResolver<ObjectMapper> {
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .enable(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES)
-            .registerModule(new SimpleModule() {{
-                addSerializer(new InstantSerializer());
-            }});
+    private final ObjectMapper objectMapper = configure(new ObjectMapper());
+
+    /**
+     * Configures object mapper of any data format the way JSON one is configured.
+     *
+     * @param objectMapper mapper to configure
+     * @return the same mapper
+     */
+    static ObjectMapper configure(ObjectMapper objectMapper) {
+        return objectMapper
+                .enable(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES)
+                .registerModule(new SimpleModule() {{
+                    addSerializer(new InstantSerializer());
+                    AccountModelCodec accountCodec = new AccountModelCodec();
+                    addSerializer(AccountModel.class, accountCodec.serializer());
+                    addDeserializer(AccountModel.class, accountCodec.deserializer());
+                    TransactionModelCodec transactionCodec = new TransactionModelCodec();
+                    addSerializer(TransactionModel.class, transactionCodec.serializer());
+                    addDeserializer(TransactionModel.class, transactionCodec.deserializer());
+                }});
+    }
 
     @Override
     public ObjectMapper getContext(Class<?> type) {
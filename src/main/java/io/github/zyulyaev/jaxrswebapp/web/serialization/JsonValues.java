@@ -0,0 +1,137 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * <p>Reading and writing of scalar values with streaming {@link JsonParser} and {@link JsonGenerator}.</p>
+ * <p>Values are coerced the same way databind coerces them with default settings: numbers and booleans are accepted
+ * as strings, numeric strings as numbers, floating point numbers as integers and empty strings as nulls.</p>
+ */
+final class JsonValues {
+    private JsonValues() {
+    }
+
+    /**
+     * Moves the parser to the start of the object.
+     *
+     * @throws JsonMappingException if there is no object
+     */
+    static void startObject(JsonParser parser, Class<?> type) throws IOException {
+        JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw JsonMappingException.from(parser, "Expected " + type.getSimpleName() + " object, got " + token);
+        }
+    }
+
+    /**
+     * Fails on property which must not be present in requests.
+     */
+    static JsonMappingException unexpectedProperty(JsonParser parser, Class<?> type, String name,
+                                                   boolean readOnly)
+    {
+        return JsonMappingException.from(parser, (readOnly ? "Read-only" : "Unknown") + " property \"" + name
+                + "\" of " + type.getSimpleName());
+    }
+
+    /**
+     * Fails on anything but a property inside of an object.
+     */
+    static JsonMappingException unexpectedToken(JsonParser parser, Class<?> type) {
+        return JsonMappingException.from(parser, "Unexpected " + parser.currentToken() + " in "
+                + type.getSimpleName());
+    }
+
+    /**
+     * Reads current value as string.
+     */
+    static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw JsonMappingException.from(parser, "Expected string, got " + token);
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Reads current value as integer.
+     */
+    static Integer readInteger(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return parser.getIntValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getValueAsInt();
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return Integer.parseInt(text);
+                } catch (NumberFormatException ex) {
+                    throw JsonMappingException.from(parser, "Invalid integer: " + text, ex);
+                }
+            default:
+                throw JsonMappingException.from(parser, "Expected integer, got " + parser.currentToken());
+        }
+    }
+
+    /**
+     * Reads current value as decimal. Numbers are parsed straight from their text into {@link BigDecimal}.
+     */
+    static BigDecimal readDecimal(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue();
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return new BigDecimal(text);
+                } catch (NumberFormatException ex) {
+                    throw JsonMappingException.from(parser, "Invalid decimal: " + text, ex);
+                }
+            default:
+                throw JsonMappingException.from(parser, "Expected decimal, got " + parser.currentToken());
+        }
+    }
+
+    /**
+     * Writes integer or null.
+     */
+    static void writeInteger(Integer value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    /**
+     * Writes instant as ISO-8601 string or null.
+     */
+    static void writeInstant(Instant value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            InstantWriter.write(value, generator);
+        }
+    }
+}
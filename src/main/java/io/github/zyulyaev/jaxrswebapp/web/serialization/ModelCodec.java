@@ -0,0 +1,139 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * <p>Hand-written JSON codec of a web model built on streaming {@link JsonParser} and {@link JsonGenerator}, with no
+ * bean introspection involved.</p>
+ * <p>Codec is both a JAX-RS reader and writer of the model, and provides databind serializer and deserializer, so
+ * the model is handled the same way when it is nested into other models. Generators and parsers of binary formats
+ * are driven the same way through those, see {@link BinaryJacksonProvider}.</p>
+ *
+ * @param <T> model type
+ */
+public abstract class ModelCodec<T> implements MessageBodyReader<T>, MessageBodyWriter<T> {
+    private static final JsonFactory jsonFactory = new JsonFactory()
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final int INITIAL_RENDER_CAPACITY = 256;
+
+    private final Class<T> type;
+
+    ModelCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * Reads the model from the object the parser is at or before.
+     *
+     * @param parser parser to read from
+     * @return read model
+     * @throws IOException if the object is malformed or is not a valid model
+     */
+    abstract T read(JsonParser parser) throws IOException;
+
+    /**
+     * Writes the model as JSON object.
+     *
+     * @param model     model to write
+     * @param generator generator to write to
+     * @throws IOException if generator fails
+     */
+    abstract void write(T model, JsonGenerator generator) throws IOException;
+
+    /**
+     * Renders the model into a new byte array.
+     *
+     * @param model model to render
+     * @return UTF-8 encoded JSON
+     */
+    public byte[] toBytes(T model) {
+        ByteArrayBuilder builder = new ByteArrayBuilder(INITIAL_RENDER_CAPACITY);
+        try (JsonGenerator generator = jsonFactory.createGenerator(builder)) {
+            write(model, generator);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to render " + model, ex);
+        }
+        return builder.toByteArray();
+    }
+
+    /**
+     * @return databind serializer delegating to this codec
+     */
+    public JsonSerializer<T> serializer() {
+        return new StdSerializer<T>(type) {
+            @Override
+            public void serialize(T value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                write(value, generator);
+            }
+        };
+    }
+
+    /**
+     * @return databind deserializer delegating to this codec
+     */
+    public JsonDeserializer<T> deserializer() {
+        return new StdDeserializer<T>(type) {
+            @Override
+            public T deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                return read(parser);
+            }
+        };
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == this.type && MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public T readFrom(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                      MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException
+    {
+        try (JsonParser parser = jsonFactory.createParser(entityStream)) {
+            return read(parser);
+        } catch (JsonProcessingException ex) {
+            throw new BadRequestException(ex.getOriginalMessage(), ex);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == this.type && MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(T model, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(T model, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException
+    {
+        try (JsonGenerator generator = jsonFactory.createGenerator(entityStream)) {
+            write(model, generator);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Rendered representation of a transaction, stored either in a heap array or in a direct buffer. Written to the
+ * response as is by {@link TransactionBytesWriter}.
+ */
+public final class TransactionBytes {
+    private static final int COPY_BUFFER_SIZE = 512;
+    private static final ThreadLocal<byte[]> copyBuffer = ThreadLocal.withInitial(() -> new byte[COPY_BUFFER_SIZE]);
+
+    private final int transactionId;
+    private final byte[] heapBytes;
+    private final ByteBuffer directBytes;
+    /**
+     * Second chance flag of {@link TransactionBytesCache} eviction, set on every cache hit
+     */
+    volatile boolean referenced;
+
+    TransactionBytes(int transactionId, byte[] bytes, boolean direct) {
+        this.transactionId = transactionId;
+        if (direct) {
+            this.heapBytes = null;
+            this.directBytes = ByteBuffer.allocateDirect(bytes.length);
+            this.directBytes.put(bytes).flip();
+        } else {
+            this.heapBytes = bytes;
+            this.directBytes = null;
+        }
+    }
+
+    /**
+     * @return id of rendered transaction
+     */
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return number of rendered bytes
+     */
+    public int getLength() {
+        return heapBytes != null ? heapBytes.length : directBytes.limit();
+    }
+
+    /**
+     * Write rendered bytes to the stream.
+     *
+     * @param outputStream stream to write to
+     * @throws IOException if stream fails
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (heapBytes != null) {
+            outputStream.write(heapBytes);
+            return;
+        }
+        ByteBuffer source = directBytes.duplicate();
+        byte[] buffer = copyBuffer.get();
+        while (source.hasRemaining()) {
+            int length = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, length);
+            outputStream.write(buffer, 0, length);
+        }
+    }
+}
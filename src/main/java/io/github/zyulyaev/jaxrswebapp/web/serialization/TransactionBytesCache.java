@@ -0,0 +1,164 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsSource;
+import io.github.zyulyaev.jaxrswebapp.metrics.MetricsWriter;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Cache of rendered representations of transactions. Transactions never change after commit, so their bytes can
+ * be rendered once and written to every following response as is.</p>
+ * <p>Cache is bounded by the total number of stored bytes. Entries are evicted in insertion order, except that an
+ * entry hit since it was queued gets a second chance and is queued again, so hot transactions stay cached while
+ * recent ones displace cold ones.</p>
+ */
+public final class TransactionBytesCache implements MetricsSource {
+    /**
+     * Default max number of bytes kept by the cache
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L << 20;
+    /**
+     * Approximate memory used by an entry besides its bytes: the entry, map node, boxed key and queue node
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * Where rendered bytes are stored
+     */
+    public enum Storage {
+        /**
+         * Heap byte arrays
+         */
+        HEAP,
+        /**
+         * Direct buffers outside of the heap, so a large cache does not add to garbage collection work
+         */
+        DIRECT
+    }
+
+    private final long maxBytes;
+    private final boolean direct;
+    private final Map<Integer, TransactionBytes> entries = new ConcurrentHashMap<>();
+    private final Queue<TransactionBytes> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create new cache.
+     *
+     * @param maxBytes max number of bytes kept by the cache, including per entry overhead, zero disables caching
+     * @param storage  where rendered bytes are stored
+     */
+    public TransactionBytesCache(long maxBytes, Storage storage) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Negative max bytes: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.direct = storage == Storage.DIRECT;
+    }
+
+    /**
+     * Returns cached bytes of the transaction.
+     *
+     * @param transactionId transaction id
+     * @return cached bytes or null if transaction is not cached
+     */
+    public TransactionBytes get(int transactionId) {
+        TransactionBytes cached = entries.get(transactionId);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!cached.referenced) {
+            cached.referenced = true;
+        }
+        return cached;
+    }
+
+    /**
+     * Caches rendered bytes of the transaction, evicting other entries if the cache grows too large.
+     *
+     * @param transactionId transaction id
+     * @param rendered      rendered bytes, must not be modified afterwards
+     * @return bytes to write to the response, cached ones if transaction is already cached
+     */
+    public TransactionBytes put(int transactionId, byte[] rendered) {
+        TransactionBytes created = new TransactionBytes(transactionId, rendered, direct);
+        long size = sizeOf(created);
+        if (size > maxBytes) {
+            return created;
+        }
+        TransactionBytes existing = entries.putIfAbsent(transactionId, created);
+        if (existing != null) {
+            return existing;
+        }
+        evictionQueue.add(created);
+        if (bytes.addAndGet(size) > maxBytes) {
+            evict();
+        }
+        return created;
+    }
+
+    private static long sizeOf(TransactionBytes entry) {
+        return entry.getLength() + ENTRY_OVERHEAD;
+    }
+
+    private void evict() {
+        TransactionBytes head;
+        while (bytes.get() > maxBytes && (head = evictionQueue.poll()) != null) {
+            if (head.referenced) {
+                head.referenced = false;
+                evictionQueue.add(head);
+            } else if (entries.remove(head.getTransactionId(), head)) {
+                bytes.addAndGet(-sizeOf(head));
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * @return number of lookups which found cached bytes
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups which did not find cached bytes
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of evicted entries
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of bytes kept by the cache, including per entry overhead
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.counter("bank_transaction_cache_hits_total", "Lookups which found cached transaction bytes",
+                getHits());
+        writer.counter("bank_transaction_cache_misses_total", "Lookups which did not find cached transaction bytes",
+                getMisses());
+        writer.counter("bank_transaction_cache_evictions_total", "Evicted transactions", getEvictions());
+        writer.gauge("bank_transaction_cache_bytes", "Bytes kept by the transaction cache", getBytes());
+    }
+}
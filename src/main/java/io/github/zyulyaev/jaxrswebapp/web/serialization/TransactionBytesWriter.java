@@ -0,0 +1,39 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes {@link TransactionBytes} to responses as is, bypassing Jackson. Bytes are JSON, so other encodings are
+ * written from models.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class TransactionBytesWriter implements MessageBodyWriter<TransactionBytes> {
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == TransactionBytes.class && MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(TransactionBytes transactionBytes, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType)
+    {
+        return transactionBytes.getLength();
+    }
+
+    @Override
+    public void writeTo(TransactionBytes transactionBytes, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException
+    {
+        transactionBytes.writeTo(entityStream);
+    }
+}
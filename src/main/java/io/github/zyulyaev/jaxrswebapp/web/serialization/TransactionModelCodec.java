@@ -0,0 +1,81 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionModel;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * JSON codec of {@link TransactionModel}. Transaction id and time must not be present in requests.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class TransactionModelCodec extends ModelCodec<TransactionModel> {
+    private static final SerializableString TRANSACTION_ID = new SerializedString("transactionId");
+    private static final SerializableString TRANSACTION_TIME = new SerializedString("transactionTime");
+    private static final SerializableString SOURCE_ACCOUNT_ID = new SerializedString("sourceAccountId");
+    private static final SerializableString TARGET_ACCOUNT_ID = new SerializedString("targetAccountId");
+    private static final SerializableString AMOUNT = new SerializedString("amount");
+
+    public TransactionModelCodec() {
+        super(TransactionModel.class);
+    }
+
+    @Override
+    TransactionModel read(JsonParser parser) throws IOException {
+        JsonValues.startObject(parser, TransactionModel.class);
+        Integer sourceAccountId = null;
+        Integer targetAccountId = null;
+        BigDecimal amount = null;
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (name) {
+                case "sourceAccountId":
+                    sourceAccountId = JsonValues.readInteger(parser);
+                    break;
+                case "targetAccountId":
+                    targetAccountId = JsonValues.readInteger(parser);
+                    break;
+                case "amount":
+                    amount = JsonValues.readDecimal(parser);
+                    break;
+                case "transactionId":
+                case "transactionTime":
+                    throw JsonValues.unexpectedProperty(parser, TransactionModel.class, name, true);
+                default:
+                    throw JsonValues.unexpectedProperty(parser, TransactionModel.class, name, false);
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw JsonValues.unexpectedToken(parser, TransactionModel.class);
+        }
+        return new TransactionModel(null, null, sourceAccountId, targetAccountId, amount);
+    }
+
+    @Override
+    void write(TransactionModel model, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(TRANSACTION_ID);
+        JsonValues.writeInteger(model.getTransactionId(), generator);
+        generator.writeFieldName(TRANSACTION_TIME);
+        JsonValues.writeInstant(model.getTransactionTime(), generator);
+        generator.writeFieldName(SOURCE_ACCOUNT_ID);
+        JsonValues.writeInteger(model.getSourceAccountId(), generator);
+        generator.writeFieldName(TARGET_ACCOUNT_ID);
+        JsonValues.writeInteger(model.getTargetAccountId(), generator);
+        generator.writeFieldName(AMOUNT);
+        generator.writeNumber(model.getAmount());
+        generator.writeEndObject();
+    }
+}
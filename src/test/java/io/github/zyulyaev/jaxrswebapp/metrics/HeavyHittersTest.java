@@ -0,0 +1,54 @@
+package io.github.zyulyaev.jaxrswebapp.metrics;
+
+import io.github.zyulyaev.jaxrswebapp.web.ControllableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeavyHittersTest {
+    private final ControllableClock clock = new ControllableClock(ZoneOffset.UTC, Instant.EPOCH);
+
+    @Test
+    public void findHeaviestKeysAmongManyLightOnes() {
+        HeavyHitters heavyHitters = new HeavyHitters(clock, Duration.ofMinutes(1), 6, 1024, 4, 16);
+        for (int key = 0; key < 100_000; key++) {
+            heavyHitters.add(key, 1);
+            if (key % 10 == 0) {
+                heavyHitters.add(7, 3);
+                heavyHitters.add(42, 2);
+            }
+        }
+        List<HeavyHitters.Entry> top = heavyHitters.top(2);
+        assertEquals(2, top.size());
+        assertEquals(7, top.get(0).getKey());
+        assertEquals(42, top.get(1).getKey());
+        assertThat(top.get(0).getWeight(), greaterThanOrEqualTo(30_001L));
+        assertThat(heavyHitters.estimate(42), greaterThanOrEqualTo(20_001L));
+    }
+
+    @Test
+    public void forgetWeightsOutsideOfWindow() {
+        HeavyHitters heavyHitters = new HeavyHitters(clock, Duration.ofMinutes(1), 6, 64, 2, 4);
+        heavyHitters.add(1, 100);
+        clock.advance(Duration.ofSeconds(30));
+        heavyHitters.add(2, 10);
+        assertEquals(100, heavyHitters.estimate(1));
+        assertEquals(1, heavyHitters.top(1).get(0).getKey());
+
+        clock.advance(Duration.ofSeconds(40));
+        assertEquals(0, heavyHitters.estimate(1));
+        assertEquals(10, heavyHitters.estimate(2));
+        assertEquals(2, heavyHitters.top(1).get(0).getKey());
+
+        clock.advance(Duration.ofMinutes(1));
+        assertTrue(heavyHitters.top(1).isEmpty());
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.zyulyaev.jaxrswebapp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MetricsWriterTest {
+    @Test
+    public void writeSamples() {
+        StringBuilder output = new StringBuilder();
+        new MetricsWriter(output)
+                .counter("requests_total", "Requests", 3)
+                .family("operations_total", "counter", "Operations")
+                .sample("operations_total", 1, "type", "a\"b\\c\nd");
+        assertEquals("# HELP requests_total Requests\n"
+                + "# TYPE requests_total counter\n"
+                + "requests_total 3\n"
+                + "# HELP operations_total Operations\n"
+                + "# TYPE operations_total counter\n"
+                + "operations_total{type=\"a\\\"b\\\\c\\nd\"} 1\n", output.toString());
+    }
+
+    @Test
+    public void writeCumulativeHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500); // below 1us
+        histogram.record(1_500); // 1us
+        histogram.record(3_000_000); // 3ms
+        histogram.record(Long.MAX_VALUE / 2); // beyond the last bounded bucket
+        StringBuilder output = new StringBuilder();
+        new MetricsWriter(output).histogram("latency_seconds", histogram, "path", "/");
+        String written = output.toString();
+        assertThat(written, containsString("latency_seconds_bucket{path=\"/\",le=\"1.0E-6\"} 1\n"));
+        assertThat(written, containsString("latency_seconds_bucket{path=\"/\",le=\"2.0E-6\"} 2\n"));
+        assertThat(written, containsString("latency_seconds_bucket{path=\"/\",le=\"0.002048\"} 2\n"));
+        assertThat(written, containsString("latency_seconds_bucket{path=\"/\",le=\"0.004096\"} 3\n"));
+        assertThat(written, containsString("latency_seconds_bucket{path=\"/\",le=\"+Inf\"} 4\n"));
+        assertThat(written, containsString("latency_seconds_count{path=\"/\"} 4\n"));
+    }
+}
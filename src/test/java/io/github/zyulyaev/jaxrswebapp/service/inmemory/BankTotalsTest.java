@@ -0,0 +1,103 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankSummary;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BankTotalsTest {
+    /**
+     * Enough for a couple of thousands of epochs
+     */
+    private static final int TRANSACTIONS_COUNT = 2_000_000;
+    private static final int WRITERS_COUNT = 4;
+
+    @Test
+    public void summarizeConsistentlyWhileCommitting() throws InterruptedException {
+        AtomicInteger transactionIdSequence = new AtomicInteger();
+        BankTotals totals = new BankTotals(0, transactionIdSequence);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS_COUNT; i++) {
+            // transaction with id n deposits n units
+            writers.add(new Thread(() -> {
+                for (int j = 0; j < TRANSACTIONS_COUNT / WRITERS_COUNT; j++) {
+                    int transactionId = transactionIdSequence.getAndIncrement();
+                    totals.transactionCommitted(transactionId, transactionId, 0);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        int previousLimit = 0;
+        while (writers.stream().anyMatch(Thread::isAlive)) {
+            BankSummary summary = totals.summarizeConsistently();
+            int limit = summary.getTransactionIdLimit();
+            assertTrue(limit >= previousLimit, limit + " < " + previousLimit);
+            assertEquals(limit, summary.getTransactionsCount());
+            assertEquals(BigDecimal.valueOf((long) limit * (limit - 1) / 2), summary.getTotalDeposits());
+            assertEquals(summary.getTotalDeposits(), summary.getTotalMoney());
+            previousLimit = limit;
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        BankSummary summary = totals.summarizeConsistently();
+        assertEquals(Integer.valueOf(TRANSACTIONS_COUNT), summary.getTransactionIdLimit());
+        assertEquals(BigDecimal.valueOf((long) TRANSACTIONS_COUNT * (TRANSACTIONS_COUNT - 1) / 2),
+                summary.getTotalDeposits());
+        BankSummary currentSummary = totals.summarize();
+        assertNull(currentSummary.getTransactionIdLimit());
+        assertEquals(TRANSACTIONS_COUNT, currentSummary.getTransactionsCount());
+        assertEquals(summary.getTotalDeposits(), currentSummary.getTotalDeposits());
+    }
+
+    @Test
+    public void summarizeWithAbortedTransactions() {
+        AtomicInteger transactionIdSequence = new AtomicInteger();
+        BankTotals totals = new BankTotals(0, transactionIdSequence);
+        while (transactionIdSequence.get() < 3000) {
+            int transactionId = transactionIdSequence.getAndIncrement();
+            if (transactionId % 1000 == 1) {
+                totals.transactionAborted(transactionId);
+            } else {
+                totals.transactionCommitted(transactionId, 1, 0);
+            }
+        }
+        BankSummary summary = totals.summarizeConsistently();
+        assertEquals(Integer.valueOf(3000), summary.getTransactionIdLimit());
+        assertEquals(2997, summary.getTransactionsCount());
+        assertEquals(BigDecimal.valueOf(2997), summary.getTotalDeposits());
+        assertEquals(2997, totals.summarize().getTransactionsCount());
+    }
+
+    @Test
+    public void summarizeRestored() {
+        AtomicInteger transactionIdSequence = new AtomicInteger();
+        BankTotals totals = new BankTotals(2, transactionIdSequence);
+        totals.accountRestored(1000);
+        totals.accountRestored(0);
+        totals.transactionRestored(0, 1500, 0, true);
+        totals.transactionRestored(1, 0, 500, true);
+        // transaction 2 is lost, 3 is a transfer
+        totals.transactionRestored(3, 0, 0, true);
+        totals.transactionRestored(4, 200, 0, false);
+        transactionIdSequence.set(5);
+        assertEquals(Integer.valueOf(5), totals.summarizeConsistently().getTransactionIdLimit());
+
+        while (transactionIdSequence.get() < 3000) {
+            totals.transactionCommitted(transactionIdSequence.getAndIncrement(), 0, 1);
+        }
+        totals.accountsCreated(3);
+        BankSummary summary = totals.summarizeConsistently();
+        assertEquals(Integer.valueOf(3000), summary.getTransactionIdLimit());
+        assertEquals(5, summary.getAccountsCount());
+        assertEquals(4 + 2995, summary.getTransactionsCount());
+        assertEquals(new BigDecimal("17.00"), summary.getTotalDeposits());
+        assertEquals(new BigDecimal("34.95"), summary.getTotalWithdrawals());
+        assertEquals(new BigDecimal("-17.95"), summary.getTotalMoney());
+    }
+}
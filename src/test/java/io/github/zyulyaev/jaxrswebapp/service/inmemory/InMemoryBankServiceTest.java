@@ -0,0 +1,100 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankSummary;
+import io.github.zyulyaev.jaxrswebapp.service.BatchResult;
+import io.github.zyulyaev.jaxrswebapp.service.OverdraftException;
+import io.github.zyulyaev.jaxrswebapp.service.Transaction;
+import io.github.zyulyaev.jaxrswebapp.service.TransactionRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemoryBankServiceTest {
+    private final PausingClock clock = new PausingClock();
+    private final InMemoryBankService service = new InMemoryBankService(clock);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+        service.close();
+    }
+
+    @Test
+    public void lookupAccountTransactionsWithOutOfOrderCommit() throws Exception {
+        int accountId = service.createAccount("John Doe").getAccountId();
+        CountDownLatch resume = clock.pauseNext();
+        Future<Transaction> first = executor.submit(() -> service.deposit(accountId, BigDecimal.ONE));
+        clock.awaitPaused();
+        Transaction second = service.deposit(accountId, BigDecimal.TEN);
+        assertEquals(1, second.getTransactionId());
+        // the page must not pass the id of the first deposit, which is still being committed
+        assertTrue(service.lookupAccountTransactions(accountId, -1, 10).isEmpty());
+        resume.countDown();
+        assertEquals(0, first.get().getTransactionId());
+        assertEquals(Arrays.asList(0, 1), transactionIds(service.lookupAccountTransactions(accountId, -1, 10)));
+    }
+
+    @Test
+    public void abortFailedCommit() throws Exception {
+        int accountId = service.createAccount("John Doe").getAccountId();
+        service.deposit(accountId, BigDecimal.ONE);
+        // out of the range of transaction times the store supports
+        clock.set(Instant.parse("3000-01-01T00:00:00Z"));
+        assertThrows(IllegalArgumentException.class, () -> service.deposit(accountId, BigDecimal.TEN));
+        clock.set(Instant.parse("2019-01-01T00:00:00Z"));
+        assertEquals(2, service.deposit(accountId, BigDecimal.ONE).getTransactionId());
+        assertEquals(Arrays.asList(0, 2), transactionIds(service.lookupTransactions(-1, 10)));
+        assertEquals(Arrays.asList(0, 2), transactionIds(service.lookupAccountTransactions(accountId, -1, 10)));
+        BankSummary summary = service.summarizeConsistently();
+        assertEquals(Integer.valueOf(3), summary.getTransactionIdLimit());
+        assertEquals(2, summary.getTransactionsCount());
+    }
+
+    @Test
+    public void groupBatchByAccount() throws Exception {
+        int johnDoeId = service.createAccount("John Doe").getAccountId();
+        int janeDoeId = service.createAccount("Jane Doe").getAccountId();
+        List<BatchResult> results = service.applyBatch(Arrays.asList(
+                new TransactionRequest(null, johnDoeId, new BigDecimal("10")),
+                new TransactionRequest(null, janeDoeId, new BigDecimal("5")),
+                new TransactionRequest(johnDoeId, null, new BigDecimal("3")),
+                new TransactionRequest(janeDoeId, null, new BigDecimal("10")),
+                // needs both deposits of John Doe applied first
+                new TransactionRequest(johnDoeId, janeDoeId, new BigDecimal("7")),
+                new TransactionRequest(null, johnDoeId, new BigDecimal("1")),
+                new TransactionRequest(janeDoeId, null, new BigDecimal("12"))));
+        assertTrue(results.get(3).getOperationFailure() instanceof OverdraftException);
+        List<Integer> johnDoeIds = new ArrayList<>();
+        for (int index : new int[]{0, 2, 4, 5}) {
+            johnDoeIds.add(results.get(index).getTransaction().getTransactionId());
+        }
+        // deposit and withdrawal of the same group get consecutive ids
+        assertEquals(johnDoeIds.get(0) + 1, (int) johnDoeIds.get(1));
+        assertEquals(3, (int) johnDoeIds.get(2));
+        johnDoeIds.sort(null);
+        assertEquals(johnDoeIds, transactionIds(service.lookupAccountTransactions(johnDoeId, -1, 10)));
+        assertEquals(6, service.lookupTransactions(-1, 10).size());
+        assertEquals(0, new BigDecimal("1").compareTo(service.lookupAccount(johnDoeId).getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(service.lookupAccount(janeDoeId).getBalance()));
+        assertEquals(6, service.summarizeConsistently().getTransactionsCount());
+    }
+
+    static List<Integer> transactionIds(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getTransactionId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link Clock} which does not move until set and can block the thread reading it, so that a commit is paused after
+ * its id is assigned
+ */
+public class PausingClock extends Clock {
+    private final AtomicReference<CountDownLatch> pause = new AtomicReference<>();
+    private final CountDownLatch paused = new CountDownLatch(1);
+    private volatile Instant now = Instant.parse("2019-01-01T00:00:00Z");
+
+    public void set(Instant now) {
+        this.now = now;
+    }
+
+    /**
+     * Makes the next reading block until returned latch is counted down.
+     */
+    public CountDownLatch pauseNext() {
+        CountDownLatch resume = new CountDownLatch(1);
+        pause.set(resume);
+        return resume;
+    }
+
+    public void awaitPaused() throws InterruptedException {
+        paused.await();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+        CountDownLatch resume = pause.getAndSet(null);
+        if (resume != null) {
+            paused.countDown();
+            try {
+                resume.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return now;
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankSummary;
+import io.github.zyulyaev.jaxrswebapp.service.BatchResult;
+import io.github.zyulyaev.jaxrswebapp.service.OverdraftException;
+import io.github.zyulyaev.jaxrswebapp.service.Transaction;
+import io.github.zyulyaev.jaxrswebapp.service.TransactionRequest;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.github.zyulyaev.jaxrswebapp.service.inmemory.InMemoryBankServiceTest.transactionIds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedBankServiceTest {
+    private static final int SHARDS_COUNT = 2;
+
+    private final PausingClock clock = new PausingClock();
+    private final AuditLog auditLog = new AuditLog(AuditLog.DEFAULT_CAPACITY, AuditLog.OverflowPolicy.BLOCK);
+    private final ShardedBankService service = new ShardedBankService(clock, 2, auditLog, SHARDS_COUNT);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final int[] accountIds = new int[SHARDS_COUNT];
+
+    @BeforeEach
+    public void setup() {
+        // shards are chosen randomly, create accounts until every shard has one
+        Arrays.fill(accountIds, -1);
+        while (Arrays.stream(accountIds).anyMatch(accountId -> accountId < 0)) {
+            int accountId = service.createAccount("John Doe").getAccountId();
+            accountIds[accountId % SHARDS_COUNT] = accountId;
+        }
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+        auditLog.close();
+    }
+
+    @Test
+    public void lookupAccountTransactionsWithOutOfOrderCommit() throws Exception {
+        int johnDoeId = accountIds[0];
+        int janeDoeId = accountIds[1];
+        CountDownLatch resume = clock.pauseNext();
+        Future<Transaction> first = executor.submit(() -> service.deposit(johnDoeId, BigDecimal.ONE));
+        clock.awaitPaused();
+        assertEquals(1, service.deposit(janeDoeId, BigDecimal.TEN).getTransactionId());
+        assertEquals(3, service.transfer(janeDoeId, johnDoeId, BigDecimal.ONE).getTransactionId());
+        // the page must not pass the id of the first deposit, which is still being committed
+        assertTrue(service.lookupAccountTransactions(johnDoeId, -1, 10).isEmpty());
+        resume.countDown();
+        assertEquals(0, first.get().getTransactionId());
+        assertEquals(Arrays.asList(0, 3), transactionIds(service.lookupAccountTransactions(johnDoeId, -1, 10)));
+    }
+
+    @Test
+    public void lookupTransactionsWithOutOfOrderCommit() throws Exception {
+        CountDownLatch resume = clock.pauseNext();
+        Future<Transaction> first = executor.submit(() -> service.deposit(accountIds[0], BigDecimal.ONE));
+        clock.awaitPaused();
+        assertEquals(1, service.deposit(accountIds[1], BigDecimal.ONE).getTransactionId());
+        assertTrue(service.lookupTransactions(-1, 10).isEmpty());
+        resume.countDown();
+        assertEquals(0, first.get().getTransactionId());
+        assertEquals(Arrays.asList(0, 1), transactionIds(service.lookupTransactions(-1, 10)));
+        assertEquals(2, service.deposit(accountIds[0], BigDecimal.ONE).getTransactionId());
+    }
+
+    @Test
+    public void lookupAccountTransactionsWithIdleShard() throws Exception {
+        int janeDoeId = accountIds[1];
+        for (int i = 0; i < 3; i++) {
+            service.deposit(janeDoeId, BigDecimal.ONE);
+        }
+        // the other shard has not assigned id 0 and 2, it must not hold the page back
+        assertEquals(Arrays.asList(1, 3, 5), transactionIds(service.lookupAccountTransactions(janeDoeId, -1, 10)));
+        service.deposit(accountIds[0], BigDecimal.ONE);
+        assertEquals(6, service.lookupTransactions(5, 10).get(0).getTransactionId());
+    }
+
+    @Test
+    public void summarizeConsistentlyWithOutOfOrderCommit() throws Exception {
+        int johnDoeId = accountIds[0];
+        int janeDoeId = accountIds[1];
+        CountDownLatch resume = clock.pauseNext();
+        Future<Transaction> first = executor.submit(() -> service.deposit(johnDoeId, BigDecimal.ONE));
+        clock.awaitPaused();
+        // more than an epoch, so that the other shard has its totals folded past the limit
+        int lastId = -1;
+        for (int i = 0; i < 1100; i++) {
+            lastId = service.deposit(janeDoeId, BigDecimal.ONE).getTransactionId();
+        }
+        BankSummary summary = service.summarizeConsistently();
+        assertEquals(Integer.valueOf(0), summary.getTransactionIdLimit());
+        assertEquals(0, summary.getTransactionsCount());
+        assertEquals(0, BigDecimal.ZERO.compareTo(summary.getTotalMoney()));
+        assertEquals(1100, service.summarize().getTransactionsCount());
+        resume.countDown();
+        first.get();
+        summary = service.summarizeConsistently();
+        assertTrue(summary.getTransactionIdLimit() > lastId, summary.toString());
+        assertEquals(1101, summary.getTransactionsCount());
+        assertEquals(0, new BigDecimal("1101").compareTo(summary.getTotalDeposits()));
+    }
+
+    @Test
+    public void groupBatchByAccount() throws Exception {
+        int johnDoeId = accountIds[0];
+        int janeDoeId = accountIds[1];
+        List<BatchResult> results = service.applyBatch(Arrays.asList(
+                new TransactionRequest(null, johnDoeId, BigDecimal.TEN),
+                new TransactionRequest(null, janeDoeId, BigDecimal.TEN),
+                new TransactionRequest(johnDoeId, null, new BigDecimal("11")),
+                new TransactionRequest(johnDoeId, null, BigDecimal.ONE),
+                new TransactionRequest(null, johnDoeId, BigDecimal.ONE)));
+        assertTrue(results.get(2).getOperationFailure() instanceof OverdraftException);
+        // the group gets consecutive local ids of the shard, the other shard may be caught up before its group
+        int firstId = results.get(0).getTransaction().getTransactionId();
+        assertEquals(Arrays.asList(firstId, firstId + 2, firstId + 4),
+                transactionIds(service.lookupAccountTransactions(johnDoeId, -1, 10)));
+        assertEquals(firstId + 4, results.get(4).getTransaction().getTransactionId());
+        int janeDoeDepositId = results.get(1).getTransaction().getTransactionId();
+        assertEquals(Arrays.asList(janeDoeDepositId),
+                transactionIds(service.lookupAccountTransactions(janeDoeId, -1, 10)));
+        assertEquals(4, service.lookupTransactions(-1, 10).size());
+        assertEquals(0, BigDecimal.TEN.compareTo(service.lookupAccount(johnDoeId).getBalance()));
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionHistoryTest {
+    /**
+     * More than a few chunks of max size
+     */
+    private static final int TRANSACTIONS_COUNT = 100_000;
+
+    @Test
+    public void pageThroughHistory() {
+        TransactionHistory history = new TransactionHistory();
+        for (int transactionId = 0; transactionId < 10; transactionId++) {
+            history.append(transactionId * 2);
+        }
+        assertArrayEquals(new int[]{0, 2, 4}, history.get(-1, 5, 100));
+        assertArrayEquals(new int[]{6, 8}, history.get(4, 20, 2));
+        assertArrayEquals(new int[]{10, 12, 14, 16, 18}, history.get(8, 20, 100));
+        // an older limit still trims ids folded with a newer one
+        assertArrayEquals(new int[]{2, 4}, history.get(0, 5, 100));
+        assertArrayEquals(new int[0], history.get(18, 20, 100));
+    }
+
+    @Test
+    public void mergeAppendedIdsWithRestored() {
+        TransactionHistory history = new TransactionHistory();
+        history.restore(new int[]{1, 5, 9});
+        // ids restored one by one may be lower than ones restored in bulk
+        history.append(3);
+        history.append(11);
+        history.append(7);
+        assertArrayEquals(new int[]{1, 3, 5, 7, 9}, history.get(-1, 11, 100));
+        history.append(12);
+        assertArrayEquals(new int[]{9, 11, 12}, history.get(7, 13, 100));
+    }
+
+    @Test
+    public void readWhileAppendingConcurrently() throws InterruptedException {
+        TransactionHistory history = new TransactionHistory();
+        AtomicInteger sequence = new AtomicInteger();
+        AtomicIntegerArray finished = new AtomicIntegerArray(TRANSACTIONS_COUNT);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            writers.add(new Thread(() -> {
+                int transactionId;
+                while ((transactionId = sequence.getAndIncrement()) < TRANSACTIONS_COUNT) {
+                    if (transactionId % 3 != 0) { // others involve other accounts
+                        history.append(transactionId);
+                    }
+                    finished.set(transactionId, 1);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        int limit = 0;
+        while (limit < TRANSACTIONS_COUNT) {
+            while (limit < TRANSACTIONS_COUNT && finished.get(limit) == 1) {
+                limit++;
+            }
+            assertArrayEquals(expectedIds(limit), history.get(-1, limit, Integer.MAX_VALUE), "limit " + limit);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertArrayEquals(expectedIds(TRANSACTIONS_COUNT), history.get(-1, TRANSACTIONS_COUNT, Integer.MAX_VALUE));
+    }
+
+    private static int[] expectedIds(int limit) {
+        int[] ids = new int[limit - (limit + 2) / 3];
+        int count = 0;
+        for (int transactionId = 0; transactionId < limit; transactionId++) {
+            if (transactionId % 3 != 0) {
+                ids[count++] = transactionId;
+            }
+        }
+        assertEquals(ids.length, count);
+        return ids;
+    }
+}
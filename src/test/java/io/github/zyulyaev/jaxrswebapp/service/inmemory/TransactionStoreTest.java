@@ -0,0 +1,77 @@
+package io.github.zyulyaev.jaxrswebapp.service.inmemory;
+
+import io.github.zyulyaev.jaxrswebapp.service.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionStoreTest {
+    /**
+     * More than a segment, so that the first one has all its records written
+     */
+    private static final int RECORDS_COUNT = 100_000;
+    private static final Instant TIME = Instant.parse("2019-01-01T12:34:56.123456789Z");
+
+    @Test
+    public void readWrittenRecords() {
+        for (TransactionStorage storage : TransactionStorage.values()) {
+            TransactionStore store = new TransactionStore(storage, 2, 3, 1);
+            for (int index = 0; index < RECORDS_COUNT; index++) {
+                if (index % 10 == 9) {
+                    store.skip(index);
+                } else {
+                    store.put(index, TIME.plusSeconds(index), index % 2 == 0 ? TransactionStore.NO_ACCOUNT : index,
+                            index + 1, index + 100);
+                }
+            }
+            for (int index = 0; index < RECORDS_COUNT; index++) {
+                Transaction transaction = store.get(index);
+                if (index % 10 == 9) {
+                    assertNull(transaction, storage + " " + index);
+                    assertTrue(store.isSkipped(index), storage + " " + index);
+                } else {
+                    assertEquals(index * 3 + 1, transaction.getTransactionId(), storage + " " + index);
+                    assertEquals(TIME.plusSeconds(index), transaction.getTransactionTime(), storage + " " + index);
+                    assertEquals(index % 2 == 0 ? null : index, transaction.getSourceAccountId(),
+                            storage + " " + index);
+                    assertEquals(Integer.valueOf(index + 1), transaction.getTargetAccountId(), storage + " " + index);
+                    assertEquals(BigDecimal.valueOf(index + 100, 2), transaction.getAmount(), storage + " " + index);
+                    assertFalse(store.isSkipped(index), storage + " " + index);
+                }
+            }
+            assertNull(store.get(RECORDS_COUNT));
+            assertNull(store.get(Integer.MAX_VALUE));
+            assertNull(store.get(-1));
+        }
+    }
+
+    @Test
+    public void appendConcurrently() throws InterruptedException {
+        for (TransactionStorage storage : TransactionStorage.values()) {
+            TransactionStore store = new TransactionStore(storage, 2, 1, 0);
+            AtomicInteger sequence = new AtomicInteger();
+            List<Thread> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                writers.add(new Thread(() -> {
+                    int index;
+                    while ((index = sequence.getAndIncrement()) < RECORDS_COUNT) {
+                        store.put(index, TIME, TransactionStore.NO_ACCOUNT, index, 1);
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            for (int index = 0; index < RECORDS_COUNT; index++) {
+                assertEquals(Integer.valueOf(index), store.get(index).getTargetAccountId(), storage + " " + index);
+            }
+        }
+    }
+}
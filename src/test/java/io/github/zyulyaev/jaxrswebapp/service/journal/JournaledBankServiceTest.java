@@ -0,0 +1,319 @@
+package io.github.zyulyaev.jaxrswebapp.service.journal;
+
+import io.github.zyulyaev.jaxrswebapp.service.BankOperationException;
+import io.github.zyulyaev.jaxrswebapp.service.OverdraftException;
+import io.github.zyulyaev.jaxrswebapp.service.RecoverableBankService;
+import io.github.zyulyaev.jaxrswebapp.service.Transaction;
+import io.github.zyulyaev.jaxrswebapp.service.audit.AuditLog;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.InMemoryBankService;
+import io.github.zyulyaev.jaxrswebapp.service.inmemory.ShardedBankService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournaledBankServiceTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    private final Clock clock = Clock.fixed(Instant.parse("2019-01-01T00:00:00Z"), ZoneOffset.UTC);
+    private final List<InMemoryBankService> delegates = new ArrayList<>();
+    private final AuditLog auditLog = new AuditLog(AuditLog.DEFAULT_CAPACITY, AuditLog.OverflowPolicy.DROP);
+    private Path directory;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        delegates.forEach(InMemoryBankService::close);
+        auditLog.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private JournaledBankService open(Journal.Durability durability) throws IOException {
+        InMemoryBankService delegate = new InMemoryBankService(clock);
+        delegates.add(delegate);
+        return JournaledBankService.open(delegate, directory, SEGMENT_SIZE, durability);
+    }
+
+    private JournaledBankService open(RecoverableBankService delegate) throws IOException {
+        return JournaledBankService.open(delegate, directory, SEGMENT_SIZE, Journal.Durability.ASYNC);
+    }
+
+    @Test
+    public void restoreAfterRestart() throws Exception {
+        int johnDoeId;
+        int janeDoeId;
+        Transaction transfer;
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            johnDoeId = service.createAccount("John Doe").getAccountId();
+            janeDoeId = service.createAccount("Jane Doe").getAccountId();
+            service.deposit(johnDoeId, new BigDecimal("100.00"));
+            transfer = service.transfer(johnDoeId, janeDoeId, new BigDecimal("75.50"));
+            service.withdraw(janeDoeId, new BigDecimal("50.50"));
+            assertThrows(OverdraftException.class, () -> service.withdraw(janeDoeId, new BigDecimal("50.00")));
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertEquals("Jane Doe", service.lookupAccount(janeDoeId).getOwner());
+            assertThat(service.lookupAccount(johnDoeId).getBalance(), comparesEqualTo(new BigDecimal("24.50")));
+            assertThat(service.lookupAccount(janeDoeId).getBalance(), comparesEqualTo(new BigDecimal("25.00")));
+            Transaction restored = service.lookupTransaction(transfer.getTransactionId());
+            assertEquals(transfer.getTransactionTime(), restored.getTransactionTime());
+            assertEquals(transfer.getSourceAccountId(), restored.getSourceAccountId());
+            assertEquals(transfer.getTargetAccountId(), restored.getTargetAccountId());
+            assertThat(restored.getAmount(), comparesEqualTo(transfer.getAmount()));
+            assertEquals(3, service.lookupTransactions(-1, 10).size());
+            assertEquals(janeDoeId + 1, service.createAccount("Richard Roe").getAccountId());
+            assertEquals(3, service.deposit(johnDoeId, BigDecimal.ONE).getTransactionId());
+        }
+    }
+
+    @Test
+    public void keepJournalIdAfterRestart() throws Exception {
+        String journalId;
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            journalId = service.getJournalId();
+            service.createAccount("John Doe");
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertEquals(journalId, service.getJournalId());
+        }
+        // a journal created anew reuses transaction ids, so it must get another id
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertNotEquals(journalId, service.getJournalId());
+        }
+    }
+
+    @Test
+    public void restoreFromSeveralSegments() throws Exception {
+        try (JournaledBankService service = open(Journal.Durability.ASYNC)) {
+            int accountId = service.createAccount("John Doe").getAccountId();
+            for (int i = 0; i < 1000; i++) {
+                service.deposit(accountId, new BigDecimal("0.01"));
+            }
+        }
+        assertTrue(Files.exists(directory.resolve("journal-00000005.log")));
+        try (JournaledBankService service = open(Journal.Durability.ASYNC)) {
+            assertThat(service.lookupAccount(0).getBalance(), comparesEqualTo(new BigDecimal("10.00")));
+            assertEquals(1000, service.lookupAccountTransactions(0, -1, 2000).size());
+        }
+    }
+
+    @Test
+    public void restoreFromSnapshot() throws Exception {
+        try (JournaledBankService service = open(Journal.Durability.ASYNC)) {
+            int johnDoeId = service.createAccount("John Doe").getAccountId();
+            int janeDoeId = service.createAccount(null).getAccountId();
+            for (int i = 0; i < 500; i++) {
+                service.deposit(johnDoeId, new BigDecimal("0.02"));
+                service.transfer(johnDoeId, janeDoeId, new BigDecimal("0.01"));
+            }
+            service.snapshot();
+            assertFalse(Files.exists(directory.resolve("journal-00000000.log")));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(1, files.filter(path -> path.toString().endsWith(".bin")).count());
+            }
+            int richardRoeId = service.createAccount("Richard Roe").getAccountId();
+            service.transfer(janeDoeId, richardRoeId, new BigDecimal("1.00"));
+            service.withdraw(johnDoeId, new BigDecimal("1.00"));
+        }
+        try (JournaledBankService service = open(Journal.Durability.ASYNC)) {
+            assertNull(service.lookupAccount(1).getOwner());
+            assertThat(service.lookupAccount(0).getBalance(), comparesEqualTo(new BigDecimal("4.00")));
+            assertThat(service.lookupAccount(1).getBalance(), comparesEqualTo(new BigDecimal("4.00")));
+            assertThat(service.lookupAccount(2).getBalance(), comparesEqualTo(new BigDecimal("1.00")));
+            Transaction transfer = service.lookupTransaction(1);
+            assertEquals(Integer.valueOf(0), transfer.getSourceAccountId());
+            assertEquals(Integer.valueOf(1), transfer.getTargetAccountId());
+            assertThat(transfer.getAmount(), comparesEqualTo(new BigDecimal("0.01")));
+            assertEquals(clock.instant(), transfer.getTransactionTime());
+            assertEquals(1001, service.lookupAccountTransactions(0, -1, 2000).size());
+            assertEquals(501, service.lookupAccountTransactions(1, -1, 2000).size());
+            assertEquals(1002, service.deposit(2, BigDecimal.ONE).getTransactionId());
+        }
+    }
+
+    @Test
+    public void restoreFromSnapshotOfSnapshot() throws Exception {
+        try (JournaledBankService service = open(new InMemoryBankService(clock, 0, auditLog))) {
+            int johnDoeId = service.createAccount("John Doe").getAccountId();
+            for (int i = 0; i < 300; i++) {
+                service.deposit(johnDoeId, BigDecimal.ONE);
+            }
+            service.snapshot();
+        }
+        // amounts with more fractional digits rescale the ones copied from the previous snapshot
+        try (JournaledBankService service = open(Journal.Durability.ASYNC)) {
+            int janeDoeId = service.createAccount("Jane Doe").getAccountId();
+            for (int i = 0; i < 300; i++) {
+                service.transfer(0, janeDoeId, new BigDecimal("0.25"));
+            }
+            service.snapshot();
+            service.withdraw(janeDoeId, new BigDecimal("5.00"));
+        }
+        try (JournaledBankService service = open(Journal.Durability.ASYNC)) {
+            assertThat(service.lookupAccount(0).getBalance(), comparesEqualTo(new BigDecimal("225.00")));
+            assertThat(service.lookupAccount(1).getBalance(), comparesEqualTo(new BigDecimal("70.00")));
+            assertThat(service.lookupTransaction(0).getAmount(), comparesEqualTo(BigDecimal.ONE));
+            assertThat(service.lookupTransaction(300).getAmount(), comparesEqualTo(new BigDecimal("0.25")));
+            assertEquals(600, service.lookupAccountTransactions(0, -1, 1000).size());
+            assertEquals(301, service.lookupAccountTransactions(1, -1, 1000).size());
+            assertEquals(601, service.deposit(1, BigDecimal.ONE).getTransactionId());
+        }
+    }
+
+    @Test
+    public void restoreShardedFromSnapshot() throws Exception {
+        List<Integer> accountIds = new ArrayList<>();
+        try (JournaledBankService service = open(new ShardedBankService(clock, 2, auditLog, 4))) {
+            for (int i = 0; i < 8; i++) {
+                accountIds.add(service.createAccount("Owner #" + i).getAccountId());
+                service.deposit(accountIds.get(i), new BigDecimal("100.00"));
+            }
+            // ids of transfers are assigned by shards of their sources, so ids of an account are not ascending
+            for (int i = 0; i < 400; i++) {
+                service.transfer(accountIds.get(i % 8), accountIds.get((i + 1) % 8), new BigDecimal("0.01"));
+                if (i == 200) {
+                    service.snapshot();
+                }
+            }
+        }
+        try (JournaledBankService service = open(new ShardedBankService(clock, 2, auditLog, 4))) {
+            for (int accountId : accountIds) {
+                assertThat(service.lookupAccount(accountId).getBalance(), comparesEqualTo(new BigDecimal("100.00")));
+                List<Transaction> transactions = service.lookupAccountTransactions(accountId, -1, 1000);
+                assertEquals(101, transactions.size());
+                for (int i = 1; i < transactions.size(); i++) {
+                    assertTrue(transactions.get(i - 1).getTransactionId() < transactions.get(i).getTransactionId());
+                }
+            }
+            assertEquals(408, service.lookupTransactions(-1, Integer.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    public void recoverFromTruncatedTail() throws Exception {
+        int accountId;
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            accountId = service.createAccount("John Doe").getAccountId();
+            service.deposit(accountId, new BigDecimal("100.00"));
+            service.deposit(accountId, new BigDecimal("50.00"));
+        }
+        // tear the last record as if the process crashed in the middle of writing it
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("journal-00000000.log").toFile(), "rw")) {
+            long end = 0;
+            for (long offset = 0; offset < file.length(); offset++) {
+                file.seek(offset);
+                if (file.read() != 0) {
+                    end = offset + 1;
+                }
+            }
+            file.seek(end - 10);
+            file.write(new byte[10]);
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertThat(service.lookupAccount(accountId).getBalance(), comparesEqualTo(new BigDecimal("100.00")));
+            assertNull(service.lookupTransaction(1));
+            service.deposit(accountId, new BigDecimal("1.00"));
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertThat(service.lookupAccount(accountId).getBalance(), comparesEqualTo(new BigDecimal("101.00")));
+        }
+    }
+
+    @Test
+    public void discardRecordsAfterHole() throws Exception {
+        int accountId;
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            accountId = service.createAccount("John Doe").getAccountId();
+            service.deposit(accountId, new BigDecimal("100.00"));
+            service.deposit(accountId, new BigDecimal("50.00"));
+            service.deposit(accountId, new BigDecimal("25.00"));
+        }
+        // zero the second deposit as if its page was lost while the following one reached the disk
+        int accountRecordSize = 8 + 21 + "John Doe".length();
+        int transactionRecordSize = 8 + 34;
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("journal-00000000.log").toFile(), "rw")) {
+            file.seek(accountRecordSize + transactionRecordSize);
+            file.write(new byte[transactionRecordSize]);
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertThat(service.lookupAccount(accountId).getBalance(), comparesEqualTo(new BigDecimal("100.00")));
+            assertNull(service.lookupTransaction(2));
+            assertEquals(1, service.deposit(accountId, new BigDecimal("1.00")).getTransactionId());
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertThat(service.lookupAccount(accountId).getBalance(), comparesEqualTo(new BigDecimal("101.00")));
+            assertEquals(2, service.lookupTransactions(-1, 10).size());
+        }
+    }
+
+    @Test
+    public void failAfterJournalError() throws Exception {
+        JournaledBankService service = open(Journal.Durability.SYNC);
+        int accountId = service.createAccount("John Doe").getAccountId();
+        service.close();
+        assertThrows(IllegalStateException.class, () -> service.deposit(accountId, new BigDecimal("100.00")));
+        BigDecimal balance = service.lookupAccount(accountId).getBalance();
+        assertThrows(IllegalStateException.class, () -> service.deposit(accountId, new BigDecimal("50.00")));
+        assertThrows(IllegalStateException.class, () -> service.createAccount("Jane Doe"));
+        assertThat(service.lookupAccount(accountId).getBalance(), comparesEqualTo(balance));
+        assertNull(service.lookupAccount(accountId + 1));
+    }
+
+    @Test
+    public void concurrentOperationsAreJournaledInOrder() throws Exception {
+        int threadsCount = 4;
+        int operationsCount = 500;
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            int johnDoeId = service.createAccount("John Doe").getAccountId();
+            int janeDoeId = service.createAccount("Jane Doe").getAccountId();
+            Thread[] threads = new Thread[threadsCount];
+            for (int i = 0; i < threadsCount; i++) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < operationsCount; j++) {
+                        try {
+                            service.deposit(johnDoeId, BigDecimal.ONE);
+                            service.transfer(johnDoeId, janeDoeId, BigDecimal.ONE);
+                            service.withdraw(janeDoeId, BigDecimal.ONE);
+                        } catch (BankOperationException ex) {
+                            throw new AssertionError(ex);
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        try (JournaledBankService service = open(Journal.Durability.SYNC)) {
+            assertThat(service.lookupAccount(0).getBalance(), comparesEqualTo(BigDecimal.ZERO));
+            assertThat(service.lookupAccount(1).getBalance(), comparesEqualTo(BigDecimal.ZERO));
+            assertEquals(3 * threadsCount * operationsCount, service.lookupTransactions(-1, Integer.MAX_VALUE).size());
+        }
+    }
+}
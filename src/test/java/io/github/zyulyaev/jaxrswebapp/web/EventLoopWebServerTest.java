@@ -0,0 +1,12 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.BankApplication;
+
+import java.time.Clock;
+
+public class EventLoopWebServerTest extends WebServerTest {
+    @Override
+    protected BankApplication createApplication(Clock clock) {
+        return new BankApplication(clock, RequestExecutor.Mode.EVENT_LOOP);
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RequestExecutorTest {
+    /**
+     * Creates response which completes the future once resumed
+     */
+    private static AsyncResponse asyncResponse(CompletableFuture<Object> resumed) {
+        return (AsyncResponse) Proxy.newProxyInstance(AsyncResponse.class.getClassLoader(),
+                new Class<?>[]{AsyncResponse.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("resume")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return resumed.complete(args[0]);
+                });
+    }
+
+    @Test
+    public void rejectRequestsAboveAdmissionBound() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (RequestExecutor executor = RequestExecutor.create(RequestExecutor.Mode.POOL, 4, 2)) {
+            CompletableFuture<Object> first = new CompletableFuture<>();
+            CompletableFuture<Object> second = new CompletableFuture<>();
+            CompletableFuture<Object> rejected = new CompletableFuture<>();
+            for (CompletableFuture<Object> resumed : Arrays.asList(first, second, rejected)) {
+                executor.submit(asyncResponse(resumed), () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Response.ok().build();
+                });
+            }
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                    ((Response) rejected.get(1, TimeUnit.SECONDS)).getStatus());
+            release.countDown();
+            assertEquals(Response.Status.OK.getStatusCode(), ((Response) first.get(1, TimeUnit.SECONDS)).getStatus());
+            assertEquals(Response.Status.OK.getStatusCode(), ((Response) second.get(1, TimeUnit.SECONDS)).getStatus());
+
+            CompletableFuture<Object> admitted = new CompletableFuture<>();
+            executor.submit(asyncResponse(admitted), () -> Response.noContent().build());
+            assertEquals(Response.Status.NO_CONTENT.getStatusCode(),
+                    ((Response) admitted.get(1, TimeUnit.SECONDS)).getStatus());
+        }
+    }
+
+    @Test
+    public void resumeWithHandlerFailure() throws Exception {
+        try (RequestExecutor executor = RequestExecutor.create(RequestExecutor.Mode.EVENT_LOOP, 1, 1)) {
+            CompletableFuture<Object> resumed = new CompletableFuture<>();
+            IllegalStateException failure = new IllegalStateException();
+            executor.submit(42, asyncResponse(resumed), () -> {
+                throw failure;
+            });
+            assertEquals(failure, resumed.get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void resumeWithHandlerError() throws Exception {
+        // the permit is released after the response is resumed, the follow-up request must not race with it
+        try (RequestExecutor executor = RequestExecutor.create(RequestExecutor.Mode.POOL, 1, 2)) {
+            CompletableFuture<Object> resumed = new CompletableFuture<>();
+            executor.submit(asyncResponse(resumed), () -> {
+                throw new StackOverflowError();
+            });
+            assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+                    ((Response) resumed.get(1, TimeUnit.SECONDS)).getStatus());
+
+            CompletableFuture<Object> admitted = new CompletableFuture<>();
+            executor.submit(asyncResponse(admitted), () -> Response.ok().build());
+            assertEquals(Response.Status.OK.getStatusCode(), ((Response) admitted.get(1, TimeUnit.SECONDS)).getStatus());
+        }
+    }
+
+    @Test
+    public void fallBackToPoolWithoutVirtualThreads() throws Exception {
+        try (RequestExecutor executor = RequestExecutor.create(RequestExecutor.Mode.VIRTUAL, 1, 1)) {
+            CompletableFuture<Object> resumed = new CompletableFuture<>();
+            executor.submit(asyncResponse(resumed), () -> Response.ok().build());
+            assertEquals(Response.Status.OK.getStatusCode(), ((Response) resumed.get(1, TimeUnit.SECONDS)).getStatus());
+        }
+    }
+}
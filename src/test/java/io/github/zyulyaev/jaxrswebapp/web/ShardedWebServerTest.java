@@ -0,0 +1,12 @@
+package io.github.zyulyaev.jaxrswebapp.web;
+
+import io.github.zyulyaev.jaxrswebapp.BankApplication;
+
+import java.time.Clock;
+
+public class ShardedWebServerTest extends WebServerTest {
+    @Override
+    protected BankApplication createApplication(Clock clock) {
+        return new BankApplication(clock, BankApplication.Engine.SHARDED, RequestExecutor.Mode.DIRECT);
+    }
+}
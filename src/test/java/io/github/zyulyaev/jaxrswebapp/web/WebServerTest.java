@@ -1,8 +1,14 @@
 package io.github.zyulyaev.jaxrswebapp.web;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import io.github.zyulyaev.jaxrswebapp.BankApplication;
 import org.hamcrest.Matcher;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
@@ -17,9 +23,14 @@ import org.junit.jupiter.params.provider.ValueSource;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
@@ -29,6 +40,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class WebServerTest {
     private static final int UNPROCESSABLE_ENTITY = 422;
@@ -39,10 +51,12 @@ public class WebServerTest {
     private final UndertowJaxrsServer httpServer = new UndertowJaxrsServer();
     private final Client httpClient = ResteasyClientBuilder.newClient();
     private final WebTarget target = httpClient.target(TestPortProvider.generateBaseUrl());
+    private BankApplication application;
 
     @BeforeEach
     public void setup() {
-        httpServer.deploy(new BankApplication(clock));
+        application = createApplication(clock);
+        httpServer.deploy(application);
         httpServer.start();
     }
 
@@ -50,6 +64,11 @@ public class WebServerTest {
     public void teardown() {
         httpServer.stop();
         httpClient.close();
+        application.close();
+    }
+
+    protected BankApplication createApplication(Clock clock) {
+        return new BankApplication(clock);
     }
 
     @Test
@@ -102,6 +121,23 @@ public class WebServerTest {
         }
     }
 
+    @Test
+    public void lookupAccountConditionally() {
+        int accountId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        Response response = lookupAccount(accountId);
+        EntityTag entityTag = response.getEntityTag();
+        assertEquals("no-cache", response.getHeaderString(HttpHeaders.CACHE_CONTROL));
+        Response notModified = lookupAccount(accountId, entityTag);
+        assertEquals(Response.Status.NOT_MODIFIED, notModified.getStatusInfo());
+        assertEquals(entityTag, notModified.getEntityTag());
+        makeTransaction(null, accountId, new BigDecimal("10.00"));
+        Response modified = lookupAccount(accountId, entityTag);
+        assertEquals(Response.Status.OK, modified.getStatusInfo());
+        assertThat(modified.getEntityTag(), not(entityTag));
+        parseAccount(modified, anything(), anything(), comparesEqualTo(BigDecimal.TEN));
+        assertEquals(Response.Status.NOT_FOUND, lookupAccount(accountId + 1000, entityTag).getStatusInfo());
+    }
+
     @Test
     public void lookupUnknownAccount() {
         assertEquals(Response.Status.NOT_FOUND, lookupAccount(0).getStatusInfo());
@@ -134,6 +170,15 @@ public class WebServerTest {
                 makeTransaction(null, accountId, new BigDecimal("-100.00")).getStatusInfo());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"0.001", "100.005", "1E+20"})
+    public void makeDepositWithUnsupportedAmount(String amount) {
+        int accountId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        assertEquals(Response.Status.BAD_REQUEST,
+                makeTransaction(null, accountId, new BigDecimal(amount)).getStatusInfo());
+        parseAccount(lookupAccount(accountId), anything(), anything(), comparesEqualTo(BigDecimal.ZERO));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"0.01", "50", "75.25", "100.00"})
     public void makeWithdrawal(String amount) {
@@ -231,6 +276,27 @@ public class WebServerTest {
                 makeTransaction(johnDoeId, janeDoeId, new BigDecimal("100.01")).getStatus());
     }
 
+    @Test
+    public void makeTransactionsWithBalanceOverflow() {
+        int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int janeDoeId = parseAccount(createAccount("Jane Doe"), anything(), anything(), anything());
+        BigDecimal amount = new BigDecimal("40000000000000000.00");
+        BigDecimal balance = BigDecimal.ZERO;
+        Response response = makeTransaction(null, johnDoeId, amount);
+        // engines may limit balances below max long
+        for (int i = 0; i < 3 && response.getStatus() == Response.Status.CREATED.getStatusCode(); i++) {
+            response.close();
+            balance = balance.add(amount);
+            response = makeTransaction(null, johnDoeId, amount);
+        }
+        assertEquals(UNPROCESSABLE_ENTITY, response.getStatus());
+        response.close();
+        assertEquals(Response.Status.CREATED, makeTransaction(null, janeDoeId, amount).getStatusInfo());
+        assertEquals(UNPROCESSABLE_ENTITY, makeTransaction(janeDoeId, johnDoeId, amount).getStatus());
+        parseAccount(lookupAccount(johnDoeId), anything(), anything(), comparesEqualTo(balance));
+        parseAccount(lookupAccount(janeDoeId), anything(), anything(), comparesEqualTo(amount));
+    }
+
     @Test
     public void makeTransferWithTransactionId() {
         int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
@@ -261,6 +327,83 @@ public class WebServerTest {
         assertEquals(Response.Status.BAD_REQUEST, response.getStatusInfo());
     }
 
+    @Test
+    public void makeTransferWithIdempotencyKey() {
+        int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int janeDoeId = parseAccount(createAccount("Jane Doe"), anything(), anything(), anything());
+        makeTransaction(null, johnDoeId, new BigDecimal("100.00"));
+        Response first = makeTransaction(johnDoeId, janeDoeId, new BigDecimal("30.00"), "transfer-1");
+        assertEquals(Response.Status.CREATED, first.getStatusInfo());
+        URI location = first.getLocation();
+        int transactionId = parseTransaction(first, is(johnDoeId), is(janeDoeId), comparesEqualTo(new BigDecimal(30)),
+                is(clock.instant()));
+        clock.advance(Duration.ofMinutes(1));
+        Response retry = makeTransaction(johnDoeId, janeDoeId, new BigDecimal("30.0"), "transfer-1");
+        assertEquals(Response.Status.CREATED, retry.getStatusInfo());
+        assertEquals(location, retry.getLocation());
+        assertEquals(transactionId, parseTransaction(retry, is(johnDoeId), is(janeDoeId),
+                comparesEqualTo(new BigDecimal(30)), is(clock.instant().minus(Duration.ofMinutes(1)))));
+        parseAccount(lookupAccount(johnDoeId), anything(), anything(), comparesEqualTo(new BigDecimal(70)));
+        assertEquals(UNPROCESSABLE_ENTITY,
+                makeTransaction(johnDoeId, janeDoeId, new BigDecimal("40.00"), "transfer-1").getStatus());
+        assertEquals(Response.Status.BAD_REQUEST,
+                makeTransaction(johnDoeId, janeDoeId, new BigDecimal("30.00"), "").getStatusInfo());
+    }
+
+    @Test
+    public void retryFailedTransactionWithIdempotencyKey() {
+        int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        assertEquals(UNPROCESSABLE_ENTITY,
+                makeTransaction(johnDoeId, null, new BigDecimal("10.00"), "withdrawal-1").getStatus());
+        makeTransaction(null, johnDoeId, new BigDecimal("10.00"));
+        assertEquals(Response.Status.CREATED,
+                makeTransaction(johnDoeId, null, new BigDecimal("10.00"), "withdrawal-1").getStatusInfo());
+        parseAccount(lookupAccount(johnDoeId), anything(), anything(), comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    public void expireIdempotencyKey() {
+        int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int firstId = parseTransaction(makeTransaction(null, johnDoeId, new BigDecimal("10.00"), "deposit-1"),
+                anything(), anything(), anything(), anything());
+        clock.advance(IdempotencyCache.DEFAULT_TTL);
+        int secondId = parseTransaction(makeTransaction(null, johnDoeId, new BigDecimal("10.00"), "deposit-1"),
+                anything(), anything(), anything(), anything());
+        assertThat(secondId, not(firstId));
+        parseAccount(lookupAccount(johnDoeId), anything(), anything(), comparesEqualTo(new BigDecimal(20)));
+    }
+
+    @Test
+    public void makeBatch() {
+        int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int janeDoeId = parseAccount(createAccount("Jane Doe"), anything(), anything(), anything());
+        ArrayNode request = json.arrayNode()
+                .add(transactionNode(null, johnDoeId, new BigDecimal("100.00")))
+                .add(transactionNode(johnDoeId, janeDoeId, new BigDecimal("30.00")))
+                .add(transactionNode(janeDoeId, null, new BigDecimal("50.00")))
+                .add(transactionNode(null, janeDoeId + 1, new BigDecimal("10.00")))
+                .add(transactionNode(johnDoeId, johnDoeId, new BigDecimal("10.00")))
+                .add(transactionNode(janeDoeId, null, new BigDecimal("-10.00")))
+                .add(transactionNode(null, johnDoeId, new BigDecimal("92233720368547758.07")))
+                .add(transactionNode(janeDoeId, null, new BigDecimal("30.00")));
+        Response response = target.path("/transactions/batch")
+                .request().post(Entity.json(request));
+        assertEquals(Response.Status.OK, response.getStatusInfo());
+        JsonNode results = response.readEntity(JsonNode.class);
+        assertEquals(8, results.size());
+        int[] expectedStatuses = {201, 201, UNPROCESSABLE_ENTITY, 404, 400, 400, UNPROCESSABLE_ENTITY, 201};
+        for (int i = 0; i < expectedStatuses.length; i++) {
+            assertEquals(expectedStatuses[i], results.get(i).get("status").intValue());
+            assertEquals(expectedStatuses[i] == 201, results.get(i).has("transaction"));
+            assertEquals(expectedStatuses[i] != 201, results.get(i).has("error"));
+        }
+        int transferId = results.get(1).get("transaction").get("transactionId").intValue();
+        parseTransaction(lookupTransaction(transferId), is(johnDoeId), is(janeDoeId),
+                comparesEqualTo(new BigDecimal("30.00")), is(clock.instant()));
+        parseAccount(lookupAccount(johnDoeId), anything(), anything(), comparesEqualTo(new BigDecimal("70.00")));
+        parseAccount(lookupAccount(janeDoeId), anything(), anything(), comparesEqualTo(new BigDecimal("0.00")));
+    }
+
     @Test
     public void lookupTransactionsAndAccounts() {
         Instant initialInstant = clock.instant();
@@ -301,6 +444,268 @@ public class WebServerTest {
                 is(initialInstant.plusSeconds(10)));
     }
 
+    @Test
+    public void listTransactions() {
+        int accountId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        for (int i = 1; i <= 3; i++) {
+            makeTransaction(null, accountId, new BigDecimal(i));
+        }
+        JsonNode firstPage = listTransactions(-1, 2);
+        assertEquals(2, firstPage.get("transactions").size());
+        assertThat(firstPage.get("transactions").get(0).get("amount").decimalValue(), comparesEqualTo(BigDecimal.ONE));
+        JsonNode secondPage = listTransactions(firstPage.get("nextAfterId").intValue(), 2);
+        assertEquals(1, secondPage.get("transactions").size());
+        assertThat(secondPage.get("transactions").get(0).get("amount").decimalValue(),
+                comparesEqualTo(new BigDecimal(3)));
+        JsonNode lastPage = listTransactions(secondPage.get("nextAfterId").intValue(), 2);
+        assertEquals(0, lastPage.get("transactions").size());
+        assertEquals(secondPage.get("nextAfterId"), lastPage.get("nextAfterId"));
+
+        assertEquals(Response.Status.BAD_REQUEST, target.path("/transactions").queryParam("limit", 0)
+                .request().get().getStatusInfo());
+    }
+
+    @Test
+    public void listAccountTransactions() {
+        int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int janeDoeId = parseAccount(createAccount("Jane Doe"), anything(), anything(), anything());
+        int depositId = parseTransaction(makeTransaction(null, johnDoeId, new BigDecimal("100.00")),
+                anything(), anything(), anything(), anything());
+        makeTransaction(null, janeDoeId, new BigDecimal("100.00"));
+        int transferId = parseTransaction(makeTransaction(janeDoeId, johnDoeId, new BigDecimal("50.00")),
+                anything(), anything(), anything(), anything());
+        makeTransaction(janeDoeId, null, new BigDecimal("10.00"));
+
+        Response firstResponse = target.path("/accounts/{accountId}/transactions")
+                .resolveTemplate("accountId", johnDoeId).queryParam("limit", 1)
+                .request().get();
+        assertEquals(Response.Status.OK, firstResponse.getStatusInfo());
+        JsonNode firstPage = firstResponse.readEntity(JsonNode.class);
+        assertEquals(1, firstPage.get("transactions").size());
+        assertEquals(depositId, firstPage.get("transactions").get(0).get("transactionId").intValue());
+
+        JsonNode secondPage = target.path("/accounts/{accountId}/transactions")
+                .resolveTemplate("accountId", johnDoeId)
+                .queryParam("afterId", firstPage.get("nextAfterId").intValue())
+                .request().get(JsonNode.class);
+        assertEquals(1, secondPage.get("transactions").size());
+        assertEquals(transferId, secondPage.get("transactions").get(0).get("transactionId").intValue());
+
+        assertEquals(Response.Status.NOT_FOUND, target.path("/accounts/{accountId}/transactions")
+                .resolveTemplate("accountId", janeDoeId + 1).request().get().getStatusInfo());
+    }
+
+    @Test
+    public void streamTransactions() {
+        int accountId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        for (int i = 1; i <= 3; i++) {
+            makeTransaction(null, accountId, new BigDecimal(i));
+        }
+        Response response = target.path("/transactions").queryParam("afterId", 0)
+                .request("application/x-ndjson").get();
+        assertEquals(Response.Status.OK, response.getStatusInfo());
+        assertEquals(MediaType.valueOf("application/x-ndjson"), response.getMediaType());
+        String[] lines = response.readEntity(String.class).split("\n");
+        assertEquals(2, lines.length);
+        assertThat(lines[0], containsString("\"transactionId\":1"));
+        assertThat(lines[1], containsString("\"transactionId\":2"));
+    }
+
+    @Test
+    public void lookupTransactionConditionally() {
+        int accountId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int transactionId = parseTransaction(makeTransaction(null, accountId, new BigDecimal("10.00")),
+                anything(), anything(), anything(), anything());
+        Response response = lookupTransaction(transactionId);
+        EntityTag entityTag = response.getEntityTag();
+        // ids start over after restart of a service without journal, so the tag is not the id alone
+        assertThat(entityTag.getValue(), endsWith("-" + transactionId));
+        assertThat(entityTag.getValue(), not(equalTo(Integer.toString(transactionId))));
+        assertThat(response.getHeaderString(HttpHeaders.CACHE_CONTROL), not(containsString("immutable")));
+        Response notModified = target.path("/transactions/{transactionId}")
+                .resolveTemplate("transactionId", transactionId)
+                .request().header(HttpHeaders.IF_NONE_MATCH, entityTag).get();
+        assertEquals(Response.Status.NOT_MODIFIED, notModified.getStatusInfo());
+        assertEquals(entityTag, notModified.getEntityTag());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"application/x-jackson-smile", "application/cbor"})
+    public void binaryEncodings(String mediaType) throws IOException {
+        ObjectMapper mapper = new ObjectMapper(mediaType.equals("application/cbor") ? new CBORFactory()
+                : new SmileFactory()).enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        Response accountResponse = target.path("/accounts").request(mediaType)
+                .post(Entity.entity(mapper.writeValueAsBytes(json.objectNode().put("owner", "John Doe")),
+                        mediaType));
+        assertEquals(Response.Status.CREATED, accountResponse.getStatusInfo());
+        assertEquals(MediaType.valueOf(mediaType), accountResponse.getMediaType());
+        JsonNode account = mapper.readTree(accountResponse.readEntity(byte[].class));
+        int accountId = account.get("accountId").intValue();
+        assertEquals(parseTree(lookupAccount(accountId)), account);
+
+        Response transactionResponse = target.path("/transactions").request(mediaType)
+                .post(Entity.entity(mapper.writeValueAsBytes(transactionNode(null, accountId,
+                        new BigDecimal("0.10"))), mediaType));
+        assertEquals(Response.Status.CREATED, transactionResponse.getStatusInfo());
+        JsonNode transaction = mapper.readTree(transactionResponse.readEntity(byte[].class));
+        assertThat(transaction.get("amount").decimalValue(), comparesEqualTo(new BigDecimal("0.10")));
+        int transactionId = transaction.get("transactionId").intValue();
+
+        Response lookupResponse = target.path("/transactions/{transactionId}")
+                .resolveTemplate("transactionId", transactionId).request(mediaType).get();
+        assertEquals(MediaType.valueOf(mediaType), lookupResponse.getMediaType());
+        assertEquals(HttpHeaders.ACCEPT, lookupResponse.getHeaderString(HttpHeaders.VARY));
+        EntityTag entityTag = lookupResponse.getEntityTag();
+        Response jsonResponse = lookupTransaction(transactionId);
+        assertThat(entityTag, not(jsonResponse.getEntityTag()));
+        assertEquals(parseTree(jsonResponse), mapper.readTree(lookupResponse.readEntity(byte[].class)));
+        assertEquals(Response.Status.OK, target.path("/transactions/{transactionId}")
+                .resolveTemplate("transactionId", transactionId).request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag).get().getStatusInfo());
+        assertEquals(Response.Status.NOT_MODIFIED, target.path("/transactions/{transactionId}")
+                .resolveTemplate("transactionId", transactionId).request(mediaType)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag).get().getStatusInfo());
+
+        JsonNode page = mapper.readTree(target.path("/transactions").request(mediaType).get(byte[].class));
+        assertEquals(parseTree(target.path("/transactions").request().get()), page);
+
+        Response invalidResponse = target.path("/accounts").request(mediaType)
+                .post(Entity.entity(mapper.writeValueAsBytes(json.objectNode().put("accountId", 1)), mediaType));
+        assertEquals(Response.Status.BAD_REQUEST, invalidResponse.getStatusInfo());
+    }
+
+    @Test
+    public void exportMetrics() {
+        int accountId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        makeTransaction(null, accountId, new BigDecimal("10.00"));
+        assertEquals(Response.Status.NOT_FOUND, lookupTransaction(123).getStatusInfo());
+
+        Response response = target.path("/metrics").request().get();
+        assertEquals(Response.Status.OK, response.getStatusInfo());
+        assertEquals("text/plain", response.getMediaType().getType() + "/" + response.getMediaType().getSubtype());
+        String metrics = response.readEntity(String.class);
+        assertThat(metrics, containsString(
+                "bank_http_requests_total{method=\"POST\",path=\"/accounts\",status=\"2xx\"} 1\n"));
+        assertThat(metrics, containsString("bank_http_requests_total{method=\"GET\","
+                + "path=\"/transactions/{transactionId}\",status=\"4xx\"} 1\n"));
+        assertThat(metrics, containsString(
+                "bank_http_request_duration_seconds_count{method=\"POST\",path=\"/transactions\"} 1\n"));
+        assertThat(metrics, containsString("# TYPE bank_requests_pending gauge\n"));
+        assertThat(metrics, containsString("bank_transaction_cache_misses_total 1\n"));
+    }
+
+    @Test
+    public void searchAccountsByOwner() {
+        int aliceSmithId = parseAccount(createAccount("Alice Smith"), anything(), anything(), anything());
+        int bobId = parseAccount(createAccount("Bob"), anything(), anything(), anything());
+        int aliceJonesId = parseAccount(createAccount("Alice Jones"), anything(), anything(), anything());
+        int anotherAliceSmithId = parseAccount(createAccount("Alice Smith"), anything(), anything(), anything());
+
+        JsonNode exactPage = searchAccounts("Alice Smith", false, null, 10);
+        assertEquals(2, exactPage.get("accounts").size());
+        assertEquals(aliceSmithId, exactPage.get("accounts").get(0).get("accountId").intValue());
+        assertEquals(anotherAliceSmithId, exactPage.get("accounts").get(1).get("accountId").intValue());
+        assertEquals("Alice Smith", exactPage.get("accounts").get(0).get("owner").textValue());
+        assertEquals(bobId, searchAccounts("Bob", false, null, 10).get("accounts").get(0).get("accountId").intValue());
+
+        JsonNode firstPage = searchAccounts("Alice", true, null, 2);
+        assertEquals(2, firstPage.get("accounts").size());
+        assertEquals(aliceJonesId, firstPage.get("accounts").get(0).get("accountId").intValue());
+        assertEquals(aliceSmithId, firstPage.get("accounts").get(1).get("accountId").intValue());
+        JsonNode secondPage = searchAccounts("Alice", true, firstPage.get("nextCursor").textValue(), 2);
+        assertEquals(1, secondPage.get("accounts").size());
+        assertEquals(anotherAliceSmithId, secondPage.get("accounts").get(0).get("accountId").intValue());
+        JsonNode lastPage = searchAccounts("Alice", true, secondPage.get("nextCursor").textValue(), 2);
+        assertEquals(0, lastPage.get("accounts").size());
+        assertEquals(secondPage.get("nextCursor"), lastPage.get("nextCursor"));
+        assertEquals(0, searchAccounts("Alice", false, null, 10).get("accounts").size());
+
+        assertEquals(Response.Status.BAD_REQUEST, target.path("/accounts").request().get().getStatusInfo());
+        assertEquals(Response.Status.BAD_REQUEST, target.path("/accounts").queryParam("owner", "Alice")
+                .queryParam("cursor", "not a cursor").request().get().getStatusInfo());
+    }
+
+    @Test
+    public void createAccountsBatch() {
+        ArrayNode request = json.arrayNode()
+                .add("John Doe")
+                .add("Jane Doe")
+                .addNull()
+                .add("John Doe");
+        Response response = target.path("/accounts/batch")
+                .request().post(Entity.json(request));
+        assertEquals(Response.Status.OK, response.getStatusInfo());
+        JsonNode batch = response.readEntity(JsonNode.class);
+        assertEquals(clock.instant(), Instant.from(TIME_FORMATTER.parse(batch.get("creationTime").textValue())));
+        JsonNode accountIds = batch.get("accountIds");
+        assertEquals(4, accountIds.size());
+        String[] expectedOwners = {"John Doe", "Jane Doe", null, "John Doe"};
+        for (int i = 0; i < expectedOwners.length; i++) {
+            parseAccount(lookupAccount(accountIds.get(i).intValue()), is(expectedOwners[i]), is(clock.instant()),
+                    comparesEqualTo(BigDecimal.ZERO));
+        }
+        assertEquals(2, searchAccounts("John Doe", false, null, 10).get("accounts").size());
+
+        Response emptyResponse = target.path("/accounts/batch")
+                .request().post(Entity.json(json.arrayNode()));
+        assertEquals(0, emptyResponse.readEntity(JsonNode.class).get("accountIds").size());
+    }
+
+    @Test
+    public void lookupHotAccounts() {
+        Response emptyResponse = target.path("/admin/hot-accounts").request().get();
+        assumeTrue(emptyResponse.getStatus() != Response.Status.NOT_FOUND.getStatusCode(),
+                "engine does not track hot accounts");
+        assertEquals(Response.Status.OK, emptyResponse.getStatusInfo());
+        emptyResponse.close();
+        int hotAccountId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int coldAccountId = parseAccount(createAccount("Jane Doe"), anything(), anything(), anything());
+        makeTransaction(null, coldAccountId, new BigDecimal("1.00")).close();
+        for (int i = 0; i < 200; i++) {
+            makeTransaction(null, hotAccountId, new BigDecimal("1.00")).close();
+        }
+        JsonNode hotAccounts = target.path("/admin/hot-accounts").queryParam("limit", 1)
+                .request().get(JsonNode.class);
+        assertEquals(1, hotAccounts.size());
+        assertEquals(hotAccountId, hotAccounts.get(0).get("accountId").intValue());
+        assertTrue(hotAccounts.get(0).get("operations").longValue() > 0);
+        assertTrue(hotAccounts.get(0).get("monitorWaitSeconds").isNumber());
+
+        assertEquals(Response.Status.BAD_REQUEST, target.path("/admin/hot-accounts").queryParam("limit", 0)
+                .request().get().getStatusInfo());
+    }
+
+    @Test
+    public void summarizeBank() {
+        JsonNode emptySummary = target.path("/bank/summary").queryParam("consistent", true)
+                .request().get(JsonNode.class);
+        assertEquals(0, emptySummary.get("transactionsCount").longValue());
+        assertThat(emptySummary.get("totalMoney").decimalValue(), comparesEqualTo(BigDecimal.ZERO));
+        int johnDoeId = parseAccount(createAccount("John Doe"), anything(), anything(), anything());
+        int janeDoeId = parseAccount(createAccount("Jane Doe"), anything(), anything(), anything());
+        makeTransaction(null, johnDoeId, new BigDecimal("100.00")).close();
+        makeTransaction(null, janeDoeId, new BigDecimal("20.50")).close();
+        makeTransaction(johnDoeId, janeDoeId, new BigDecimal("30.00")).close();
+        int lastTransactionId = parseTransaction(makeTransaction(janeDoeId, null, new BigDecimal("10.00")),
+                anything(), anything(), anything(), anything());
+        makeTransaction(janeDoeId, null, new BigDecimal("1000.00")).close();
+
+        for (boolean consistent : new boolean[]{false, true}) {
+            JsonNode summary = target.path("/bank/summary").queryParam("consistent", consistent)
+                    .request().get(JsonNode.class);
+            assertEquals(2, summary.get("accountsCount").longValue());
+            assertEquals(4, summary.get("transactionsCount").longValue());
+            assertThat(summary.get("totalDeposits").decimalValue(), comparesEqualTo(new BigDecimal("120.50")));
+            assertThat(summary.get("totalWithdrawals").decimalValue(), comparesEqualTo(new BigDecimal("10.00")));
+            assertThat(summary.get("totalMoney").decimalValue(), comparesEqualTo(new BigDecimal("110.50")));
+            assertEquals(consistent, summary.has("transactionIdLimit"));
+            if (consistent) {
+                // sharded engine may skip ids
+                assertTrue(summary.get("transactionIdLimit").intValue() > lastTransactionId);
+            }
+        }
+    }
+
     @Test
     public void lookupUnknownTransaction() {
         assertEquals(Response.Status.NOT_FOUND, lookupTransaction(0).getStatusInfo());
@@ -308,6 +713,11 @@ public class WebServerTest {
         assertEquals(Response.Status.NOT_FOUND, lookupTransaction(-1).getStatusInfo());
     }
 
+    private JsonNode parseTree(Response response) throws IOException {
+        return new ObjectMapper(new JsonFactory()).enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .readTree(response.readEntity(byte[].class));
+    }
+
     private Response createAccount(String owner) {
         ObjectNode request = json.objectNode()
                 .put("owner", owner);
@@ -320,6 +730,11 @@ public class WebServerTest {
                 .request().get();
     }
 
+    private Response lookupAccount(int accountId, EntityTag entityTag) {
+        return target.path("/accounts/{accountId}").resolveTemplate("accountId", accountId)
+                .request().header(HttpHeaders.IF_NONE_MATCH, entityTag).get();
+    }
+
     private int parseAccount(Response response, Matcher<? super String> expectedOwner,
                              Matcher<? super Instant> expectedCreationTime, Matcher<? super BigDecimal> expectedBalance)
     {
@@ -332,13 +747,35 @@ public class WebServerTest {
         return account.get("accountId").intValue();
     }
 
-    private Response makeTransaction(Integer sourceAccountId, Integer targetAccountId, BigDecimal amount) {
-        JsonNode transaction = json.objectNode()
+    private JsonNode searchAccounts(String owner, boolean prefix, String cursor, int limit) {
+        WebTarget search = target.path("/accounts")
+                .queryParam("owner", owner)
+                .queryParam("prefix", prefix)
+                .queryParam("limit", limit);
+        if (cursor != null) {
+            search = search.queryParam("cursor", cursor);
+        }
+        return search.request().get(JsonNode.class);
+    }
+
+    private JsonNode transactionNode(Integer sourceAccountId, Integer targetAccountId, BigDecimal amount) {
+        return json.objectNode()
                 .put("sourceAccountId", sourceAccountId)
                 .put("targetAccountId", targetAccountId)
                 .put("amount", amount);
+    }
+
+    private Response makeTransaction(Integer sourceAccountId, Integer targetAccountId, BigDecimal amount) {
         return target.path("/transactions")
-                .request().post(Entity.json(transaction));
+                .request().post(Entity.json(transactionNode(sourceAccountId, targetAccountId, amount)));
+    }
+
+    private Response makeTransaction(Integer sourceAccountId, Integer targetAccountId, BigDecimal amount,
+                                     String idempotencyKey)
+    {
+        return target.path("/transactions")
+                .request().header(TransactionsResource.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                .post(Entity.json(transactionNode(sourceAccountId, targetAccountId, amount)));
     }
 
     private Response lookupTransaction(int transactionId) {
@@ -346,6 +783,13 @@ public class WebServerTest {
                 .request().get();
     }
 
+    private JsonNode listTransactions(int afterId, int limit) {
+        Response response = target.path("/transactions").queryParam("afterId", afterId).queryParam("limit", limit)
+                .request().get();
+        assertEquals(Response.Status.OK, response.getStatusInfo());
+        return response.readEntity(JsonNode.class);
+    }
+
     private int parseTransaction(Response response, Matcher<? super Integer> expectedSourceAccountId,
                                  Matcher<? super Integer> expectedTargetAccountId,
                                  Matcher<? super BigDecimal> expectedAmount,
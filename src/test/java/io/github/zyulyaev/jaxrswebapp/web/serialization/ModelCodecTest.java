@@ -0,0 +1,90 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import io.github.zyulyaev.jaxrswebapp.web.model.AccountModel;
+import io.github.zyulyaev.jaxrswebapp.web.model.TransactionModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.ws.rs.BadRequestException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelCodecTest {
+    private final AccountModelCodec accountCodec = new AccountModelCodec();
+    private final TransactionModelCodec transactionCodec = new TransactionModelCodec();
+
+    private static ByteArrayInputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private TransactionModel readTransaction(String json) throws IOException {
+        return transactionCodec.readFrom(TransactionModel.class, null, null, null, null, json(json));
+    }
+
+    @Test
+    public void formatInstantsAsIsoInstant() {
+        char[] buffer = new char[30];
+        Random random = new Random(42);
+        int[] nanos = {0, 100_000_000, 123_000_000, 123_456_000, 123_456_789, 1};
+        long[] epochSeconds = {0, -1, -62167219200L, 253402300799L, 951782400L, 951868800L};
+        for (int i = 0; i < 100_000; i++) {
+            long epochSecond = i < epochSeconds.length ? epochSeconds[i]
+                    : -62167219200L + (long) (random.nextDouble() * (253402300799L + 62167219200L));
+            int nano = nanos[random.nextInt(nanos.length)];
+            String expected = DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochSecond(epochSecond, nano));
+            assertEquals(expected, new String(buffer, 0, InstantWriter.format(epochSecond, nano, buffer)));
+        }
+    }
+
+    @Test
+    public void writeTransaction() {
+        TransactionModel transaction = new TransactionModel(7, Instant.parse("2019-01-01T12:34:56.789Z"), null, 3,
+                new BigDecimal("100.25"));
+        assertEquals("{\"transactionId\":7,\"transactionTime\":\"2019-01-01T12:34:56.789Z\",\"sourceAccountId\":null,"
+                + "\"targetAccountId\":3,\"amount\":100.25}",
+                new String(transactionCodec.toBytes(transaction), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeAccount() {
+        AccountModel account = new AccountModel(5, "John \"Doe\"", Instant.parse("2019-01-01T00:00:00Z"),
+                new BigDecimal("0.00"));
+        assertEquals("{\"accountId\":5,\"owner\":\"John \\\"Doe\\\"\",\"creationTime\":\"2019-01-01T00:00:00Z\","
+                + "\"balance\":0.00}", new String(accountCodec.toBytes(account), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readTransactionCoercingScalars() throws IOException {
+        TransactionModel transaction = readTransaction(
+                "{\"sourceAccountId\":\"12\",\"targetAccountId\":3.0,\"amount\":\"100.50\"}");
+        assertEquals(Integer.valueOf(12), transaction.getSourceAccountId());
+        assertEquals(Integer.valueOf(3), transaction.getTargetAccountId());
+        assertEquals(new BigDecimal("100.50"), transaction.getAmount());
+        assertNull(readTransaction("{\"sourceAccountId\":null,\"amount\":1e2}").getSourceAccountId());
+        assertEquals(0, new BigDecimal(100).compareTo(readTransaction("{\"amount\":1e2}").getAmount()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "[]", "{\"transactionId\":1}", "{\"transactionTime\":\"2019-01-01T00:00:00Z\"}",
+            "{\"unknown\":1}", "{\"amount\":\"abc\"}", "{\"sourceAccountId\":true}", "{\"amount\":{}}",
+            "{\"sourceAccountId\":12345678901}", "{\"amount\":"})
+    public void rejectInvalidTransaction(String json) {
+        assertThrows(BadRequestException.class, () -> readTransaction(json));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"{\"accountId\":1}", "{\"balance\":100}", "{\"creationTime\":null}", "{\"x\":1}",
+            "{\"owner\":[]}"})
+    public void rejectInvalidAccount(String json) {
+        assertThrows(BadRequestException.class,
+                () -> accountCodec.readFrom(AccountModel.class, null, null, null, null, json(json)));
+    }
+}
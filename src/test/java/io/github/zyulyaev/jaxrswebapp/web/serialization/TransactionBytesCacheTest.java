@@ -0,0 +1,56 @@
+package io.github.zyulyaev.jaxrswebapp.web.serialization;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionBytesCacheTest {
+    private static byte[] render(int transactionId) {
+        return ("{\"transactionId\":" + transactionId + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String written(TransactionBytes transactionBytes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transactionBytes.writeTo(output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void countHitsAndMisses() throws IOException {
+        for (TransactionBytesCache.Storage storage : TransactionBytesCache.Storage.values()) {
+            TransactionBytesCache cache = new TransactionBytesCache(TransactionBytesCache.DEFAULT_MAX_BYTES, storage);
+            assertNull(cache.get(1));
+            cache.put(1, render(1));
+            assertEquals("{\"transactionId\":1}", written(cache.get(1)));
+            assertEquals("{\"transactionId\":1}", written(cache.get(1)));
+            assertEquals(2, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void evictColdEntriesAboveMaxBytes() {
+        TransactionBytesCache cache = new TransactionBytesCache(1024, TransactionBytesCache.Storage.HEAP);
+        cache.put(0, render(0));
+        for (int transactionId = 1; transactionId < 100; transactionId++) {
+            cache.put(transactionId, render(transactionId));
+            assertNotNull(cache.get(0)); // hot entry gets second chance every time
+            assertTrue(cache.getBytes() <= 1024);
+        }
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(99));
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    public void skipEntriesLargerThanCache() {
+        TransactionBytesCache cache = new TransactionBytesCache(0, TransactionBytesCache.Storage.HEAP);
+        assertEquals(render(1).length, cache.put(1, render(1)).getLength());
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getBytes());
+    }
+}